@@ -1,18 +1,57 @@
 package it.unipi.chessApp.config;
 
+import io.lettuce.core.ClientOptions;
 import io.lettuce.core.ReadFrom;
+import io.lettuce.core.RedisClient;
+import io.lettuce.core.RedisURI;
+import io.lettuce.core.cluster.ClusterClientOptions;
+import io.lettuce.core.cluster.ClusterTopologyRefreshOptions;
+import io.lettuce.core.protocol.ProtocolVersion;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.task.SyncTaskExecutor;
+import org.springframework.data.redis.connection.RedisClusterConfiguration;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
 import org.springframework.data.redis.connection.RedisStaticMasterReplicaConfiguration;
 import org.springframework.data.redis.connection.lettuce.LettuceClientConfiguration;
 import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
 import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 
+import java.time.Duration;
+import java.util.Arrays;
+
+/**
+ * Redis connections. Reads are routed per use: the default template reads from the master, so
+ * state written a moment ago (live games, matchmaking) is read back as written; the replica
+ * template reads from a replica when one is up, for reads that tolerate replication lag.
+ * Writes always go to the master.
+ * <p>
+ * Two topologies (redis.mode): a static master with two replicas, or a Redis Cluster, where
+ * writes are spread over the masters by key slot. Keys are hash-tagged by game, player,
+ * tournament and pool (see RedisKeys), and multi-key commands and scripts only combine keys
+ * of one of them, so the same code runs on both.
+ */
 @Configuration
 public class RedisConfig {
 
+    /** Master-only reads; the primary template */
+    public static final String MASTER_TEMPLATE = "stringRedisTemplate";
+    /** Replica-preferred reads, possibly behind the master */
+    public static final String REPLICA_TEMPLATE = "replicaRedisTemplate";
+
+    /** Values of redis.mode */
+    public static final String MASTER_REPLICA_MODE = "master-replica";
+    public static final String CLUSTER_MODE = "cluster";
+
+    @Value("${redis.mode:" + MASTER_REPLICA_MODE + "}")
+    private String mode;
+
     @Value("${redis.master.host}")
     private String masterHost;
 
@@ -31,22 +70,120 @@ public class RedisConfig {
     @Value("${redis.replica2.port}")
     private int replica2Port;
 
+    /** Seed nodes of the cluster, host:port; the other nodes are discovered from them */
+    @Value("${redis.cluster.nodes:}")
+    private String[] clusterNodes;
+
+    @Value("${redis.cluster.max-redirects:5}")
+    private int clusterMaxRedirects;
+
+    @Value("${redis.cluster.refresh-period-seconds:30}")
+    private int clusterRefreshPeriodSeconds;
+
     @Bean
+    @Primary
     public LettuceConnectionFactory redisConnectionFactory() {
-        RedisStaticMasterReplicaConfiguration config = 
+        return isCluster() ? clusterFactory(ReadFrom.UPSTREAM) : masterReplicaFactory(ReadFrom.UPSTREAM);
+    }
+
+    @Bean
+    public LettuceConnectionFactory replicaConnectionFactory() {
+        return isCluster()
+            ? clusterFactory(ReadFrom.REPLICA_PREFERRED)
+            : masterReplicaFactory(ReadFrom.REPLICA_PREFERRED);
+    }
+
+    private boolean isCluster() {
+        return CLUSTER_MODE.equals(mode);
+    }
+
+    private LettuceConnectionFactory masterReplicaFactory(ReadFrom readFrom) {
+        RedisStaticMasterReplicaConfiguration config =
             new RedisStaticMasterReplicaConfiguration(masterHost, masterPort);
         config.addNode(replica1Host, replica1Port);
         config.addNode(replica2Host, replica2Port);
 
         LettuceClientConfiguration clientConfig = LettuceClientConfiguration.builder()
-            .readFrom(ReadFrom.REPLICA_PREFERRED)
+            .readFrom(readFrom)
             .build();
 
         return new LettuceConnectionFactory(config, clientConfig);
     }
 
+    /**
+     * Commands are routed to the master of the slot of their key (to one of its replicas for
+     * replica reads). The slot map is refreshed periodically and as soon as a node answers
+     * with a redirection or goes down, so failovers and resharding are followed.
+     */
+    private LettuceConnectionFactory clusterFactory(ReadFrom readFrom) {
+        RedisClusterConfiguration config = new RedisClusterConfiguration(Arrays.asList(clusterNodes));
+        config.setMaxRedirects(clusterMaxRedirects);
+
+        ClusterTopologyRefreshOptions refresh = ClusterTopologyRefreshOptions.builder()
+            .enablePeriodicRefresh(Duration.ofSeconds(clusterRefreshPeriodSeconds))
+            .enableAllAdaptiveRefreshTriggers()
+            .build();
+        LettuceClientConfiguration clientConfig = LettuceClientConfiguration.builder()
+            .readFrom(readFrom)
+            .clientOptions(ClusterClientOptions.builder().topologyRefreshOptions(refresh).build())
+            .build();
+
+        return new LettuceConnectionFactory(config, clientConfig);
+    }
+
+    /**
+     * Lettuce does not support Pub/Sub over a static Master/Replica connection,
+     * so subscriptions use a dedicated standalone connection to the master.
+     * A cluster broadcasts messages to every node: any node will do.
+     */
     @Bean
+    public LettuceConnectionFactory pubSubConnectionFactory() {
+        if (isCluster()) {
+            return clusterFactory(ReadFrom.UPSTREAM);
+        }
+        return new LettuceConnectionFactory(new RedisStandaloneConfiguration(masterHost, masterPort));
+    }
+
+    /**
+     * Client of the near cache (see RedisNearCache): invalidations are pushed on the connection
+     * that read the keys, which takes RESP3 and the master, where every write is seen.
+     * Not created in cluster mode, where the keys are spread over several masters: the near
+     * cache then reads through to Redis.
+     */
+    @Bean(destroyMethod = "shutdown")
+    @ConditionalOnProperty(name = "redis.mode", havingValue = MASTER_REPLICA_MODE, matchIfMissing = true)
+    public RedisClient nearCacheClient() {
+        RedisClient client = RedisClient.create(RedisURI.create(masterHost, masterPort));
+        client.setOptions(ClientOptions.builder()
+            .protocolVersion(ProtocolVersion.RESP3)
+            .build());
+        return client;
+    }
+
+    @Bean(MASTER_TEMPLATE)
+    @Primary
     public StringRedisTemplate stringRedisTemplate(RedisConnectionFactory connectionFactory) {
         return new StringRedisTemplate(connectionFactory);
     }
+
+    @Bean(REPLICA_TEMPLATE)
+    public StringRedisTemplate replicaRedisTemplate(
+            @Qualifier("replicaConnectionFactory") RedisConnectionFactory replicaConnectionFactory) {
+        return new StringRedisTemplate(replicaConnectionFactory);
+    }
+
+    /**
+     * Shared listener container: every channel subscribed by this instance is
+     * multiplexed over a single Redis connection.
+     * Messages are handed to the listeners on the thread of that connection, in the order they
+     * were published (a pool would run them out of order): listeners must hand off slow work.
+     */
+    @Bean
+    public RedisMessageListenerContainer redisMessageListenerContainer(
+            @Qualifier("pubSubConnectionFactory") RedisConnectionFactory pubSubConnectionFactory) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(pubSubConnectionFactory);
+        container.setTaskExecutor(new SyncTaskExecutor());
+        return container;
+    }
 }
@@ -1,6 +1,7 @@
 package it.unipi.chessApp.config;
 
 import it.unipi.chessApp.security.JwtAuthenticationFilter;
+import jakarta.servlet.DispatcherType;
 import lombok.RequiredArgsConstructor;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -23,6 +24,9 @@ public class SecurityConfig {
         http
                 .csrf(csrf -> csrf.disable())
                 .authorizeHttpRequests(auth -> auth
+                        // Async dispatches (matchmaking) were already authorized on the original request
+                        .dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll()
+
                         // Swagger UI and OpenAPI JSON
                         .requestMatchers("/v3/api-docs", "/v3/api-docs/**", "/v3/api-docs.yaml", "/swagger-ui/**", "/swagger-ui.html").permitAll()
                         
@@ -32,7 +36,10 @@ public class SecurityConfig {
                         
                         // Public game endpoints
                         .requestMatchers(HttpMethod.GET, "/games", "/games/user/**").permitAll()
-                        .requestMatchers(HttpMethod.GET, "/games/live/*/status").permitAll()
+                        .requestMatchers(HttpMethod.GET, "/games/live/*/status", "/games/live/*/events", "/games/live/*/history").permitAll()
+                        .requestMatchers(HttpMethod.GET, "/games/live/status", "/games/live/tournament/*/status").permitAll()
+                        // Game WebSocket: the handshake interceptor authenticates the player
+                        .requestMatchers(HttpMethod.GET, "/games/live/*/ws").permitAll()
                         
                         // Public club endpoints
                         .requestMatchers(HttpMethod.GET, "/clubs", "/clubs/*", "/clubs/*/*").permitAll()
@@ -47,6 +54,7 @@ public class SecurityConfig {
                         .requestMatchers(HttpMethod.DELETE, "/users/**").hasRole("ADMIN")
                         .requestMatchers(HttpMethod.DELETE, "/clubs/**").hasRole("ADMIN")
                         .requestMatchers("/users/promote").hasRole("ADMIN")
+                        .requestMatchers("/actuator/**").hasRole("ADMIN")
                         
                         // All other requests require authentication (including /games/stats/**)
                         .anyRequest().authenticated()
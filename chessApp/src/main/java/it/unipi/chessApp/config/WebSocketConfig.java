@@ -0,0 +1,39 @@
+package it.unipi.chessApp.config;
+
+import it.unipi.chessApp.controller.GameSocketHandler;
+import it.unipi.chessApp.security.GameSocketHandshakeInterceptor;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.socket.config.annotation.EnableWebSocket;
+import org.springframework.web.socket.config.annotation.WebSocketConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistration;
+import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistry;
+import org.springframework.web.socket.server.support.DefaultHandshakeHandler;
+
+@Configuration
+@EnableWebSocket
+@RequiredArgsConstructor
+public class WebSocketConfig implements WebSocketConfigurer {
+
+    private final GameSocketHandler gameSocketHandler;
+    private final GameSocketHandshakeInterceptor gameSocketHandshakeInterceptor;
+
+    /** Empty: only pages served from the application's own origin may open a socket */
+    @Value("${live-game.ws.allowed-origins:}")
+    private String[] allowedOrigins;
+
+    @Override
+    public void registerWebSocketHandlers(WebSocketHandlerRegistry registry) {
+        // The JWT may come as a subprotocol after "bearer", which must be echoed back
+        DefaultHandshakeHandler handshakeHandler = new DefaultHandshakeHandler();
+        handshakeHandler.setSupportedProtocols(GameSocketHandshakeInterceptor.BEARER_PROTOCOL);
+
+        WebSocketHandlerRegistration registration = registry.addHandler(gameSocketHandler, "/games/live/*/ws")
+            .setHandshakeHandler(handshakeHandler)
+            .addInterceptors(gameSocketHandshakeInterceptor);
+        if (allowedOrigins.length > 0) {
+            registration.setAllowedOriginPatterns(allowedOrigins);
+        }
+    }
+}
@@ -5,13 +5,16 @@ import it.unipi.chessApp.service.GameService;
 import it.unipi.chessApp.service.LiveGameService;
 import it.unipi.chessApp.service.exception.BusinessException;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 @RestController
 @RequestMapping("/games")
@@ -122,36 +125,38 @@ public class GameController {
   // ==================== Live Game Endpoints ====================
 
   // Join regular matchmaking queue (authenticated)
+  // The response is completed asynchronously: no servlet thread is held while waiting
   @PostMapping("/live/matchmaking")
-  public ResponseEntity<ResponseWrapper<MatchmakingResultDTO>> joinMatchmaking(
+  public CompletableFuture<ResponseEntity<ResponseWrapper<MatchmakingResultDTO>>> joinMatchmaking(
     @RequestBody MatchmakingRequestDTO request
   ) throws BusinessException {
     String username = getCurrentUsername();
     String gameType = request != null ? request.getGameType() : null;
 
-    MatchmakingResultDTO result = liveGameService.joinMatchmaking(username, gameType);
-
-    String message = result.isMatched()
-      ? "Match found! Game created."
-      : "No opponent found. Removed from matchmaking queue.";
-
-    return ResponseEntity.status(HttpStatus.OK).body(
-      new ResponseWrapper<>(message, result)
-    );
+    return liveGameService.joinMatchmaking(username, gameType)
+      .thenApply(this::toMatchmakingResponse);
   }
 
   // Join tournament matchmaking queue (authenticated)
   @PostMapping("/live/matchmaking/tournament/{tournamentId}")
-  public ResponseEntity<ResponseWrapper<MatchmakingResultDTO>> joinTournamentMatchmaking(
+  public CompletableFuture<ResponseEntity<ResponseWrapper<MatchmakingResultDTO>>> joinTournamentMatchmaking(
     @PathVariable String tournamentId
   ) throws BusinessException {
     String username = getCurrentUsername();
 
-    MatchmakingResultDTO result = liveGameService.joinTournamentMatchmaking(username, tournamentId);
+    return liveGameService.joinTournamentMatchmaking(username, tournamentId)
+      .thenApply(this::toMatchmakingResponse);
+  }
 
+  private ResponseEntity<ResponseWrapper<MatchmakingResultDTO>> toMatchmakingResponse(
+    MatchmakingResultDTO result
+  ) {
+    // Unmatched results say why: timeout, left, superseded or failed
     String message = result.isMatched()
       ? "Match found! Game created."
-      : "No opponent found. Removed from matchmaking queue.";
+      : result.getMessage() != null
+        ? result.getMessage()
+        : "No opponent found. Removed from matchmaking queue.";
 
     return ResponseEntity.status(HttpStatus.OK).body(
       new ResponseWrapper<>(message, result)
@@ -184,6 +189,30 @@ public class GameController {
     );
   }
 
+  // Get the status of several live games in one request (public)
+  @GetMapping("/live/status")
+  public ResponseEntity<ResponseWrapper<List<GameStatusDTO>>> getGameStatuses(
+    @RequestParam List<String> ids
+  ) throws BusinessException {
+    List<GameStatusDTO> statuses = liveGameService.getGameStatuses(ids);
+
+    return ResponseEntity.ok(
+      new ResponseWrapper<>("Game statuses retrieved successfully", statuses)
+    );
+  }
+
+  // Get the status of every live game of a tournament (public)
+  @GetMapping("/live/tournament/{tournamentId}/status")
+  public ResponseEntity<ResponseWrapper<List<GameStatusDTO>>> getTournamentGameStatuses(
+    @PathVariable String tournamentId
+  ) throws BusinessException {
+    List<GameStatusDTO> statuses = liveGameService.getTournamentGameStatuses(tournamentId);
+
+    return ResponseEntity.ok(
+      new ResponseWrapper<>("Tournament game statuses retrieved successfully", statuses)
+    );
+  }
+
   // Get live game status (public)
   @GetMapping("/live/{gameId}/status")
   public ResponseEntity<ResponseWrapper<GameStatusDTO>> getGameStatus(
@@ -196,6 +225,28 @@ public class GameController {
     );
   }
 
+  // Stream live game events (public); a reconnecting client gets the events it missed
+  @GetMapping(value = "/live/{gameId}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+  public SseEmitter streamGameEvents(
+    @PathVariable String gameId,
+    @RequestHeader(value = "Last-Event-ID", required = false) Integer lastEventId
+  ) throws BusinessException {
+    return liveGameService.subscribeToGameEvents(gameId, lastEventId);
+  }
+
+  // Get the recent events of a live game from its event log (public)
+  @GetMapping("/live/{gameId}/history")
+  public ResponseEntity<ResponseWrapper<List<GameEventDTO>>> getGameEvents(
+    @PathVariable String gameId,
+    @RequestParam(defaultValue = "0") int afterPly
+  ) throws BusinessException {
+    List<GameEventDTO> events = liveGameService.getGameEvents(gameId, afterPly);
+
+    return ResponseEntity.ok(
+      new ResponseWrapper<>("Game events retrieved successfully", events)
+    );
+  }
+
   // Make a move (authenticated)
   @PostMapping("/live/{gameId}/move")
   public ResponseEntity<ResponseWrapper<MoveResultDTO>> makeMove(
@@ -203,7 +254,18 @@ public class GameController {
     @RequestBody MoveRequestDTO moveRequest
   ) throws BusinessException {
     String username = getCurrentUsername();
-    MoveResultDTO result = liveGameService.makeMove(gameId, username, moveRequest.getMove());
+    MoveResultDTO result = liveGameService.makeMove(
+      gameId,
+      username,
+      moveRequest.getMove(),
+      moveRequest.getPly()
+    );
+
+    if (MoveResultDTO.OUTCOME_CONFLICT.equals(result.getOutcome())) {
+      return ResponseEntity.status(HttpStatus.CONFLICT).body(
+        new ResponseWrapper<>("Move failed", result)
+      );
+    }
 
     if (!result.isSuccess()) {
       return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(
@@ -216,6 +278,7 @@ public class GameController {
       case MoveResultDTO.OUTCOME_STALEMATE -> "Stalemate! Game drawn.";
       case MoveResultDTO.OUTCOME_DRAW -> "Draw! Game over.";
       case MoveResultDTO.OUTCOME_CHECK -> "Check!";
+      case MoveResultDTO.OUTCOME_ALREADY_PLAYED -> "Move already played";
       default -> "Move made successfully";
     };
 
@@ -237,6 +300,33 @@ public class GameController {
     );
   }
 
+  // Queue premoves, replacing the previous ones (authenticated)
+  @PutMapping("/live/{gameId}/premoves")
+  public ResponseEntity<ResponseWrapper<Void>> setPremoves(
+    @PathVariable String gameId,
+    @RequestBody PremoveRequestDTO premoveRequest
+  ) throws BusinessException {
+    String username = getCurrentUsername();
+    liveGameService.setPremoves(gameId, username, premoveRequest.getPremoves());
+
+    return ResponseEntity.ok(
+      new ResponseWrapper<>("Premoves queued", null)
+    );
+  }
+
+  // Cancel premoves (authenticated)
+  @DeleteMapping("/live/{gameId}/premoves")
+  public ResponseEntity<ResponseWrapper<Void>> cancelPremoves(
+    @PathVariable String gameId
+  ) throws BusinessException {
+    String username = getCurrentUsername();
+    liveGameService.setPremoves(gameId, username, List.of());
+
+    return ResponseEntity.ok(
+      new ResponseWrapper<>("Premoves cancelled", null)
+    );
+  }
+
   private String getCurrentUsername() {
     Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
     return authentication.getName();
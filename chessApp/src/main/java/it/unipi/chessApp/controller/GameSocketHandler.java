@@ -0,0 +1,189 @@
+package it.unipi.chessApp.controller;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import it.unipi.chessApp.dto.GameEventDTO;
+import it.unipi.chessApp.dto.GameSocketReplyDTO;
+import it.unipi.chessApp.dto.GameSocketRequestDTO;
+import it.unipi.chessApp.dto.GameStatusDTO;
+import it.unipi.chessApp.model.LiveGameState;
+import it.unipi.chessApp.service.LiveGameService;
+import it.unipi.chessApp.service.exception.BusinessException;
+import it.unipi.chessApp.service.exception.GameOwnedElsewhereException;
+import it.unipi.chessApp.service.impl.GameEventBroadcaster;
+import jakarta.annotation.PostConstruct;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator;
+import org.springframework.web.socket.handler.TextWebSocketHandler;
+
+/**
+ * WebSocket gameplay channel of a player, on /games/live/{gameId}/ws.
+ * The player is authenticated once, at the handshake (see GameSocketHandshakeInterceptor);
+ * then moves, resignations and premoves are small JSON frames handled by LiveGameService
+ * like their HTTP counterparts. The server sends a "status" frame on connect, a "reply" or
+ * "error" frame per request, and pushes the game events (move, check, opening, result) as
+ * soon as they are published. The socket is closed after the result.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class GameSocketHandler extends TextWebSocketHandler {
+
+  public static final String ATTR_USERNAME = "username";
+  public static final String ATTR_GAME_ID = "gameId";
+
+  // Close code telling the client to reconnect to the instance of a "redirect" frame
+  private static final CloseStatus OWNED_ELSEWHERE = new CloseStatus(4307, "Game served by another instance");
+
+  private final LiveGameService liveGameService;
+  private final GameEventBroadcaster gameEventBroadcaster;
+  private final ObjectMapper objectMapper;
+  private final MeterRegistry meterRegistry;
+
+  private final Map<String, Player> players = new ConcurrentHashMap<>();
+
+  @Value("${live-game.ws.send-time-limit-ms:5000}")
+  private int sendTimeLimitMs;
+
+  @Value("${live-game.ws.send-buffer-size:65536}")
+  private int sendBufferSize;
+
+  @PostConstruct
+  void registerGauge() {
+    Gauge.builder("chess.game.sockets", players, Map::size)
+      .description("Players connected to a game WebSocket on this instance")
+      .register(meterRegistry);
+  }
+
+  @Override
+  public void afterConnectionEstablished(WebSocketSession session) throws Exception {
+    String gameId = (String) session.getAttributes().get(ATTR_GAME_ID);
+    String username = (String) session.getAttributes().get(ATTR_USERNAME);
+    // Events are pushed from event delivery threads while replies are sent from this one
+    Player player = new Player(
+      gameId,
+      username,
+      new ConcurrentWebSocketSessionDecorator(session, sendTimeLimitMs, sendBufferSize)
+    );
+    players.put(session.getId(), player);
+
+    // Followed before the status is read, so no event falls in between
+    gameEventBroadcaster.addListener(gameId, player);
+    GameStatusDTO status;
+    try {
+      status = liveGameService.getGameStatus(gameId);
+    } catch (BusinessException e) {
+      player.send(GameSocketReplyDTO.error(null, e.getMessage()));
+      player.session.close(CloseStatus.POLICY_VIOLATION);
+      return;
+    }
+
+    if (!username.equals(status.getWhitePlayer()) && !username.equals(status.getBlackPlayer())) {
+      player.send(GameSocketReplyDTO.error(null, "You are not a participant in this game"));
+      player.session.close(CloseStatus.POLICY_VIOLATION);
+      return;
+    }
+
+    player.send(GameSocketReplyDTO.status(status));
+    if (!LiveGameState.STATUS_IN_PROGRESS.equals(status.getGameStatus())) {
+      player.session.close(CloseStatus.NORMAL);
+    }
+  }
+
+  @Override
+  protected void handleTextMessage(WebSocketSession session, TextMessage message) throws Exception {
+    Player player = players.get(session.getId());
+    if (player == null) {
+      return;
+    }
+
+    GameSocketRequestDTO request;
+    try {
+      request = objectMapper.readValue(message.getPayload(), GameSocketRequestDTO.class);
+    } catch (JsonProcessingException e) {
+      player.send(GameSocketReplyDTO.error(null, "Invalid frame"));
+      return;
+    }
+
+    String id = request.getId();
+    try {
+      switch (request.getType() != null ? request.getType() : "") {
+        case GameSocketRequestDTO.TYPE_MOVE -> player.send(GameSocketReplyDTO.reply(
+          id,
+          liveGameService.makeMove(player.gameId, player.username, request.getMove(), request.getPly())
+        ));
+        case GameSocketRequestDTO.TYPE_RESIGN -> {
+          liveGameService.resignGame(player.gameId, player.username);
+          player.send(GameSocketReplyDTO.reply(id, null));
+        }
+        case GameSocketRequestDTO.TYPE_PREMOVES -> {
+          liveGameService.setPremoves(player.gameId, player.username, request.getPremoves());
+          player.send(GameSocketReplyDTO.reply(id, null));
+        }
+        default -> player.send(GameSocketReplyDTO.error(id, "Unknown frame type: " + request.getType()));
+      }
+    } catch (GameOwnedElsewhereException e) {
+      player.send(GameSocketReplyDTO.redirect(id, e.getOwnerUrl()));
+      player.session.close(OWNED_ELSEWHERE);
+    } catch (BusinessException e) {
+      player.send(GameSocketReplyDTO.error(id, e.getMessage()));
+    }
+  }
+
+  @Override
+  public void afterConnectionClosed(WebSocketSession session, CloseStatus status) {
+    Player player = players.remove(session.getId());
+    if (player != null) {
+      gameEventBroadcaster.removeListener(player.gameId, player);
+    }
+  }
+
+  @Override
+  public void handleTransportError(WebSocketSession session, Throwable exception) {
+    log.debug("Transport error on game WebSocket {}: {}", session.getId(), exception.getMessage());
+  }
+
+  /**
+   * A connected player, following the events of its game.
+   */
+  private class Player implements GameEventBroadcaster.GameEventListener {
+
+    private final String gameId;
+    private final String username;
+    private final WebSocketSession session;
+
+    private Player(String gameId, String username, WebSocketSession session) {
+      this.gameId = gameId;
+      this.username = username;
+      this.session = session;
+    }
+
+    @Override
+    public void onEvent(GameEventDTO event, String json) throws IOException {
+      if (!session.isOpen()) {
+        return;
+      }
+      session.sendMessage(new TextMessage(json));
+      if (GameEventDTO.TYPE_RESULT.equals(event.getType())) {
+        session.close(CloseStatus.NORMAL);
+      }
+    }
+
+    private void send(GameSocketReplyDTO reply) throws IOException {
+      if (session.isOpen()) {
+        session.sendMessage(new TextMessage(objectMapper.writeValueAsString(reply)));
+      }
+    }
+  }
+}
@@ -0,0 +1,32 @@
+package it.unipi.chessApp.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class GameEventDTO {
+    private String type;
+    private String gameId;
+    private int ply;
+    private String move;
+    private String fen;
+    private String nextTurn;
+    // Time left to each side when the event happened
+    private long whiteClockMs;
+    private long blackClockMs;
+    private String gameStatus;
+    private String outcome;
+    private String detectedOpening;
+    private String detectedOpeningEco;
+    private long timestamp;
+
+    public static final String TYPE_MOVE = "move";
+    public static final String TYPE_CHECK = "check";
+    public static final String TYPE_OPENING = "opening";
+    public static final String TYPE_RESULT = "result";
+    // Moves already reported were lost: the event holds the game as stored, to show instead
+    public static final String TYPE_RESYNC = "resync";
+}
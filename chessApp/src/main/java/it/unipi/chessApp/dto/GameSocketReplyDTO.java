@@ -0,0 +1,43 @@
+package it.unipi.chessApp.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+/**
+ * A frame sent by the server on the game WebSocket, other than the game events.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class GameSocketReplyDTO {
+    private String type;
+    // Id of the request answered, if any
+    private String id;
+    private Object data;
+    private String errorMessage;
+
+    public static final String TYPE_STATUS = "status";
+    public static final String TYPE_REPLY = "reply";
+    public static final String TYPE_ERROR = "error";
+    public static final String TYPE_REDIRECT = "redirect";
+
+    public static GameSocketReplyDTO status(GameStatusDTO status) {
+        return new GameSocketReplyDTO(TYPE_STATUS, null, status, null);
+    }
+
+    public static GameSocketReplyDTO reply(String id, Object data) {
+        return new GameSocketReplyDTO(TYPE_REPLY, id, data, null);
+    }
+
+    public static GameSocketReplyDTO error(String id, String errorMessage) {
+        return new GameSocketReplyDTO(TYPE_ERROR, id, null, errorMessage);
+    }
+
+    /**
+     * The game is served by another instance: the client must reconnect to its base URL.
+     */
+    public static GameSocketReplyDTO redirect(String id, String ownerUrl) {
+        return new GameSocketReplyDTO(TYPE_REDIRECT, id, ownerUrl, null);
+    }
+}
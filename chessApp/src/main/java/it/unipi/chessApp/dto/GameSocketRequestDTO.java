@@ -0,0 +1,25 @@
+package it.unipi.chessApp.dto;
+
+import java.util.List;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+/**
+ * A frame sent by a player on the game WebSocket.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class GameSocketRequestDTO {
+    // Echoed in the reply, so the client can match them
+    private String id;
+    private String type;
+    private String move;
+    private Integer ply;
+    private List<PremoveDTO> premoves;
+
+    public static final String TYPE_MOVE = "move";
+    public static final String TYPE_RESIGN = "resign";
+    public static final String TYPE_PREMOVES = "premoves";
+}
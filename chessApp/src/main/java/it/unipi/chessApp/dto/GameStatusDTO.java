@@ -19,4 +19,7 @@ public class GameStatusDTO {
     private long lastMoveAt;
     private String detectedOpening;
     private String detectedOpeningEco;
+    // Time left to each side at lastMoveAt; the clock of the side to move has been running since
+    private long whiteClockMs;
+    private long blackClockMs;
 }
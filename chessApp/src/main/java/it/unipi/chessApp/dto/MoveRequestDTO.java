@@ -9,4 +9,6 @@ import lombok.AllArgsConstructor;
 @AllArgsConstructor
 public class MoveRequestDTO {
     private String move;
+    // Ply number of the move, counted from 1: a move sent again for the same ply is not played twice
+    private Integer ply;
 }
@@ -21,11 +21,24 @@ public class MoveResultDTO {
     public static final String OUTCOME_CHECKMATE = "CHECKMATE";
     public static final String OUTCOME_STALEMATE = "STALEMATE";
     public static final String OUTCOME_DRAW = "DRAW";
+    public static final String OUTCOME_RESIGNATION = "RESIGNATION";
+    public static final String OUTCOME_TIMEOUT = "TIMEOUT";
+    public static final String OUTCOME_ABANDONED = "ABANDONED";
+    public static final String OUTCOME_ABORTED = "ABORTED";
+    public static final String OUTCOME_CONFLICT = "CONFLICT";
+    public static final String OUTCOME_ALREADY_PLAYED = "ALREADY_PLAYED";
 
     public static MoveResultDTO error(String errorMessage) {
         return new MoveResultDTO(false, null, null, null, null, errorMessage, null);
     }
 
+    /**
+     * The game was changed by another request while the move was made: nothing was written.
+     */
+    public static MoveResultDTO conflict(String errorMessage) {
+        return new MoveResultDTO(false, OUTCOME_CONFLICT, null, null, null, errorMessage, null);
+    }
+
     public static MoveResultDTO success(String outcome, String fen, String nextTurn, String gameStatus) {
         return new MoveResultDTO(true, outcome, fen, nextTurn, gameStatus, null, null);
     }
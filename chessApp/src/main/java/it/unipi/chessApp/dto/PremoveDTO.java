@@ -0,0 +1,14 @@
+package it.unipi.chessApp.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PremoveDTO {
+    // Opponent move (UCI) this premove answers, or null to answer any move
+    private String after;
+    private String move;
+}
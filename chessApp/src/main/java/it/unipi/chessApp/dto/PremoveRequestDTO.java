@@ -0,0 +1,13 @@
+package it.unipi.chessApp.dto;
+
+import java.util.List;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PremoveRequestDTO {
+    private List<PremoveDTO> premoves;
+}
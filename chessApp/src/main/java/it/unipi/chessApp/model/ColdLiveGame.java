@@ -0,0 +1,39 @@
+package it.unipi.chessApp.model;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.Field;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A live game spilled from Redis to MongoDB while nobody plays it.
+ * It keeps the Redis hash fields and the packed moves as they are, so the game
+ * is restored exactly when it is needed again. Games spilled before moves were packed
+ * have a UCI move list instead. The SAN of the moves is kept when it was recorded.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "live_games")
+public class ColdLiveGame {
+    @Id
+    private String id;
+
+    private Map<String, String> state;
+
+    private List<String> moves;
+
+    @Field("packed_moves")
+    private byte[] packedMoves;
+
+    @Field("san_moves")
+    private String sanMoves;
+
+    @Field("spilled_at")
+    private long spilledAt;
+}
@@ -7,6 +7,8 @@ import org.springframework.data.annotation.Id;
 import org.springframework.data.mongodb.core.mapping.Document;
 import org.springframework.data.mongodb.core.mapping.Field;
 
+import java.util.List;
+
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -46,4 +48,8 @@ public class Game {
     private String endTime;
 
     private boolean historical;
+
+    /** Buffers (of players or of a tournament) the game was already counted in, see GameService.markBuffered */
+    @Field("buffered_into")
+    private List<String> bufferedInto;
 }
@@ -1,10 +1,20 @@
 package it.unipi.chessApp.model;
 
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.AllArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+import it.unipi.chessApp.utils.PackedMoves;
+import it.unipi.chessApp.utils.TimeControl;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 @Data
 @NoArgsConstructor
@@ -20,11 +30,46 @@ public class LiveGameState {
     private String gameType;
     private long createdAt;
     private long lastMoveAt;
+    private int plies;
     
     // Opening detection fields
-    private List<String> moveHistory;
+    // Moves packed in 2 bytes each (see PackedMoves).
+    // Only loaded when the full move list is needed (see LiveGameRedisRepository)
+    private byte[] moveHistory;
+    // SAN of the same moves, space-separated, written as each move is played (null when not loaded,
+    // incomplete for games started before it was recorded)
+    private String sanMoves;
     private String detectedOpening;
     private String detectedOpeningEco;
+    // Book cursor: set once the game reaches a position outside the opening book
+    private boolean outOfBook;
+
+    // Repetition detection: Zobrist key of the current position (0 until the first move)
+    // and keys of the earlier positions since the last irreversible move
+    private long positionKey;
+    private long[] positionHistory = new long[0];
+    // Occurrences of each key of positionHistory, built from it the first time it is needed
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private transient Map<Long, Integer> positionCounts;
+
+    // Chess clocks: time left to each side when its turn started (lastMoveAt for the side to move).
+    // A base time of 0 means an untimed game (games created before clocks)
+    private long baseTimeMs;
+    private long incrementMs;
+    private long whiteClockMs;
+    private long blackClockMs;
+
+    // Premoves queued by each side, played right after the opponent's move.
+    // Entries are "trigger:move": the move is played if the opponent just played trigger ("*" for any move)
+    private List<String> whitePremoves = new ArrayList<>();
+    private List<String> blackPremoves = new ArrayList<>();
+
+    // Optimistic concurrency: bumped by every write, which only applies to the version it was read at
+    // (0 for games never written since their creation)
+    private long version;
 
     public static final String STARTING_FEN = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";
 
@@ -33,6 +78,9 @@ public class LiveGameState {
     public static final String STATUS_BLACK_WINS = "BLACK_WINS";
     public static final String STATUS_DRAW = "DRAW";
     public static final String STATUS_STALEMATE = "STALEMATE";
+    public static final String STATUS_ABORTED = "ABORTED";
+
+    public static final String ANY_MOVE = "*";
 
     public static LiveGameState createNewRegularGame(String gameId, String whitePlayer, String blackPlayer, String gameType) {
         LiveGameState state = new LiveGameState();
@@ -46,9 +94,11 @@ public class LiveGameState {
         state.setGameType(gameType);
         state.setCreatedAt(System.currentTimeMillis());
         state.setLastMoveAt(System.currentTimeMillis());
-        state.setMoveHistory(new ArrayList<>());
+        state.setMoveHistory(PackedMoves.EMPTY);
+        state.setSanMoves("");
         state.setDetectedOpening(null);
         state.setDetectedOpeningEco(null);
+        state.startClocks(TimeControl.forGameType(gameType));
         return state;
     }
 
@@ -64,9 +114,11 @@ public class LiveGameState {
         state.setGameType(null);
         state.setCreatedAt(System.currentTimeMillis());
         state.setLastMoveAt(System.currentTimeMillis());
-        state.setMoveHistory(new ArrayList<>());
+        state.setMoveHistory(PackedMoves.EMPTY);
+        state.setSanMoves("");
         state.setDetectedOpening(null);
         state.setDetectedOpeningEco(null);
+        state.startClocks(TimeControl.forTournament());
         return state;
     }
 
@@ -79,15 +131,149 @@ public class LiveGameState {
         return tournamentId != null && !tournamentId.isEmpty();
     }
 
+    public boolean isTimed() {
+        return baseTimeMs > 0;
+    }
+
+    /**
+     * Set both clocks to the base time of a time control (no clocks if null).
+     */
+    public void startClocks(TimeControl timeControl) {
+        baseTimeMs = timeControl != null ? timeControl.baseMs() : 0L;
+        incrementMs = timeControl != null ? timeControl.incrementMs() : 0L;
+        whiteClockMs = baseTimeMs;
+        blackClockMs = baseTimeMs;
+    }
+
+    /**
+     * When the side to move runs out of time, if it does not move before.
+     * White's clock runs from the creation of the game.
+     */
+    public long getClockDeadline() {
+        return lastMoveAt + (isWhiteTurn() ? whiteClockMs : blackClockMs);
+    }
+
+    /**
+     * Stop the clock of the side that just moved: charge the time it spent and add the increment.
+     * Must be called before lastMoveAt is moved to the time of the move.
+     * @param white Whether white made the move
+     */
+    public void pressClock(boolean white, long now) {
+        long spent = Math.max(now - lastMoveAt, 0);
+        if (white) {
+            whiteClockMs = whiteClockMs - spent + incrementMs;
+        } else {
+            blackClockMs = blackClockMs - spent + incrementMs;
+        }
+    }
+
+    /**
+     * @return The side that plays a ply, counted from 1: games start from the initial position
+     */
+    public static boolean isWhitePly(int ply) {
+        return ply % 2 == 1;
+    }
+
+    public List<String> getPremoves(boolean white) {
+        return white ? whitePremoves : blackPremoves;
+    }
+
+    public void setPremoves(boolean white, List<String> premoves) {
+        if (white) {
+            whitePremoves = premoves;
+        } else {
+            blackPremoves = premoves;
+        }
+    }
+
+    /**
+     * Take the next premove of a side once its opponent has moved. A premove expecting another
+     * reply means the line was not played: the whole queue of the side is dropped.
+     * @param opponentMove The move the opponent just made
+     * @return The move to play now, or null
+     */
+    public String takePremove(boolean white, String opponentMove) {
+        List<String> premoves = getPremoves(white);
+        if (premoves.isEmpty()) {
+            return null;
+        }
+        String next = premoves.get(0);
+        int separator = next.indexOf(':');
+        String trigger = next.substring(0, separator);
+        if (!ANY_MOVE.equals(trigger) && !trigger.equals(opponentMove)) {
+            setPremoves(white, new ArrayList<>());
+            return null;
+        }
+        setPremoves(white, new ArrayList<>(premoves.subList(1, premoves.size())));
+        return next.substring(separator + 1);
+    }
+
     /**
      * Add a move to the move history.
-     * @param move The move in SAN notation
+     * @param move The move, packed as by BitboardPosition
+     * @param san The move in SAN, check and mate marks included
+     */
+    public void addMove(int move, String san) {
+        plies++;
+        if (moveHistory != null) {
+            moveHistory = PackedMoves.append(moveHistory, move);
+        }
+        if (sanMoves != null) {
+            sanMoves = sanMoves.isEmpty() ? san : sanMoves + " " + san;
+        }
+    }
+
+    /**
+     * @return The SAN of all the moves, or null if it was not recorded for every move
      */
-    public void addMove(String move) {
-        if (moveHistory == null) {
-            moveHistory = new ArrayList<>();
+    public String getCompleteSanMoves() {
+        if (sanMoves == null) {
+            return null;
         }
-        moveHistory.add(move);
+        int recorded = sanMoves.isEmpty() ? 0 : sanMoves.split(" ").length;
+        return recorded == plies ? sanMoves : null;
+    }
+
+    /**
+     * Move to a new position and count how many times it has now occurred.
+     * After an irreversible move (capture, pawn move, loss of castling rights) no earlier
+     * position can come back, so the history restarts.
+     * @param key The Zobrist key of the new position
+     * @param irreversible Whether the move that led to it is irreversible
+     * @return How many times the position has occurred, this one included
+     */
+    public int recordPosition(long key, boolean irreversible) {
+        if (irreversible) {
+            positionHistory = new long[0];
+            positionCounts = new HashMap<>();
+        } else {
+            Map<Long, Integer> counts = positionCounts();
+            // The persisted form: at most 100 keys, as the fifty-move rule ends the game before
+            long[] history = Arrays.copyOf(positionHistory, positionHistory.length + 1);
+            history[positionHistory.length] = positionKey;
+            positionHistory = history;
+            counts.merge(positionKey, 1, Integer::sum);
+        }
+        positionKey = key;
+        // The key covers the side to move, so equal keys are the same position under the rule
+        return positionCounts().getOrDefault(key, 0) + 1;
+    }
+
+    public void setPositionHistory(long[] positionHistory) {
+        this.positionHistory = positionHistory;
+        this.positionCounts = null;
+    }
+
+    private Map<Long, Integer> positionCounts() {
+        if (positionCounts == null) {
+            positionCounts = new HashMap<>();
+            if (positionHistory != null) {
+                for (long key : positionHistory) {
+                    positionCounts.merge(key, 1, Integer::sum);
+                }
+            }
+        }
+        return positionCounts;
     }
 
     /**
@@ -95,28 +281,17 @@ public class LiveGameState {
      * @return The move count
      */
     public int getMoveCount() {
-        return moveHistory != null ? moveHistory.size() : 0;
+        return plies;
     }
 
     /**
-     * Get moves as a PGN-style string.
+     * Get moves as a PGN-style string, decoded from the packed history.
      * @return Moves formatted as "1. e4 e5 2. Nf3 Nc6 ..."
      */
     public String getMovesPgn() {
-        if (moveHistory == null || moveHistory.isEmpty()) {
+        if (PackedMoves.count(moveHistory) == 0) {
             return "";
         }
-        
-        StringBuilder pgn = new StringBuilder();
-        for (int i = 0; i < moveHistory.size(); i++) {
-            if (i % 2 == 0) {
-                if (i > 0) pgn.append(" ");
-                pgn.append((i / 2 + 1)).append(". ");
-            } else {
-                pgn.append(" ");
-            }
-            pgn.append(moveHistory.get(i));
-        }
-        return pgn.toString();
+        return PackedMoves.toPgn(moveHistory, STARTING_FEN);
     }
 }
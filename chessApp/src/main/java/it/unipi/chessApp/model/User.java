@@ -33,4 +33,19 @@ public class User {
     private String mail;
     private String password;
     private boolean admin = false;
+
+    /**
+     * Rating of the player in a time class ("bullet", "blitz", anything else counts as rapid),
+     * or 1000 for a player without stats.
+     */
+    public int getRatingFor(String timeClass) {
+        if (stats == null) {
+            return 1000;
+        }
+        return switch (timeClass) {
+            case "bullet" -> stats.getBullet();
+            case "blitz" -> stats.getBlitz();
+            default -> stats.getRapid();
+        };
+    }
 }
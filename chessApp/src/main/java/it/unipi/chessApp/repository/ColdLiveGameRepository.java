@@ -0,0 +1,9 @@
+package it.unipi.chessApp.repository;
+
+import it.unipi.chessApp.model.ColdLiveGame;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface ColdLiveGameRepository extends MongoRepository<ColdLiveGame, String> {
+}
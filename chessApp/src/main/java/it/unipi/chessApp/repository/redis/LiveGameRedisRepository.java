@@ -0,0 +1,1021 @@
+package it.unipi.chessApp.repository.redis;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import it.unipi.chessApp.config.RedisConfig;
+import it.unipi.chessApp.dto.GameEventDTO;
+import it.unipi.chessApp.model.LiveGameState;
+import it.unipi.chessApp.utils.BitboardPosition;
+import it.unipi.chessApp.utils.PackedMoves;
+import it.unipi.chessApp.utils.Zobrist;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.Limit;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.connection.RedisStreamCommands.XAddOptions;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.stream.StreamRecords;
+import org.springframework.data.redis.connection.stream.StringRecord;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations.TypedTuple;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Repository;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Redis storage of live games.
+ * A game is a hash of small fields under chess:game:{&lt;id&gt;} plus its moves, packed in 2 bytes
+ * each (see PackedMoves), in a string under chess:game:{&lt;id&gt;}:moves, so a move only writes
+ * the fields it changes and appends 2 bytes instead of rewriting the whole game.
+ * Games started before packed moves kept a list of UCI moves there; it is packed by their next move.
+ * The SAN of every move, computed when the move is validated, is appended alongside it to a string
+ * under chess:game:{&lt;id&gt;}:san, so a finished game is archived without replaying it.
+ * The keys of a game share its hash tag (see RedisKeys): scripts only combine keys of one game,
+ * and the global indexes are written by separate commands.
+ * <p>
+ * Every write of a game is also appended, by the script that applies it, to a capped stream under
+ * chess:game:{&lt;id&gt;}:log: entry &lt;version&gt;-1 holds the move played, the events published
+ * with it and the fields written that cannot be derived from the moves (the position fields are
+ * replayed instead). Every few writes, and when the game ends, the entry is a snapshot of the whole
+ * game instead, so the game can be rebuilt from the log alone (see {@link #recover})
+ * and the spectators who missed events can catch up (see {@link #findEvents}).
+ */
+@Repository
+@RequiredArgsConstructor
+@Slf4j
+public class LiveGameRedisRepository {
+
+    public static final String FIELD_GAME_ID = "gameId";
+    public static final String FIELD_WHITE_PLAYER = "whitePlayer";
+    public static final String FIELD_BLACK_PLAYER = "blackPlayer";
+    public static final String FIELD_FEN = "fen";
+    public static final String FIELD_STATUS = "status";
+    public static final String FIELD_LAST_MOVE = "lastMove";
+    public static final String FIELD_TOURNAMENT_ID = "tournamentId";
+    public static final String FIELD_GAME_TYPE = "gameType";
+    public static final String FIELD_CREATED_AT = "createdAt";
+    public static final String FIELD_LAST_MOVE_AT = "lastMoveAt";
+    public static final String FIELD_PLIES = "plies";
+    public static final String FIELD_OPENING = "detectedOpening";
+    public static final String FIELD_OPENING_ECO = "detectedOpeningEco";
+    public static final String FIELD_OUT_OF_BOOK = "outOfBook";
+    public static final String FIELD_POSITION_KEY = "positionKey";
+    public static final String FIELD_POSITION_HISTORY = "positionHistory";
+    public static final String FIELD_BASE_TIME = "baseTimeMs";
+    public static final String FIELD_INCREMENT = "incrementMs";
+    public static final String FIELD_WHITE_CLOCK = "whiteClockMs";
+    public static final String FIELD_BLACK_CLOCK = "blackClockMs";
+    public static final String FIELD_WHITE_PREMOVES = "whitePremoves";
+    public static final String FIELD_BLACK_PREMOVES = "blackPremoves";
+    public static final String FIELD_VERSION = "version";
+
+    // Fields of the event log entries, next to the game fields (which never start with "_")
+    private static final String LOG_SNAPSHOT = "_snapshot";
+    private static final String LOG_MOVES = "_moves";
+    private static final String LOG_SAN_MOVES = "_sanMoves";
+    private static final String LOG_MOVE = "_move";
+    private static final String LOG_SAN = "_san";
+    private static final String LOG_EVENTS = "_events";
+    private static final TypeReference<List<GameEventDTO>> EVENT_LIST = new TypeReference<>() {
+    };
+
+    /** Flag-fall deadlines of the timed games in progress, scored by epoch millis */
+    public static final String CLOCK_DEADLINES_KEY = "chess:games:clock-deadlines";
+    /** Games in progress, scored by the time of their last move (or creation) */
+    public static final String ACTIVE_GAMES_KEY = "chess:games:active";
+
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> CLAIM_DUE_ENTRIES_SCRIPT =
+        RedisScript.of(new ClassPathResource("scripts/claim_due_entries.lua"), List.class);
+    private static final RedisScript<Long> EVICT_IF_UNCHANGED_SCRIPT =
+        RedisScript.of(new ClassPathResource("scripts/evict_if_unchanged.lua"), Long.class);
+    private static final RedisScript<Long> RESTORE_GAME_SCRIPT =
+        RedisScript.of(new ClassPathResource("scripts/restore_game.lua"), Long.class);
+    private static final RedisScript<Long> WRITE_IF_VERSION_SCRIPT =
+        RedisScript.of(new ClassPathResource("scripts/write_if_version.lua"), Long.class);
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> READ_MOVES_SCRIPT =
+        RedisScript.of(new ClassPathResource("scripts/read_moves.lua"), List.class);
+
+    // Live state is read back right after it is written: master only
+    private final StringRedisTemplate redisTemplate;
+    // Status reads of dashboards, which tolerate replication lag
+    @Qualifier(RedisConfig.REPLICA_TEMPLATE)
+    private final StringRedisTemplate replicaRedisTemplate;
+    private final ObjectMapper objectMapper;
+    private final RedisBatchExecutor batchExecutor;
+
+    @Value("${live-game.expiration-hours:24}")
+    private int gameExpirationHours;
+
+    @Value("${live-game.event-log.snapshot-interval:20}")
+    private int logSnapshotInterval;
+
+    public static String stateKey(String gameId) {
+        return RedisKeys.game(gameId);
+    }
+
+    public static String movesKey(String gameId) {
+        return RedisKeys.gameMoves(gameId);
+    }
+
+    public static String sanKey(String gameId) {
+        return RedisKeys.gameSan(gameId);
+    }
+
+    public static String logKey(String gameId) {
+        return RedisKeys.gameLog(gameId);
+    }
+
+    public static String tournamentGamesKey(String tournamentId) {
+        return RedisKeys.tournamentGames(tournamentId);
+    }
+
+    /**
+     * Load a live game without its move list (use {@link #findMoves} when it is needed).
+     * @return The game, or null if not found
+     */
+    public LiveGameState find(String gameId) {
+        Map<Object, Object> hash;
+        try {
+            hash = redisTemplate.opsForHash().entries(stateKey(gameId));
+        } catch (DataAccessException e) {
+            if (e.getMessage() != null && e.getMessage().contains("WRONGTYPE")) {
+                return migrateLegacyJson(gameId);
+            }
+            throw e;
+        }
+        if (hash == null || hash.isEmpty()) {
+            return null;
+        }
+        return fromHash(hash);
+    }
+
+    /**
+     * Load a live game together with its full move list and its SAN.
+     */
+    public LiveGameState findWithMoves(String gameId) {
+        LiveGameState state = find(gameId);
+        if (state != null) {
+            state.setMoveHistory(findMoves(gameId));
+            state.setSanMoves(redisTemplate.opsForValue().get(sanKey(gameId)));
+        }
+        return state;
+    }
+
+    /**
+     * Load several games with their move lists and SAN in a single round-trip.
+     * @return The games found, in the order of the ids (missing games are skipped)
+     */
+    @SuppressWarnings("unchecked")
+    public List<LiveGameState> findAllWithMoves(List<String> gameIds) {
+        String script = READ_MOVES_SCRIPT.getScriptAsString();
+        RedisBatchExecutor.Batch batch = batchExecutor.pipeline("live-game.load");
+        for (String gameId : gameIds) {
+            batch.command(conn -> conn.hGetAll(stateKey(gameId)))
+                .command(conn -> conn.eval(script, ReturnType.MULTI, 1, movesKey(gameId), "0", "-1"))
+                .command(conn -> conn.get(sanKey(gameId)));
+        }
+        List<Object> replies = batch.execute();
+
+        List<LiveGameState> games = new ArrayList<>();
+        for (int i = 0; i + 2 < replies.size(); i += 3) {
+            Map<String, String> hash = (Map<String, String>) replies.get(i);
+            if (hash == null || hash.isEmpty()) {
+                continue;
+            }
+            LiveGameState state = fromHash(hash);
+            state.setMoveHistory(decodeMoves((List<?>) replies.get(i + 1)));
+            state.setSanMoves((String) replies.get(i + 2));
+            games.add(state);
+        }
+        return games;
+    }
+
+    /**
+     * Load several games without their move lists in a single round-trip.
+     * @return The games found, in the order of the ids (missing games are skipped)
+     */
+    public List<LiveGameState> findAll(List<String> gameIds) {
+        RedisBatchExecutor.Batch batch = batchExecutor.pipeline("live-game.load");
+        for (String gameId : gameIds) {
+            batch.command(conn -> conn.hGetAll(stateKey(gameId)));
+        }
+        return fromHashes(batch.execute());
+    }
+
+    /**
+     * Same as {@link #findAll}, read from a replica when one is up: a game may lag the master
+     * by the last writes. For status displays only, never for a read followed by a write.
+     */
+    public List<LiveGameState> findAllFromReplica(List<String> gameIds) {
+        List<Object> replies = replicaRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection conn = (StringRedisConnection) connection;
+            for (String gameId : gameIds) {
+                conn.hGetAll(stateKey(gameId));
+            }
+            return null;
+        });
+        return fromHashes(replies);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<LiveGameState> fromHashes(List<Object> replies) {
+        List<LiveGameState> games = new ArrayList<>();
+        for (Object reply : replies) {
+            Map<String, String> hash = (Map<String, String>) reply;
+            if (hash != null && !hash.isEmpty()) {
+                games.add(fromHash(hash));
+            }
+        }
+        return games;
+    }
+
+    /**
+     * @param ply Ply number, counted from 1
+     * @return The move played at that ply, packed, or {@link BitboardPosition#NO_MOVE} if it was not played
+     */
+    public int findMoveAt(String gameId, int ply) {
+        byte[] moves = readMoves(gameId, ply - 1, ply - 1);
+        return PackedMoves.count(moves) > 0 ? PackedMoves.get(moves, 0) : BitboardPosition.NO_MOVE;
+    }
+
+    /**
+     * @return The packed moves of a game (see PackedMoves)
+     */
+    public byte[] findMoves(String gameId) {
+        return readMoves(gameId, 0, -1);
+    }
+
+    private byte[] readMoves(String gameId, int first, int last) {
+        List<?> moves = redisTemplate.execute(READ_MOVES_SCRIPT, List.of(movesKey(gameId)),
+                                              String.valueOf(first), String.valueOf(last));
+        return decodeMoves(moves);
+    }
+
+    /**
+     * Write a whole game (hash and move list), and restart its event log from a snapshot.
+     */
+    public void save(LiveGameState state) {
+        String key = stateKey(state.getGameId());
+        String movesKey = movesKey(state.getGameId());
+        String sanKey = sanKey(state.getGameId());
+        String logKey = logKey(state.getGameId());
+        Map<String, String> fields = toHash(state);
+        byte[] moves = state.getMoveHistory();
+        String san = state.getSanMoves();
+        long ttlSeconds = TimeUnit.HOURS.toSeconds(gameExpirationHours);
+
+        RedisBatchExecutor.Batch batch = batchExecutor.pipeline("live-game.save")
+            .command(conn -> conn.hMSet(key, fields))
+            .command(conn -> conn.expire(key, ttlSeconds))
+            .delete(movesKey, sanKey, logKey);
+        if (PackedMoves.count(moves) > 0) {
+            // Raw bytes: the string commands would encode them as text
+            byte[] rawMovesKey = movesKey.getBytes(StandardCharsets.UTF_8);
+            batch.command(conn -> conn.stringCommands().set(rawMovesKey, moves))
+                .command(conn -> conn.expire(movesKey, ttlSeconds));
+        }
+        if (san != null && !san.isEmpty()) {
+            batch.command(conn -> conn.setEx(sanKey, ttlSeconds, san));
+        }
+        logSnapshot(batch, state, ttlSeconds);
+        batch.execute();
+    }
+
+    /**
+     * Queue the writes of a move: only the fields a move changes are written and the move
+     * is appended. All the keys get their expiration refreshed, as the game is still being played.
+     * The write only applies if the game is still at the version of the state (see {@link #isApplied}).
+     * @param move The move, packed as by BitboardPosition
+     * @param san The move in SAN, check and mate marks included
+     * @param openingChanged Whether the move changed the detected opening or left the book
+     * @param events The events published for the move, logged with it
+     */
+    public void recordMove(RedisBatchExecutor.Batch batch, LiveGameState state, int move, String san,
+                           boolean openingChanged, List<GameEventDTO> events) {
+        Map<String, String> fields = new LinkedHashMap<>();
+        fields.put(FIELD_STATUS, state.getStatus());
+        fields.put(FIELD_LAST_MOVE_AT, String.valueOf(state.getLastMoveAt()));
+        fields.put(FIELD_WHITE_CLOCK, String.valueOf(state.getWhiteClockMs()));
+        fields.put(FIELD_BLACK_CLOCK, String.valueOf(state.getBlackClockMs()));
+        // A move consumes or cancels the premoves of the side that answers it
+        fields.put(FIELD_WHITE_PREMOVES, String.join(" ", state.getWhitePremoves()));
+        fields.put(FIELD_BLACK_PREMOVES, String.join(" ", state.getBlackPremoves()));
+        if (openingChanged) {
+            putIfNotNull(fields, FIELD_OPENING, state.getDetectedOpening());
+            putIfNotNull(fields, FIELD_OPENING_ECO, state.getDetectedOpeningEco());
+            fields.put(FIELD_OUT_OF_BOOK, String.valueOf(state.isOutOfBook()));
+        }
+        // The position fields are left out of the log: replayLog derives them from the moves
+        int logged = fields.size();
+        fields.put(FIELD_FEN, state.getFen());
+        fields.put(FIELD_LAST_MOVE, state.getLastMove());
+        fields.put(FIELD_PLIES, String.valueOf(state.getPlies()));
+        fields.put(FIELD_POSITION_KEY, Long.toHexString(state.getPositionKey()));
+        fields.put(FIELD_POSITION_HISTORY, encodeKeys(state.getPositionHistory()));
+        long ttlSeconds = TimeUnit.HOURS.toSeconds(gameExpirationHours);
+        writeIfVersion(batch, state, fields, logged, String.valueOf(move), san, String.valueOf(ttlSeconds), events);
+    }
+
+    /**
+     * Queue a status change that is not a move (e.g. a resignation or a flag fall).
+     * The write only applies if the game is still at the version of the state (see {@link #isApplied}).
+     * @param events The events published for the change, logged with it
+     */
+    public void updateStatus(RedisBatchExecutor.Batch batch, LiveGameState state, List<GameEventDTO> events) {
+        Map<String, String> fields = new LinkedHashMap<>();
+        fields.put(FIELD_STATUS, state.getStatus());
+        fields.put(FIELD_LAST_MOVE_AT, String.valueOf(state.getLastMoveAt()));
+        fields.put(FIELD_WHITE_CLOCK, String.valueOf(state.getWhiteClockMs()));
+        fields.put(FIELD_BLACK_CLOCK, String.valueOf(state.getBlackClockMs()));
+        writeIfVersion(batch, state, fields, fields.size(), "", "", "", events);
+    }
+
+    /**
+     * Queue a change of the premoves of a game.
+     * The write only applies if the game is still at the version of the state (see {@link #isApplied}).
+     */
+    public void updatePremoves(RedisBatchExecutor.Batch batch, LiveGameState state) {
+        Map<String, String> fields = new LinkedHashMap<>();
+        fields.put(FIELD_WHITE_PREMOVES, String.join(" ", state.getWhitePremoves()));
+        fields.put(FIELD_BLACK_PREMOVES, String.join(" ", state.getBlackPremoves()));
+        writeIfVersion(batch, state, fields, fields.size(), "", "", "", List.of());
+    }
+
+    /**
+     * @param reply The reply to a write queued by {@link #recordMove}, {@link #updateStatus}
+     *              or {@link #updatePremoves}
+     * @return false if the game was written by someone else since it was read, or is gone:
+     *         nothing was written and the game must be read again
+     */
+    public static boolean isApplied(Object reply) {
+        return reply instanceof Long version && version > 0;
+    }
+
+    /**
+     * Compare-and-set in a script: no lock is taken, a write racing with another one fails
+     * instead. The state moves to the version it gets if the write applies, so the writes
+     * of a game kept in memory can be queued one after the other.
+     * The write is logged with its events in the same script; a write that ends the game, or
+     * comes after snapshot-interval others, logs a snapshot.
+     * @param logged Number of the first fields that are logged when the entry is not a snapshot
+     */
+    private void writeIfVersion(RedisBatchExecutor.Batch batch, LiveGameState state, Map<String, String> fields,
+                                int logged, String move, String san, String ttlSeconds, List<GameEventDTO> events) {
+        long version = state.getVersion() + 1;
+        boolean snapshot = !LiveGameState.STATUS_IN_PROGRESS.equals(state.getStatus())
+            || version % logSnapshotInterval == 0;
+        String script = WRITE_IF_VERSION_SCRIPT.getScriptAsString();
+        List<String> keysAndArgs = new ArrayList<>();
+        keysAndArgs.add(stateKey(state.getGameId()));
+        keysAndArgs.add(movesKey(state.getGameId()));
+        keysAndArgs.add(sanKey(state.getGameId()));
+        keysAndArgs.add(logKey(state.getGameId()));
+        keysAndArgs.add(String.valueOf(state.getVersion()));
+        keysAndArgs.add(ttlSeconds);
+        keysAndArgs.add(move);
+        keysAndArgs.add(san);
+        keysAndArgs.add(String.valueOf(logMaxEntries()));
+        keysAndArgs.add(snapshot ? "1" : "0");
+        keysAndArgs.add(events.isEmpty() ? "" : toJson(events));
+        keysAndArgs.add(String.valueOf(logged));
+        fields.forEach((field, value) -> {
+            keysAndArgs.add(field);
+            keysAndArgs.add(value);
+        });
+        String[] array = keysAndArgs.toArray(new String[0]);
+        batch.command(conn -> conn.eval(script, ReturnType.INTEGER, 4, array));
+        state.setVersion(version);
+    }
+
+    /**
+     * Queue the creation of a new game: its hash and the first snapshot of its event log, which
+     * expire with the other live games, and its entries in the activity and deadline indexes.
+     * Its moves are written by its first move.
+     */
+    public void create(RedisBatchExecutor.Batch batch, LiveGameState state) {
+        String key = stateKey(state.getGameId());
+        Map<String, String> fields = toHash(state);
+        long ttlSeconds = TimeUnit.HOURS.toSeconds(gameExpirationHours);
+        batch.command(conn -> conn.hMSet(key, fields))
+            .command(conn -> conn.expire(key, ttlSeconds));
+        logSnapshot(batch, state, ttlSeconds);
+        markActive(batch, state.getGameId(), state.getCreatedAt());
+        if (state.isTimed()) {
+            scheduleDeadline(batch, state.getGameId(), state.getClockDeadline());
+        }
+    }
+
+    /**
+     * Arguments of a script that creates a game in the same step as other writes (see
+     * pair_players.lua): the approximate maximum length of its event log, its flag-fall deadline
+     * ('' for an untimed game), then its fields. Its keys are {@link #stateKey}, {@link #logKey},
+     * {@link #ACTIVE_GAMES_KEY} and {@link #CLOCK_DEADLINES_KEY}.
+     */
+    public List<String> creationArgs(LiveGameState state) {
+        List<String> args = new ArrayList<>();
+        args.add(String.valueOf(logMaxEntries()));
+        args.add(state.isTimed() ? String.valueOf(state.getClockDeadline()) : "");
+        args.addAll(toFieldList(state));
+        return args;
+    }
+
+    /**
+     * Queue a snapshot of a game (with its moves and SAN, if loaded) to its event log,
+     * as the entry of its current version.
+     */
+    private void logSnapshot(RedisBatchExecutor.Batch batch, LiveGameState state, long ttlSeconds) {
+        String logKey = logKey(state.getGameId());
+        Map<String, String> entry = toHash(state);
+        entry.put(LOG_SNAPSHOT, "1");
+        entry.put(LOG_MOVES, HexFormat.of().formatHex(
+            state.getMoveHistory() != null ? state.getMoveHistory() : PackedMoves.EMPTY));
+        entry.put(LOG_SAN_MOVES, state.getSanMoves() != null ? state.getSanMoves() : "");
+        StringRecord record = StreamRecords.string(entry)
+            .withStreamKey(logKey)
+            .withId(RecordId.of(state.getVersion(), 1));
+        XAddOptions options = XAddOptions.maxlen(logMaxEntries()).approximateTrimming(true);
+        batch.command(conn -> conn.xAdd(record, options))
+            .command(conn -> conn.expire(logKey, ttlSeconds));
+    }
+
+    /**
+     * Length the event log is trimmed to: two snapshot intervals, so the last snapshot is always
+     * kept with the writes after it, and spectators can catch up on the interval before it.
+     */
+    private int logMaxEntries() {
+        return 2 * logSnapshotInterval;
+    }
+
+    /**
+     * Queue the flag-fall deadline of a timed game, replacing the previous one.
+     */
+    public void scheduleDeadline(RedisBatchExecutor.Batch batch, String gameId, long deadline) {
+        batch.command(conn -> conn.zAdd(CLOCK_DEADLINES_KEY, deadline, gameId));
+    }
+
+    /**
+     * Queue the activity time of a game in progress, replacing the previous one.
+     */
+    public void markActive(RedisBatchExecutor.Batch batch, String gameId, long lastMoveAt) {
+        batch.command(conn -> conn.zAdd(ACTIVE_GAMES_KEY, lastMoveAt, gameId));
+    }
+
+    /**
+     * Queue the removal of a game that ended from the deadline and activity indexes,
+     * and from the games of its tournament.
+     * @param tournamentId The tournament of the game, or null for a regular game (or an unknown one)
+     */
+    public void untrack(RedisBatchExecutor.Batch batch, String gameId, String tournamentId) {
+        batch.command(conn -> conn.zRem(CLOCK_DEADLINES_KEY, gameId))
+            .command(conn -> conn.zRem(ACTIVE_GAMES_KEY, gameId));
+        if (tournamentId != null && !tournamentId.isEmpty()) {
+            batch.command(conn -> conn.zRem(tournamentGamesKey(tournamentId), gameId));
+        }
+    }
+
+    /**
+     * Read from a replica when one is up, for status displays.
+     * @return The ids of the games in progress of a tournament, oldest first. Games that expired
+     *         without ending may still be listed until the index itself expires
+     */
+    public List<String> findTournamentGameIds(String tournamentId) {
+        Set<String> ids = replicaRedisTemplate.opsForZSet().range(tournamentGamesKey(tournamentId), 0, -1);
+        return ids != null ? new ArrayList<>(ids) : new ArrayList<>();
+    }
+
+    /**
+     * @return Up to limit games whose deadline is not after the given time, with their deadline
+     */
+    public Map<String, Long> findOverdue(long until, int limit) {
+        return rangeByScore(CLOCK_DEADLINES_KEY, until, limit);
+    }
+
+    /**
+     * @return Up to limit games with no move since the given time, oldest first, with their last move time
+     */
+    public Map<String, Long> findIdle(long since, int limit) {
+        return rangeByScore(ACTIVE_GAMES_KEY, since, limit);
+    }
+
+    /**
+     * Atomically take a passed deadline out of the deadline set, so a single instance finishes the game.
+     * Fails if the deadline has moved since it was read (a move was made in time) or is not due yet.
+     * @return true if this caller owns the flag fall
+     */
+    public boolean claimDeadline(String gameId, long deadline, long now) {
+        return claimDue(CLOCK_DEADLINES_KEY, Map.of(gameId, deadline), now).contains(gameId);
+    }
+
+    /**
+     * Atomically take idle games out of the activity index, so a single instance reaps each of them.
+     * A game that moved since it was read is not claimed.
+     * @param games Game ids with the last move time read from {@link #findIdle}
+     * @return The ids of the games now owned by the caller
+     */
+    public Set<String> claimIdle(Map<String, Long> games, long since) {
+        return claimDue(ACTIVE_GAMES_KEY, games, since);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Set<String> claimDue(String key, Map<String, Long> entries, long cutoff) {
+        if (entries.isEmpty()) {
+            return Set.of();
+        }
+        List<String> args = new ArrayList<>();
+        args.add(String.valueOf(cutoff));
+        entries.forEach((gameId, score) -> {
+            args.add(gameId);
+            args.add(String.valueOf(score));
+        });
+        List<Long> flags = redisTemplate.execute(CLAIM_DUE_ENTRIES_SCRIPT, List.of(key), args.toArray());
+
+        Set<String> claimed = new LinkedHashSet<>();
+        int i = 0;
+        for (String gameId : entries.keySet()) {
+            if (flags != null && i < flags.size() && flags.get(i) == 1L) {
+                claimed.add(gameId);
+            }
+            i++;
+        }
+        return claimed;
+    }
+
+    private Map<String, Long> rangeByScore(String key, long until, int limit) {
+        Set<TypedTuple<String>> entries = redisTemplate.opsForZSet()
+            .rangeByScoreWithScores(key, 0, until, 0, limit);
+        Map<String, Long> range = new LinkedHashMap<>();
+        if (entries != null) {
+            for (TypedTuple<String> entry : entries) {
+                if (entry.getValue() != null && entry.getScore() != null) {
+                    range.put(entry.getValue(), entry.getScore().longValue());
+                }
+            }
+        }
+        return range;
+    }
+
+    /**
+     * Evict games copied to another store, in one round-trip. A game written since it was
+     * read (its version changed) is kept, and its copy is stale.
+     * @return The ids of the evicted games
+     */
+    public Set<String> evictIfUnchanged(List<LiveGameState> games) {
+        String script = EVICT_IF_UNCHANGED_SCRIPT.getScriptAsString();
+        RedisBatchExecutor.Batch batch = batchExecutor.pipeline("live-game.evict");
+        for (LiveGameState state : games) {
+            String[] keysAndArgs = {
+                stateKey(state.getGameId()), movesKey(state.getGameId()), sanKey(state.getGameId()),
+                logKey(state.getGameId()), String.valueOf(state.getVersion())
+            };
+            batch.command(conn -> conn.eval(script, ReturnType.INTEGER, 4, keysAndArgs));
+        }
+        List<Object> replies = batch.execute();
+
+        Set<String> evicted = new LinkedHashSet<>();
+        for (int i = 0; i < games.size() && i < replies.size(); i++) {
+            if (Long.valueOf(1L).equals(replies.get(i))) {
+                evicted.add(games.get(i).getGameId());
+            }
+        }
+        return evicted;
+    }
+
+    /**
+     * Put a game back from its hash fields and moves, unless it is already in Redis, restart
+     * its event log from a snapshot and mark it active as of now. The activity index is in
+     * another slot than the game: it is written once the game is back.
+     * @return true if the game was restored
+     */
+    public boolean restore(String gameId, Map<String, String> fields, byte[] moves, String san) {
+        long now = System.currentTimeMillis();
+        List<String> args = new ArrayList<>();
+        args.add(String.valueOf(TimeUnit.HOURS.toSeconds(gameExpirationHours)));
+        args.add(san != null ? san : "");
+        args.add(String.valueOf(PackedMoves.count(moves)));
+        for (int i = 0; i < PackedMoves.count(moves); i++) {
+            args.add(String.valueOf(PackedMoves.get(moves, i)));
+        }
+        fields.forEach((field, value) -> {
+            args.add(field);
+            args.add(value);
+        });
+        args.add(String.valueOf(logMaxEntries()));
+        Long restored = redisTemplate.execute(RESTORE_GAME_SCRIPT,
+            List.of(stateKey(gameId), movesKey(gameId), sanKey(gameId), logKey(gameId)), args.toArray());
+        if (restored == null || restored != 1L) {
+            return false;
+        }
+        redisTemplate.opsForZSet().add(ACTIVE_GAMES_KEY, gameId, now);
+        return true;
+    }
+
+    /**
+     * Read the events logged for a game, e.g. for a spectator catching up after a reconnection.
+     * The log is capped: only the events of its last entries are kept.
+     * @param afterPly Only the events of later plies are returned (0 for all)
+     * @return The events in the order they were published, or null if the game has no log
+     */
+    public List<GameEventDTO> findEvents(String gameId, int afterPly) {
+        List<MapRecord<String, Object, Object>> records = readLog(gameId);
+        if (records.isEmpty()) {
+            return null;
+        }
+        List<GameEventDTO> events = new ArrayList<>();
+        for (MapRecord<String, Object, Object> record : records) {
+            String json = string(record.getValue(), LOG_EVENTS);
+            if (json == null) {
+                continue;
+            }
+            try {
+                for (GameEventDTO event : objectMapper.readValue(json, EVENT_LIST)) {
+                    if (event.getPly() > afterPly) {
+                        events.add(event);
+                    }
+                }
+            } catch (JsonProcessingException e) {
+                log.warn("Skipping unreadable events of game {} at {}: {}", gameId, record.getId(), e.getMessage());
+            }
+        }
+        return events;
+    }
+
+    /**
+     * Rebuild a game from its event log: its last snapshot, then the writes logged after it, whose
+     * moves are replayed from the position of the snapshot to derive the position fields. For a game whose state keys are gone while its log is still there, e.g. a key evicted
+     * under memory pressure (Redis evicts keys one at a time).
+     * @return The game with its moves and SAN, or null if its log holds no snapshot
+     */
+    public LiveGameState replayLog(String gameId) {
+        List<MapRecord<String, Object, Object>> records = readLogSinceSnapshot(gameId);
+        if (records.isEmpty()) {
+            return null;
+        }
+
+        // Moves and SAN are sized once: the snapshot's, plus one per move logged after it
+        Map<Object, Object> snapshot = records.get(0).getValue();
+        byte[] snapshotMoves = HexFormat.of().parseHex(string(snapshot, LOG_MOVES));
+        int ply = PackedMoves.count(snapshotMoves);
+        int logged = 0;
+        for (MapRecord<String, Object, Object> record : records) {
+            if (record.getValue().containsKey(LOG_MOVE)) {
+                logged++;
+            }
+        }
+        byte[] moves = Arrays.copyOf(snapshotMoves, snapshotMoves.length + 2 * logged);
+        StringBuilder san = new StringBuilder(string(snapshot, LOG_SAN_MOVES));
+
+        Map<String, String> hash = new LinkedHashMap<>();
+        for (MapRecord<String, Object, Object> record : records) {
+            Map<Object, Object> entry = record.getValue();
+            if (entry.containsKey(LOG_MOVE)) {
+                PackedMoves.set(moves, ply++, Integer.parseInt(string(entry, LOG_MOVE)));
+                if (!san.isEmpty()) {
+                    san.append(' ');
+                }
+                san.append(string(entry, LOG_SAN));
+            }
+            entry.forEach((field, value) -> {
+                if (!field.toString().startsWith("_")) {
+                    hash.put(field.toString(), value.toString());
+                }
+            });
+            // The entry of a write is the version it gave the game
+            hash.put(FIELD_VERSION, String.valueOf(record.getId().getTimestamp()));
+        }
+
+        LiveGameState state = fromHash(hash);
+        replayPosition(state, fromHash(snapshot), moves, PackedMoves.count(snapshotMoves));
+        state.setMoveHistory(moves);
+        state.setSanMoves(san.toString());
+        return state;
+    }
+
+    /**
+     * Set the position fields of a game rebuilt from its log, as the moves played after its
+     * snapshot left them, the same way as when the moves were made.
+     * @param snapshot The game as of the snapshot
+     * @param first Index of the first move played after the snapshot
+     */
+    private static void replayPosition(LiveGameState state, LiveGameState snapshot, byte[] moves, int first) {
+        state.setFen(snapshot.getFen());
+        state.setLastMove(snapshot.getLastMove());
+        state.setPlies(snapshot.getPlies());
+        state.setPositionKey(snapshot.getPositionKey());
+        state.setPositionHistory(snapshot.getPositionHistory());
+        int count = PackedMoves.count(moves);
+        if (first == count) {
+            return;
+        }
+
+        BitboardPosition position = BitboardPosition.fromFen(snapshot.getFen());
+        if (state.getPositionKey() == 0L) {
+            state.setPositionKey(Zobrist.positionKey(position));
+        }
+        for (int i = first; i < count; i++) {
+            int move = PackedMoves.get(moves, i);
+            long keyDelta = Zobrist.moveDelta(position, move);
+            int castlingRights = position.getCastlingRights();
+            position.play(move);
+            boolean irreversible = position.getHalfMoveClock() == 0 || castlingRights != position.getCastlingRights();
+            state.recordPosition(state.getPositionKey() ^ keyDelta ^ Zobrist.rightsKey(position), irreversible);
+        }
+        state.setFen(position.toFen());
+        state.setLastMove(PackedMoves.toUci(PackedMoves.get(moves, count - 1)));
+        state.setPlies(snapshot.getPlies() + count - first);
+    }
+
+    /**
+     * Put back a game lost from Redis but still in its event log (see {@link #replayLog}).
+     * A game still in progress is restored and marked active; a finished one is only read.
+     * @return The game without its move list, or null if it could not be rebuilt
+     */
+    public LiveGameState recover(String gameId) {
+        LiveGameState state = replayLog(gameId);
+        if (state == null) {
+            return null;
+        }
+        if (LiveGameState.STATUS_IN_PROGRESS.equals(state.getStatus())
+                && !restore(gameId, toHash(state), state.getMoveHistory(), state.getSanMoves())) {
+            // Written back meanwhile: that copy wins
+            return find(gameId);
+        }
+        log.warn("Recovered live game {} at version {} from its event log", gameId, state.getVersion());
+        state.setMoveHistory(null);
+        state.setSanMoves(null);
+        return state;
+    }
+
+    private List<MapRecord<String, Object, Object>> readLog(String gameId) {
+        List<MapRecord<String, Object, Object>> records =
+            redisTemplate.opsForStream().range(logKey(gameId), Range.unbounded());
+        return records != null ? records : List.of();
+    }
+
+    /**
+     * Read the event log of a game backwards from its end to its last snapshot, a page at a time.
+     * A snapshot is logged every snapshot-interval writes, so one page is normally enough.
+     * @return The last snapshot and the entries after it, oldest first, or an empty list if the
+     *         log holds no snapshot
+     */
+    private List<MapRecord<String, Object, Object>> readLogSinceSnapshot(String gameId) {
+        String key = logKey(gameId);
+        int pageSize = logSnapshotInterval + 1;
+        List<MapRecord<String, Object, Object>> newestFirst = new ArrayList<>();
+        Range<String> range = Range.unbounded();
+        RecordId bound = null;
+        while (true) {
+            List<MapRecord<String, Object, Object>> page =
+                redisTemplate.opsForStream().reverseRange(key, range, Limit.limit().count(pageSize));
+            if (page == null || page.isEmpty()) {
+                return List.of();
+            }
+            for (MapRecord<String, Object, Object> record : page) {
+                // Pages after the first start from the entry they were read from
+                if (record.getId().equals(bound)) {
+                    continue;
+                }
+                newestFirst.add(record);
+                if (record.getValue().containsKey(LOG_SNAPSHOT)) {
+                    Collections.reverse(newestFirst);
+                    return newestFirst;
+                }
+            }
+            if (page.size() < pageSize) {
+                return List.of();
+            }
+            bound = page.get(page.size() - 1).getId();
+            range = Range.leftUnbounded(Range.Bound.inclusive(bound.getValue()));
+        }
+    }
+
+    private String toJson(List<GameEventDTO> events) {
+        try {
+            return objectMapper.writeValueAsString(events);
+        } catch (JsonProcessingException e) {
+            // The write still applies: only its events are missing from the log
+            log.error("Failed to serialize the events of game {}: {}", events.get(0).getGameId(), e.getMessage());
+            return "";
+        }
+    }
+
+    /**
+     * Queue the deletion of a game, e.g. one aborted before anything worth archiving was played.
+     */
+    public void delete(RedisBatchExecutor.Batch batch, String gameId) {
+        batch.delete(stateKey(gameId), movesKey(gameId), sanKey(gameId), logKey(gameId));
+    }
+
+    /**
+     * Queue the removal of the expiration of a game, e.g. until it has been archived.
+     */
+    public void persist(RedisBatchExecutor.Batch batch, String gameId) {
+        batch.command(conn -> conn.persist(stateKey(gameId)))
+            .command(conn -> conn.persist(movesKey(gameId)))
+            .command(conn -> conn.persist(sanKey(gameId)))
+            .command(conn -> conn.persist(logKey(gameId)));
+    }
+
+    /**
+     * Queue a new expiration for a game.
+     */
+    public void expire(RedisBatchExecutor.Batch batch, String gameId, long seconds) {
+        batch.command(conn -> conn.expire(stateKey(gameId), seconds))
+            .command(conn -> conn.expire(movesKey(gameId), seconds))
+            .command(conn -> conn.expire(sanKey(gameId), seconds))
+            .command(conn -> conn.expire(logKey(gameId), seconds));
+    }
+
+    /**
+     * Flatten the fields of a game into field/value pairs, e.g. to pass them to a script.
+     * Null fields and the move list are left out.
+     */
+    public static List<String> toFieldList(LiveGameState state) {
+        List<String> list = new ArrayList<>();
+        toHash(state).forEach((field, value) -> {
+            list.add(field);
+            list.add(value);
+        });
+        return list;
+    }
+
+    public static Map<String, String> toHash(LiveGameState state) {
+        Map<String, String> fields = new LinkedHashMap<>();
+        putIfNotNull(fields, FIELD_GAME_ID, state.getGameId());
+        putIfNotNull(fields, FIELD_WHITE_PLAYER, state.getWhitePlayer());
+        putIfNotNull(fields, FIELD_BLACK_PLAYER, state.getBlackPlayer());
+        putIfNotNull(fields, FIELD_FEN, state.getFen());
+        putIfNotNull(fields, FIELD_STATUS, state.getStatus());
+        putIfNotNull(fields, FIELD_LAST_MOVE, state.getLastMove());
+        putIfNotNull(fields, FIELD_TOURNAMENT_ID, state.getTournamentId());
+        putIfNotNull(fields, FIELD_GAME_TYPE, state.getGameType());
+        fields.put(FIELD_CREATED_AT, String.valueOf(state.getCreatedAt()));
+        fields.put(FIELD_LAST_MOVE_AT, String.valueOf(state.getLastMoveAt()));
+        fields.put(FIELD_PLIES, String.valueOf(state.getPlies()));
+        putIfNotNull(fields, FIELD_OPENING, state.getDetectedOpening());
+        putIfNotNull(fields, FIELD_OPENING_ECO, state.getDetectedOpeningEco());
+        fields.put(FIELD_OUT_OF_BOOK, String.valueOf(state.isOutOfBook()));
+        fields.put(FIELD_POSITION_KEY, Long.toHexString(state.getPositionKey()));
+        fields.put(FIELD_POSITION_HISTORY, encodeKeys(state.getPositionHistory()));
+        fields.put(FIELD_BASE_TIME, String.valueOf(state.getBaseTimeMs()));
+        fields.put(FIELD_INCREMENT, String.valueOf(state.getIncrementMs()));
+        fields.put(FIELD_WHITE_CLOCK, String.valueOf(state.getWhiteClockMs()));
+        fields.put(FIELD_BLACK_CLOCK, String.valueOf(state.getBlackClockMs()));
+        fields.put(FIELD_WHITE_PREMOVES, String.join(" ", state.getWhitePremoves()));
+        fields.put(FIELD_BLACK_PREMOVES, String.join(" ", state.getBlackPremoves()));
+        fields.put(FIELD_VERSION, String.valueOf(state.getVersion()));
+        return fields;
+    }
+
+    public static LiveGameState fromHash(Map<?, ?> hash) {
+        LiveGameState state = new LiveGameState();
+        state.setGameId(string(hash, FIELD_GAME_ID));
+        state.setWhitePlayer(string(hash, FIELD_WHITE_PLAYER));
+        state.setBlackPlayer(string(hash, FIELD_BLACK_PLAYER));
+        state.setFen(string(hash, FIELD_FEN));
+        state.setStatus(string(hash, FIELD_STATUS));
+        state.setLastMove(string(hash, FIELD_LAST_MOVE));
+        state.setTournamentId(string(hash, FIELD_TOURNAMENT_ID));
+        state.setGameType(string(hash, FIELD_GAME_TYPE));
+        state.setCreatedAt(number(hash, FIELD_CREATED_AT));
+        state.setLastMoveAt(number(hash, FIELD_LAST_MOVE_AT));
+        state.setPlies((int) number(hash, FIELD_PLIES));
+        state.setDetectedOpening(string(hash, FIELD_OPENING));
+        state.setDetectedOpeningEco(string(hash, FIELD_OPENING_ECO));
+        state.setOutOfBook(Boolean.parseBoolean(string(hash, FIELD_OUT_OF_BOOK)));
+        String positionKey = string(hash, FIELD_POSITION_KEY);
+        state.setPositionKey(positionKey != null ? Long.parseUnsignedLong(positionKey, 16) : 0L);
+        state.setPositionHistory(decodeKeys(string(hash, FIELD_POSITION_HISTORY)));
+        state.setBaseTimeMs(number(hash, FIELD_BASE_TIME));
+        state.setIncrementMs(number(hash, FIELD_INCREMENT));
+        state.setWhiteClockMs(number(hash, FIELD_WHITE_CLOCK));
+        state.setBlackClockMs(number(hash, FIELD_BLACK_CLOCK));
+        state.setWhitePremoves(decodeList(string(hash, FIELD_WHITE_PREMOVES)));
+        state.setBlackPremoves(decodeList(string(hash, FIELD_BLACK_PREMOVES)));
+        state.setVersion(number(hash, FIELD_VERSION));
+        return state;
+    }
+
+    /**
+     * Games created before the hash layout are stored as a single JSON string:
+     * convert them in place the first time they are read.
+     */
+    private LiveGameState migrateLegacyJson(String gameId) {
+        String json = redisTemplate.opsForValue().get(stateKey(gameId));
+        if (json == null) {
+            return null;
+        }
+        try {
+            // The JSON layout kept the moves as a UCI string array
+            ObjectNode node = (ObjectNode) objectMapper.readTree(json);
+            JsonNode uciMoves = node.remove("moveHistory");
+            LiveGameState state = objectMapper.treeToValue(node, LiveGameState.class);
+            List<String> moves = new ArrayList<>();
+            if (uciMoves != null) {
+                uciMoves.forEach(move -> moves.add(move.asText()));
+            }
+            state.setMoveHistory(PackedMoves.fromUci(moves));
+            state.setPlies(moves.size());
+            redisTemplate.delete(stateKey(gameId));
+            save(state);
+            log.info("Migrated live game {} from JSON to hash layout", gameId);
+            state.setMoveHistory(null);
+            return state;
+        } catch (Exception e) {
+            throw new IllegalStateException("Error reading game state", e);
+        }
+    }
+
+    /**
+     * Position keys are stored as fixed-width hex, 16 characters per key.
+     */
+    private static String encodeKeys(long[] keys) {
+        if (keys == null || keys.length == 0) {
+            return "";
+        }
+        StringBuilder encoded = new StringBuilder(keys.length * 16);
+        for (long key : keys) {
+            String hex = Long.toHexString(key);
+            encoded.append("0".repeat(16 - hex.length())).append(hex);
+        }
+        return encoded.toString();
+    }
+
+    private static long[] decodeKeys(String encoded) {
+        if (encoded == null || encoded.isEmpty()) {
+            return new long[0];
+        }
+        long[] keys = new long[encoded.length() / 16];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = Long.parseUnsignedLong(encoded, i * 16, i * 16 + 16, 16);
+        }
+        return keys;
+    }
+
+    /**
+     * @param reply Reply of read_moves.lua: packed moves as numbers, or UCI moves for a game
+     *              not packed yet
+     */
+    private static byte[] decodeMoves(List<?> reply) {
+        if (reply == null || reply.isEmpty()) {
+            return PackedMoves.EMPTY;
+        }
+        byte[] moves = new byte[reply.size() * 2];
+        int index = 0;
+        for (Object move : reply) {
+            if (move instanceof Number number) {
+                PackedMoves.set(moves, index++, number.intValue());
+            } else {
+                String uci = move instanceof byte[] bytes ? new String(bytes, StandardCharsets.UTF_8) : String.valueOf(move);
+                PackedMoves.set(moves, index++, BitboardPosition.parseMove(uci));
+            }
+        }
+        return moves;
+    }
+
+    private static List<String> decodeList(String encoded) {
+        if (encoded == null || encoded.isEmpty()) {
+            return new ArrayList<>();
+        }
+        return new ArrayList<>(List.of(encoded.split(" ")));
+    }
+
+    private static void putIfNotNull(Map<String, String> fields, String field, String value) {
+        if (value != null) {
+            fields.put(field, value);
+        }
+    }
+
+    private static String string(Map<?, ?> hash, String field) {
+        Object value = hash.get(field);
+        return value != null ? value.toString() : null;
+    }
+
+    private static long number(Map<?, ?> hash, String field) {
+        Object value = hash.get(field);
+        return value != null ? Long.parseLong(value.toString()) : 0L;
+    }
+}
@@ -0,0 +1,124 @@
+package it.unipi.chessApp.repository.redis;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import it.unipi.chessApp.config.RedisConfig;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Sends several Redis commands in a single round-trip.
+ * Commands are collected in a {@link Batch} and written together, either pipelined or
+ * wrapped in MULTI/EXEC when they must be applied atomically. Redis Cluster connections do not
+ * support MULTI/EXEC: in cluster mode transactions are pipelined, so atomic batches must be a
+ * single command (e.g. a DEL of keys of one slot) or a script. Every batch is tagged
+ * with an operation name: the round-trips saved and the batch latency are published
+ * per operation (chess.redis.batch.roundtrips.saved, chess.redis.batch.latency).
+ */
+@Component
+@RequiredArgsConstructor
+public class RedisBatchExecutor {
+
+    private final StringRedisTemplate redisTemplate;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${redis.mode:" + RedisConfig.MASTER_REPLICA_MODE + "}")
+    private String mode;
+
+    /**
+     * Start a pipelined batch: commands are applied in order but other clients may interleave.
+     * @param operation Name of the operation, used as metric tag
+     */
+    public Batch pipeline(String operation) {
+        return new Batch(operation, false);
+    }
+
+    /**
+     * Start a batch applied atomically with MULTI/EXEC, still in a single round-trip
+     * (pipelined in cluster mode).
+     * @param operation Name of the operation, used as metric tag
+     */
+    public Batch transaction(String operation) {
+        return new Batch(operation, !RedisConfig.CLUSTER_MODE.equals(mode));
+    }
+
+    public class Batch {
+
+        private final String operation;
+        private final boolean transactional;
+        private final List<Consumer<StringRedisConnection>> commands = new ArrayList<>();
+
+        private Batch(String operation, boolean transactional) {
+            this.operation = operation;
+            this.transactional = transactional;
+        }
+
+        /**
+         * Queue one command. The consumer must issue exactly one command on the connection.
+         */
+        public Batch command(Consumer<StringRedisConnection> command) {
+            commands.add(command);
+            return this;
+        }
+
+        public Batch delete(String... keys) {
+            return command(conn -> conn.del(keys));
+        }
+
+        public int size() {
+            return commands.size();
+        }
+
+        /**
+         * Send all queued commands.
+         * @return The command replies, in queue order (empty if nothing was queued)
+         */
+        public List<Object> execute() {
+            if (commands.isEmpty()) {
+                return Collections.emptyList();
+            }
+
+            List<Object> results = latency(operation).record(() ->
+                redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                    StringRedisConnection conn = (StringRedisConnection) connection;
+                    if (transactional) {
+                        conn.multi();
+                    }
+                    commands.forEach(command -> command.accept(conn));
+                    if (transactional) {
+                        conn.exec();
+                    }
+                    return null;
+                }));
+
+            if (commands.size() > 1) {
+                roundTripsSaved(operation).increment(commands.size() - 1);
+            }
+            return results != null ? results : Collections.emptyList();
+        }
+    }
+
+    private Counter roundTripsSaved(String operation) {
+        return Counter.builder("chess.redis.batch.roundtrips.saved")
+            .description("Redis round-trips avoided by sending commands in a single batch")
+            .tag("operation", operation)
+            .register(meterRegistry);
+    }
+
+    private Timer latency(String operation) {
+        return Timer.builder("chess.redis.batch.latency")
+            .description("Time spent sending a Redis batch and reading its replies")
+            .tag("operation", operation)
+            .register(meterRegistry);
+    }
+}
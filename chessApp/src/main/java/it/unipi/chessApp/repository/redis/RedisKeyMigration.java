@@ -0,0 +1,92 @@
+package it.unipi.chessApp.repository.redis;
+
+import it.unipi.chessApp.config.RedisConfig;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Renames the keys written before they were hash-tagged (see RedisKeys), e.g.
+ * chess:tournament:&lt;id&gt;:subscribers to chess:tournament:{&lt;id&gt;}:subscribers, so tournaments,
+ * games in progress and waiting players survive the upgrade. Runs at startup on the master/replica
+ * topology only: a cluster starts from tagged keys, as a rename cannot cross slots.
+ * <p>
+ * RENAMENX keeps the expiration of a key and never overwrites a tagged key already written.
+ * Instances started later rename the keys still written by instances not yet upgraded.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class RedisKeyMigration {
+
+    private static final int SCAN_COUNT = 1000;
+
+    private final StringRedisTemplate redisTemplate;
+
+    @Value("${redis.mode:" + RedisConfig.MASTER_REPLICA_MODE + "}")
+    private String mode;
+
+    @Value("${redis.key-migration.enabled:true}")
+    private boolean enabled;
+
+    @PostConstruct
+    void migrate() {
+        if (!enabled || RedisConfig.CLUSTER_MODE.equals(mode)) {
+            return;
+        }
+        try {
+            int renamed = 0;
+            // The id runs to the end of the key for players and tournament queues
+            renamed += migrate(RedisKeys.GAME_PREFIX, false);
+            renamed += migrate(RedisKeys.PLAYER_GAME_PREFIX, true);
+            renamed += migrate(RedisKeys.TOURNAMENT_PREFIX, false);
+            renamed += migrate(RedisKeys.TOURNAMENT_QUEUE_PREFIX, true);
+            renamed += migrate(RedisKeys.POOL_PREFIX, false);
+            if (renamed > 0) {
+                log.info("Renamed {} Redis keys to their hash-tagged names", renamed);
+            }
+        } catch (Exception e) {
+            log.error("Could not rename legacy Redis keys: {}", e.getMessage(), e);
+        }
+    }
+
+    private int migrate(String prefix, boolean idToEnd) {
+        List<String> legacy = new ArrayList<>();
+        ScanOptions options = ScanOptions.scanOptions().match(prefix + "*").count(SCAN_COUNT).build();
+        try (Cursor<String> keys = redisTemplate.scan(options)) {
+            keys.forEachRemaining(key -> {
+                if (!key.startsWith("{", prefix.length())) {
+                    legacy.add(key);
+                }
+            });
+        }
+
+        int renamed = 0;
+        for (String key : legacy) {
+            String rest = key.substring(prefix.length());
+            int end = idToEnd ? -1 : rest.indexOf(':');
+            String tagged = end < 0
+                ? prefix + RedisKeys.tag(rest)
+                : prefix + RedisKeys.tag(rest.substring(0, end)) + rest.substring(end);
+            try {
+                if (Boolean.TRUE.equals(redisTemplate.renameIfAbsent(key, tagged))) {
+                    renamed++;
+                } else {
+                    log.warn("Legacy Redis key {} kept: {} already exists", key, tagged);
+                }
+            } catch (Exception e) {
+                // Gone meanwhile (expired, or renamed by another instance)
+                log.debug("Legacy Redis key {} not renamed: {}", key, e.getMessage());
+            }
+        }
+        return renamed;
+    }
+}
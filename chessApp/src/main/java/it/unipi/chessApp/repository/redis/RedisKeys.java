@@ -0,0 +1,106 @@
+package it.unipi.chessApp.repository.redis;
+
+/**
+ * Names of the Redis keys of a game, a player, a tournament or a matchmaking pool.
+ * The id of the owner is a hash tag ({...}), so all the keys of one game, one tournament or
+ * one pool land in the same Redis Cluster slot and can be used together by a script or a
+ * multi-key command. Keys of different owners live in different slots: no operation may
+ * combine them atomically (see RedisConfig for the cluster topology).
+ * <p>
+ * Global keys (active games, clock deadlines, the completed games outbox) are single keys,
+ * owned by the classes that use them, except those listed here.
+ */
+public final class RedisKeys {
+
+    public static final String GAME_PREFIX = "chess:game:";
+    public static final String PLAYER_GAME_PREFIX = "chess:player:game:";
+    public static final String TOURNAMENT_PREFIX = "chess:tournament:";
+    public static final String TOURNAMENT_QUEUE_PREFIX = "chess:matchmaking:tournament:";
+    public static final String POOL_PREFIX = "chess:matchmaking:pool:";
+
+    /** Application instances owning live games, scored by their last heartbeat (see GameOwnership) */
+    public static final String INSTANCES = "chess:instances";
+
+    private RedisKeys() {
+    }
+
+    /**
+     * @return The id as a hash tag: only the part between the braces is hashed to a slot
+     */
+    public static String tag(String id) {
+        return "{" + id + "}";
+    }
+
+    /** Game state hash: chess:game:{&lt;id&gt;} */
+    public static String game(String gameId) {
+        return GAME_PREFIX + tag(gameId);
+    }
+
+    /** Moves of a game, packed in 2 bytes each (see PackedMoves) */
+    public static String gameMoves(String gameId) {
+        return game(gameId) + ":moves";
+    }
+
+    /** SAN of the moves of a game, space-separated */
+    public static String gameSan(String gameId) {
+        return game(gameId) + ":san";
+    }
+
+    /** Event log of a game (capped stream of its writes and snapshots) */
+    public static String gameLog(String gameId) {
+        return game(gameId) + ":log";
+    }
+
+    /** Game a player is playing: chess:player:game:{&lt;username&gt;} */
+    public static String playerGame(String username) {
+        return PLAYER_GAME_PREFIX + tag(username);
+    }
+
+    /** Tournament data, JSON: chess:tournament:{&lt;id&gt;}:data */
+    public static String tournamentData(String tournamentId) {
+        return TOURNAMENT_PREFIX + tag(tournamentId) + ":data";
+    }
+
+    /** Players subscribed to a tournament (set) */
+    public static String tournamentSubscribers(String tournamentId) {
+        return TOURNAMENT_PREFIX + tag(tournamentId) + ":subscribers";
+    }
+
+    /** Games in progress of a tournament, scored by their creation time */
+    public static String tournamentGames(String tournamentId) {
+        return TOURNAMENT_PREFIX + tag(tournamentId) + ":live-games";
+    }
+
+    /** Games played by a player in a tournament */
+    public static String tournamentGameCount(String tournamentId, String username) {
+        return tournamentGameCountPrefix(tournamentId) + username + ":games";
+    }
+
+    /**
+     * Followed by a username and ":games", e.g. for a script that only learns the player
+     * when it runs: the key is still in the slot of the tournament
+     */
+    public static String tournamentGameCountPrefix(String tournamentId) {
+        return TOURNAMENT_PREFIX + tag(tournamentId) + ":player:";
+    }
+
+    /** KEYS/SCAN pattern of the game counters of a tournament */
+    public static String tournamentGameCountPattern(String tournamentId) {
+        return tournamentGameCountPrefix(tournamentId) + "*:games";
+    }
+
+    /** Players waiting for a game of a tournament (list), in the slot of the tournament */
+    public static String tournamentQueue(String tournamentId) {
+        return TOURNAMENT_QUEUE_PREFIX + tag(tournamentId);
+    }
+
+    /** Players waiting for a regular game of a type, scored by rating */
+    public static String pool(String gameType) {
+        return POOL_PREFIX + tag(gameType);
+    }
+
+    /** Join times of the players of a pool (hash), in the slot of the pool */
+    public static String poolJoined(String gameType) {
+        return pool(gameType) + ":joined";
+    }
+}
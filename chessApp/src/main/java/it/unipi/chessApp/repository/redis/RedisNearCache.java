@@ -0,0 +1,257 @@
+package it.unipi.chessApp.repository.redis;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.lettuce.core.RedisChannelHandler;
+import io.lettuce.core.RedisClient;
+import io.lettuce.core.RedisConnectionStateAdapter;
+import io.lettuce.core.TrackingArgs;
+import io.lettuce.core.api.StatefulRedisConnection;
+import io.lettuce.core.api.push.PushMessage;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Near cache of hot Redis keys that rarely change (tournament data, subscriber sets).
+ * Keys are read on a dedicated RESP3 connection to the master with CLIENT TRACKING on, so
+ * Redis remembers what this instance holds and pushes an invalidation as soon as any client
+ * changes or deletes one of those keys; the entry is dropped and the next read goes to Redis.
+ * <p>
+ * A read racing with the invalidation of its key does not store what it read. While the
+ * connection is down invalidations can be missed: the cache is cleared and reads go to Redis
+ * until tracking is on again. Entries are bounded by their estimated size in bytes; hits,
+ * misses and invalidations are published as redis.near-cache metrics.
+ * <p>
+ * In cluster mode there is no near cache client (see RedisConfig): reads go to Redis.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class RedisNearCache {
+
+    // Stored for keys that do not exist: Redis tracks them too, and notifies their creation
+    private static final Object ABSENT = new Object();
+    private static final int ENTRY_OVERHEAD_BYTES = 64;
+
+    private final ObjectProvider<RedisClient> nearCacheClient;
+    // Reads when there is no near cache client
+    private final StringRedisTemplate redisTemplate;
+    private final MeterRegistry meterRegistry;
+
+    // Loads in flight: an invalidation of the key removes its token, so the load does not store
+    private final Map<String, Object> loading = new ConcurrentHashMap<>();
+
+    private Cache<String, Object> cache;
+    private StatefulRedisConnection<String, String> connection;
+    private volatile boolean tracking;
+    private Counter invalidations;
+
+    @Value("${redis.near-cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${redis.near-cache.max-bytes:16777216}")
+    private long maxBytes;
+
+    @PostConstruct
+    void init() {
+        cache = Caffeine.newBuilder()
+            .maximumWeight(maxBytes)
+            .weigher((String key, Object value) -> weigh(key, value))
+            .recordStats()
+            .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "redis.near-cache");
+        Gauge.builder("redis.near-cache.hit.ratio", cache, c -> c.stats().hitRate())
+            .description("Share of near cache reads answered without a round-trip to Redis")
+            .register(meterRegistry);
+        Gauge.builder("redis.near-cache.weight", cache,
+                      c -> c.policy().eviction().map(e -> (double) e.weightedSize().orElse(0L)).orElse(0.0))
+            .description("Estimated size of the near cache entries")
+            .baseUnit("bytes")
+            .register(meterRegistry);
+        invalidations = Counter.builder("redis.near-cache.invalidations")
+            .description("Near cache entries dropped by a Redis invalidation push")
+            .register(meterRegistry);
+
+        RedisClient client = nearCacheClient.getIfAvailable();
+        if (client == null) {
+            return;
+        }
+        connection = client.connect();
+        if (!enabled) {
+            return;
+        }
+        client.addListener(new RedisConnectionStateAdapter() {
+            @Override
+            public void onRedisConnected(RedisChannelHandler<?, ?> channel, SocketAddress socketAddress) {
+                // Tracking does not survive a reconnection
+                enableTracking();
+            }
+
+            @Override
+            public void onRedisDisconnected(RedisChannelHandler<?, ?> channel) {
+                tracking = false;
+                clear();
+            }
+        });
+        connection.addListener(this::onPush);
+        enableTracking();
+    }
+
+    @PreDestroy
+    void close() {
+        if (connection != null) {
+            connection.close();
+        }
+    }
+
+    /**
+     * GET through the near cache.
+     */
+    public String get(String key) {
+        return get(key, Function.identity());
+    }
+
+    /**
+     * GET through the near cache, keeping the decoded value so a hit costs no decoding either.
+     * The decoded value is shared by all the readers of the key: it must not be modified.
+     * @param decoder Decodes the value of the key; not called for a missing key
+     * @return The decoded value, or null if the key does not exist
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T get(String key, Function<String, T> decoder) {
+        Object cached = cache.getIfPresent(key);
+        if (cached == null) {
+            cached = load(key, () -> {
+                String value = connection != null
+                    ? connection.sync().get(key) : redisTemplate.opsForValue().get(key);
+                return value != null ? new Decoded(value.length(), decoder.apply(value)) : ABSENT;
+            });
+        }
+        return cached != ABSENT ? (T) ((Decoded) cached).value() : null;
+    }
+
+    /**
+     * SISMEMBER through the near cache: the whole set is cached on the first read.
+     */
+    @SuppressWarnings("unchecked")
+    public boolean isMember(String key, String member) {
+        Object cached = cache.getIfPresent(key);
+        if (cached == null) {
+            cached = load(key, () -> {
+                Set<String> members = connection != null
+                    ? connection.sync().smembers(key) : redisTemplate.opsForSet().members(key);
+                return members == null || members.isEmpty() ? ABSENT : Set.copyOf(members);
+            });
+        }
+        return cached != ABSENT && ((Set<String>) cached).contains(member);
+    }
+
+    /**
+     * Drop a key written by this instance, so its next read here does not wait for the
+     * invalidation push to see the write.
+     */
+    public void evict(String... keys) {
+        for (String key : keys) {
+            loading.remove(key);
+            cache.invalidate(key);
+        }
+    }
+
+    private Object load(String key, Supplier<Object> reader) {
+        Object token = new Object();
+        boolean track = tracking;
+        if (track) {
+            loading.put(key, token);
+        }
+        Object value = reader.get();
+        // Store only if no invalidation came in since the key was read (nor a disconnection)
+        if (track && loading.remove(key, token)) {
+            cache.put(key, value);
+        }
+        return value;
+    }
+
+    private void enableTracking() {
+        connection.async().clientTracking(TrackingArgs.Builder.enabled()).whenComplete((reply, error) -> {
+            if (error != null) {
+                log.warn("Could not enable Redis client tracking, near cache bypassed: {}", error.getMessage());
+                return;
+            }
+            tracking = true;
+        });
+    }
+
+    private void onPush(PushMessage message) {
+        if (!"invalidate".equals(message.getType())) {
+            return;
+        }
+        List<Object> content = message.getContent();
+        // A null key list means the whole database was flushed
+        if (content.size() < 2 || !(content.get(1) instanceof List<?> keys)) {
+            clear();
+            return;
+        }
+        for (Object key : keys) {
+            String name = decode(key);
+            loading.remove(name);
+            cache.invalidate(name);
+            invalidations.increment();
+        }
+    }
+
+    private void clear() {
+        loading.clear();
+        cache.invalidateAll();
+    }
+
+    private static String decode(Object key) {
+        if (key instanceof ByteBuffer buffer) {
+            return StandardCharsets.UTF_8.decode(buffer.duplicate()).toString();
+        }
+        if (key instanceof byte[] bytes) {
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+        return String.valueOf(key);
+    }
+
+    /**
+     * Rough size of an entry: 2 bytes per char plus a fixed overhead per object.
+     */
+    private static int weigh(String key, Object value) {
+        long weight = ENTRY_OVERHEAD_BYTES + 2L * key.length();
+        if (value instanceof Decoded decoded) {
+            weight += 2L * decoded.length();
+        } else if (value instanceof Set<?> members) {
+            for (Object member : members) {
+                weight += ENTRY_OVERHEAD_BYTES / 2 + 2L * member.toString().length();
+            }
+        }
+        return (int) Math.min(weight, Integer.MAX_VALUE);
+    }
+
+    /**
+     * @param length Length of the value in Redis, which its weight is estimated from
+     */
+    private record Decoded(int length, Object value) {
+    }
+}
@@ -0,0 +1,70 @@
+package it.unipi.chessApp.scheduler;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import it.unipi.chessApp.service.LiveGameService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ends the live games nobody has moved in for too long, instead of leaving them (and their
+ * players, through the player pointers) stuck until the keys expire.
+ * Games in progress are indexed by their last move time, so each tick only reads the idle
+ * range of the index, in batches. Every instance may run the reaper: a game is claimed
+ * atomically before being reaped.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class AbandonedGameReaper {
+
+    private final LiveGameService liveGameService;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${live-game.reaper.idle-minutes:30}")
+    private long idleMinutes;
+
+    @Value("${live-game.reaper.batch-size:200}")
+    private int batchSize;
+
+    @Value("${live-game.reaper.max-batches:20}")
+    private int maxBatches;
+
+    @Scheduled(fixedDelayString = "${live-game.reaper.interval-ms:60000}")
+    public void reapAbandonedGames() {
+        try {
+            long idleSince = System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(idleMinutes);
+            int total = 0;
+            for (int i = 0; i < maxBatches; i++) {
+                Map<String, Integer> reaped = liveGameService.reapAbandonedGames(idleSince, batchSize);
+                int looked = 0;
+                for (Map.Entry<String, Integer> entry : reaped.entrySet()) {
+                    reapedGames(entry.getKey()).increment(entry.getValue());
+                    looked += entry.getValue();
+                }
+                total += looked;
+                if (looked < batchSize) {
+                    break;
+                }
+            }
+            if (total > 0) {
+                log.info("Reaped {} games idle for more than {} minutes", total, idleMinutes);
+            }
+        } catch (Exception e) {
+            log.error("Error in abandoned game reaper: {}", e.getMessage(), e);
+        }
+    }
+
+    private Counter reapedGames(String outcome) {
+        return Counter.builder("chess.games.reaped")
+            .description("Idle live games handled by the reaper, by outcome")
+            .tag("outcome", outcome)
+            .register(meterRegistry);
+    }
+}
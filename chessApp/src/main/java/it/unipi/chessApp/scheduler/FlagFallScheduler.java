@@ -0,0 +1,78 @@
+package it.unipi.chessApp.scheduler;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import it.unipi.chessApp.repository.redis.LiveGameRedisRepository;
+import it.unipi.chessApp.service.LiveGameService;
+import it.unipi.chessApp.service.impl.GameClockWatcher;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * Server-side flag-fall detection.
+ * Every tick advances the timing wheel of this instance and finishes the games whose
+ * clock ran out. A slower sweep of the Redis deadline set picks up the games no instance
+ * is watching any more (e.g. their instance restarted); claiming a deadline is atomic,
+ * so a game is finished once even when several instances see it expire.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class FlagFallScheduler {
+
+    private final GameClockWatcher clockWatcher;
+    private final LiveGameRedisRepository liveGameRepository;
+    private final LiveGameService liveGameService;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${live-game.clock.sweep-grace-ms:1000}")
+    private long sweepGraceMs;
+
+    @Value("${live-game.clock.sweep-batch-size:100}")
+    private int sweepBatchSize;
+
+    @Scheduled(fixedRateString = "${live-game.clock.tick-ms:100}")
+    public void tick() {
+        try {
+            flag(clockWatcher.expire(System.currentTimeMillis()), "wheel");
+        } catch (Exception e) {
+            log.error("Error in flag-fall tick: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Deadlines overdue by more than the grace period were missed by the wheel of their instance.
+     */
+    @Scheduled(fixedDelayString = "${live-game.clock.sweep-interval-ms:2000}")
+    public void sweepOverdueGames() {
+        try {
+            flag(liveGameRepository.findOverdue(System.currentTimeMillis() - sweepGraceMs, sweepBatchSize), "sweep");
+        } catch (Exception e) {
+            log.error("Error in flag-fall sweep: {}", e.getMessage(), e);
+        }
+    }
+
+    private void flag(Map<String, Long> expired, String source) {
+        expired.forEach((gameId, deadline) -> {
+            try {
+                if (liveGameService.flagGame(gameId, deadline)) {
+                    flags(source).increment();
+                }
+            } catch (Exception e) {
+                log.warn("Could not finish game {} on time: {}", gameId, e.getMessage());
+            }
+        });
+    }
+
+    private Counter flags(String source) {
+        return Counter.builder("chess.clock.flag.falls")
+            .description("Games finished on time, by the component that caught the flag fall")
+            .tag("source", source)
+            .register(meterRegistry);
+    }
+}
@@ -0,0 +1,425 @@
+package it.unipi.chessApp.scheduler;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import it.unipi.chessApp.dto.MatchmakingResultDTO;
+import it.unipi.chessApp.model.LiveGameState;
+import it.unipi.chessApp.repository.redis.LiveGameRedisRepository;
+import it.unipi.chessApp.repository.redis.RedisBatchExecutor;
+import it.unipi.chessApp.repository.redis.RedisKeys;
+import it.unipi.chessApp.service.impl.GameClockWatcher;
+import it.unipi.chessApp.service.impl.LiveGameTiering;
+import it.unipi.chessApp.service.impl.MatchmakingNotifier;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.connection.RedisStringCommands.SetOption;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations.TypedTuple;
+import org.springframework.data.redis.core.types.Expiration;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Rating-aware matcher for regular games.
+ * Waiting players sit in one sorted set per game type, scored by their rating for that
+ * time class. On every tick the instance holding the matcher lock reads each pool a page at
+ * a time, pairs neighbouring players whose rating gap fits the allowed window (which widens the
+ * longer a player waits) and creates all the games of a batch in a few round-trips.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class MatchmakingScheduler {
+
+    private final StringRedisTemplate redisTemplate;
+    private final RedisBatchExecutor batchExecutor;
+    private final LiveGameRedisRepository liveGameRepository;
+    private final LiveGameTiering liveGameTiering;
+    private final MatchmakingNotifier matchmakingNotifier;
+    private final GameClockWatcher clockWatcher;
+    private final MeterRegistry meterRegistry;
+
+    private static final String MATCHER_LOCK_KEY = "chess:matchmaking:matcher:lock";
+    private static final List<String> GAME_TYPES = List.of("bullet", "blitz", "rapid");
+    private static final int PAIRS_PER_SCRIPT_CALL = 250;
+
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> CLAIM_PAIRS_SCRIPT =
+        RedisScript.of(new ClassPathResource("scripts/claim_pairs.lua"), List.class);
+    private static final RedisScript<Long> ACQUIRE_LOCK_SCRIPT =
+        RedisScript.of(new ClassPathResource("scripts/acquire_lock.lua"), Long.class);
+    private static final RedisScript<Long> RELEASE_LOCK_SCRIPT =
+        RedisScript.of(new ClassPathResource("scripts/release_lock.lua"), Long.class);
+
+    private final String lockToken = UUID.randomUUID().toString();
+    private final Map<String, AtomicLong> poolSizes = new ConcurrentHashMap<>();
+    // Rating each pool is read from on the next tick
+    private final Map<String, Double> ratingCursors = new ConcurrentHashMap<>();
+
+    @Value("${live-game.expiration-hours:24}")
+    private int gameExpirationHours;
+
+    @Value("${live-game.matchmaking.matcher-interval-ms:500}")
+    private long matcherIntervalMs;
+
+    @Value("${live-game.matchmaking.base-rating-gap:100}")
+    private int baseRatingGap;
+
+    @Value("${live-game.matchmaking.rating-gap-widen-per-second:20}")
+    private int ratingGapWidenPerSecond;
+
+    @Value("${live-game.matchmaking.max-rating-gap:800}")
+    private int maxRatingGap;
+
+    @Value("${live-game.matchmaking.page-size:500}")
+    private int pageSize;
+
+    @Value("${live-game.matchmaking.pages-per-tick:4}")
+    private int pagesPerTick;
+
+    @Scheduled(fixedDelayString = "${live-game.matchmaking.matcher-interval-ms:500}")
+    public void matchWaitingPlayers() {
+        try {
+            if (!acquireMatcherLock()) {
+                return;
+            }
+            for (String gameType : GAME_TYPES) {
+                matchPool(gameType);
+            }
+        } catch (Exception e) {
+            log.error("Error in matchmaking scheduler: {}", e.getMessage(), e);
+        }
+    }
+
+    @PreDestroy
+    void releaseMatcherLock() {
+        try {
+            redisTemplate.execute(RELEASE_LOCK_SCRIPT, List.of(MATCHER_LOCK_KEY), lockToken);
+        } catch (Exception e) {
+            log.warn("Failed to release matcher lock: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * The lease outlives several ticks, so the holder keeps renewing it and stays the
+     * only matcher; another instance takes over within one lease if the holder dies.
+     */
+    private boolean acquireMatcherLock() {
+        long leaseMs = Math.max(matcherIntervalMs * 10, 5000);
+        Long held = redisTemplate.execute(ACQUIRE_LOCK_SCRIPT, List.of(MATCHER_LOCK_KEY),
+                                          lockToken, String.valueOf(leaseMs));
+        return held != null && held == 1;
+    }
+
+    /**
+     * Pair the players of a pool, read a page at a time in rating order: up to pages-per-tick
+     * pages are read per tick, and the next tick goes on from the rating reached, back to the
+     * bottom of the pool after its top. Join times are only read for the players of each page.
+     */
+    @SuppressWarnings("unchecked")
+    private void matchPool(String gameType) {
+        String poolKey = RedisKeys.pool(gameType);
+        String joinedKey = RedisKeys.poolJoined(gameType);
+        double from = ratingCursors.getOrDefault(gameType, Double.NEGATIVE_INFINITY);
+
+        // Size and first page in one round-trip
+        List<Object> first = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection conn = (StringRedisConnection) connection;
+            conn.zCard(poolKey);
+            conn.zRangeByScoreWithScores(poolKey, from, Double.POSITIVE_INFINITY, 0, pageSize);
+            return null;
+        });
+        Long size = (Long) first.get(0);
+        poolSize(gameType).set(size != null ? size : 0);
+        if (size == null || size < 2) {
+            ratingCursors.remove(gameType);
+            return;
+        }
+
+        // Players come sorted by rating: pair neighbours whose gap fits the wider of their windows
+        long now = System.currentTimeMillis();
+        List<Candidate> pairs = new ArrayList<>();
+        Candidate previous = null;
+        Set<TypedTuple<String>> page = (Set<TypedTuple<String>>) first.get(1);
+        double last = from;
+        // Players read at the last rating, skipped by the next page, which starts at that rating
+        long tied = 0;
+        for (int pages = 1; page != null && !page.isEmpty(); pages++) {
+            List<String> usernames = new ArrayList<>(page.size());
+            page.forEach(entry -> usernames.add(entry.getValue()));
+            List<Object> joined = redisTemplate.opsForHash().multiGet(joinedKey, new ArrayList<>(usernames));
+
+            int i = 0;
+            for (TypedTuple<String> entry : page) {
+                Object joinedAt = joined.get(i++);
+                Candidate current = new Candidate(entry.getValue(), entry.getScore(),
+                                                  joinedAt != null ? Long.parseLong((String) joinedAt) : now);
+                tied = current.rating == last ? tied + 1 : 1;
+                last = current.rating;
+                if (previous != null) {
+                    double gap = current.rating - previous.rating;
+                    long longestWait = now - Math.min(previous.joinedAt, current.joinedAt);
+                    if (gap <= allowedRatingGap(longestWait)) {
+                        pairs.add(previous);
+                        pairs.add(current);
+                        previous = null;
+                        continue;
+                    }
+                }
+                previous = current;
+            }
+
+            if (page.size() < pageSize) {
+                // Top of the pool: the next tick starts from the bottom
+                ratingCursors.remove(gameType);
+                break;
+            }
+            if (pages == pagesPerTick) {
+                // The unpaired player at the edge is read again by the next tick
+                ratingCursors.put(gameType, previous != null ? previous.rating : last);
+                break;
+            }
+            page = redisTemplate.opsForZSet().rangeByScoreWithScores(poolKey, last, Double.POSITIVE_INFINITY, tied, pageSize);
+        }
+
+        for (int i = 0; i < pairs.size(); i += PAIRS_PER_SCRIPT_CALL * 2) {
+            createGames(gameType, poolKey, joinedKey, pairs.subList(i, Math.min(pairs.size(), i + PAIRS_PER_SCRIPT_CALL * 2)), now);
+        }
+    }
+
+    /**
+     * Create the games of a batch of pairs in three round-trips: take the pairs still waiting
+     * out of the pool, claim the player pointers (only free players, or players pointing to a
+     * finished game, can be claimed), then write the games. A player whose opponent turned out
+     * to be playing goes back to the pool.
+     */
+    @SuppressWarnings("unchecked")
+    private void createGames(String gameType, String poolKey, String joinedKey,
+                             List<Candidate> pairs, long now) {
+        List<String> players = new ArrayList<>(pairs.size());
+        pairs.forEach(candidate -> players.add(candidate.username));
+        List<Long> taken = redisTemplate.execute(CLAIM_PAIRS_SCRIPT, List.of(poolKey, joinedKey), players.toArray());
+        if (taken == null) {
+            return;
+        }
+
+        long ttlSeconds = TimeUnit.HOURS.toSeconds(gameExpirationHours);
+        List<LiveGameState> games = new ArrayList<>();
+        List<String> claimUsers = new ArrayList<>();
+        List<String> claimGames = new ArrayList<>();
+        RedisBatchExecutor.Batch claims = batchExecutor.pipeline("matchmaking.claim-players");
+        for (int i = 0; i < pairs.size(); i += 2) {
+            if (taken.get(i / 2) != 1L) {
+                games.add(null);
+                continue;
+            }
+            boolean firstIsWhite = ThreadLocalRandom.current().nextBoolean();
+            Candidate white = firstIsWhite ? pairs.get(i) : pairs.get(i + 1);
+            Candidate black = firstIsWhite ? pairs.get(i + 1) : pairs.get(i);
+
+            LiveGameState game = LiveGameState.createNewRegularGame(
+                new ObjectId().toHexString(), white.username, black.username, gameType);
+            games.add(game);
+            for (String player : List.of(game.getWhitePlayer(), game.getBlackPlayer())) {
+                claimPointer(claims, player, game.getGameId(), ttlSeconds);
+                claimUsers.add(player);
+                claimGames.add(game.getGameId());
+            }
+        }
+        List<Object> claimed = new ArrayList<>(claims.execute());
+        reclaimStalePointers(claimed, claimUsers, claimGames, ttlSeconds);
+
+        List<Boolean> created = new ArrayList<>();
+        RedisBatchExecutor.Batch writes = batchExecutor.pipeline("matchmaking.create-games");
+        int reply = 0;
+        for (int i = 0; i < games.size(); i++) {
+            LiveGameState game = games.get(i);
+            if (game == null) {
+                created.add(false);
+                continue;
+            }
+            boolean whiteFree = Boolean.TRUE.equals(claimed.get(reply++));
+            boolean blackFree = Boolean.TRUE.equals(claimed.get(reply++));
+            created.add(whiteFree && blackFree);
+            if (whiteFree && blackFree) {
+                liveGameRepository.create(writes, game);
+                continue;
+            }
+            log.info("Match {} of {} and {} dropped: a player is already in a game",
+                     game.getGameId(), game.getWhitePlayer(), game.getBlackPlayer());
+            for (Candidate player : List.of(pairs.get(i * 2), pairs.get(i * 2 + 1))) {
+                boolean free = player.username.equals(game.getWhitePlayer()) ? whiteFree : blackFree;
+                if (free) {
+                    releasePointer(writes, player.username, game.getGameId());
+                    writes.command(conn -> conn.zAdd(poolKey, player.rating, player.username))
+                        .command(conn -> conn.hSet(joinedKey, player.username, String.valueOf(player.joinedAt)));
+                }
+            }
+        }
+        writes.execute();
+
+        for (int i = 0; i < games.size(); i++) {
+            if (!created.get(i)) {
+                continue;
+            }
+            LiveGameState game = games.get(i);
+            if (game.isTimed()) {
+                clockWatcher.watch(game.getGameId(), game.getClockDeadline());
+            }
+            Candidate first = pairs.get(i * 2);
+            Candidate second = pairs.get(i * 2 + 1);
+
+            pairingLatency(gameType).record(Duration.ofMillis(now - first.joinedAt));
+            pairingLatency(gameType).record(Duration.ofMillis(now - second.joinedAt));
+            ratingSpread(gameType).record(Math.abs(first.rating - second.rating));
+
+            MatchmakingResultDTO result = new MatchmakingResultDTO(
+                game.getGameId(),
+                game.getWhitePlayer(),
+                game.getBlackPlayer(),
+                null,
+                true,
+                "Match found! Game started."
+            );
+            matchmakingNotifier.publishMatch(game.getWhitePlayer(), result);
+            matchmakingNotifier.publishMatch(game.getBlackPlayer(), result);
+
+            log.info("Regular match created: {} (white: {}, black: {}, gameType: {}, rating gap: {})",
+                     game.getGameId(), game.getWhitePlayer(), game.getBlackPlayer(), gameType,
+                     (int) Math.abs(first.rating - second.rating));
+        }
+    }
+
+    /**
+     * Queue the pointer of a player to a new game, set only if the player is not in a game yet.
+     */
+    private void claimPointer(RedisBatchExecutor.Batch batch, String username, String gameId, long ttlSeconds) {
+        batch.command(conn -> conn.set(RedisKeys.playerGame(username), gameId,
+                                       Expiration.seconds(ttlSeconds), SetOption.SET_IF_ABSENT));
+    }
+
+    /**
+     * Retry the claims that failed on a pointer to a game no longer in progress, e.g. one whose
+     * cleanup was lost: such a pointer would otherwise keep the player out of every pairing
+     * until it expires. The stale pointer is only removed if it still names the same game.
+     * @param claimed Replies of the claims, updated with those of the retries
+     */
+    private void reclaimStalePointers(List<Object> claimed, List<String> usernames, List<String> gameIds,
+                                      long ttlSeconds) {
+        List<Integer> failed = new ArrayList<>();
+        for (int i = 0; i < claimed.size(); i++) {
+            if (!Boolean.TRUE.equals(claimed.get(i))) {
+                failed.add(i);
+            }
+        }
+        if (failed.isEmpty()) {
+            return;
+        }
+        RedisBatchExecutor.Batch reads = batchExecutor.pipeline("matchmaking.read-pointers");
+        failed.forEach(i -> reads.command(conn -> conn.get(RedisKeys.playerGame(usernames.get(i)))));
+        List<Object> pointers = reads.execute();
+
+        RedisBatchExecutor.Batch retries = batchExecutor.pipeline("matchmaking.reclaim-players");
+        Map<Integer, Integer> retryReplies = new LinkedHashMap<>();
+        int reply = 0;
+        for (int j = 0; j < failed.size(); j++) {
+            int i = failed.get(j);
+            String current = (String) pointers.get(j);
+            if (current != null) {
+                if (isInProgress(current)) {
+                    continue;
+                }
+                log.info("Player {} points to finished game {}: claiming again", usernames.get(i), current);
+                releasePointer(retries, usernames.get(i), current);
+                reply++;
+            }
+            claimPointer(retries, usernames.get(i), gameIds.get(i), ttlSeconds);
+            retryReplies.put(i, reply++);
+        }
+        if (retryReplies.isEmpty()) {
+            return;
+        }
+        List<Object> replies = retries.execute();
+        retryReplies.forEach((i, index) -> claimed.set(i, replies.get(index)));
+    }
+
+    /**
+     * Whether a game is still being played, wherever it is kept: in Redis, spilled to MongoDB,
+     * or only in its event log if its state keys were evicted.
+     */
+    private boolean isInProgress(String gameId) {
+        LiveGameState game = liveGameRepository.find(gameId);
+        if (game == null) {
+            if (liveGameTiering.isSpilled(gameId)) {
+                return true;
+            }
+            game = liveGameRepository.replayLog(gameId);
+        }
+        return game != null && LiveGameState.STATUS_IN_PROGRESS.equals(game.getStatus());
+    }
+
+    /**
+     * Queue the removal of the pointer of a player to a game that was not created,
+     * unless the pointer changed since (compare-and-delete, as for the matcher lock).
+     */
+    private void releasePointer(RedisBatchExecutor.Batch batch, String username, String gameId) {
+        String script = RELEASE_LOCK_SCRIPT.getScriptAsString();
+        batch.command(conn -> conn.eval(script, ReturnType.INTEGER, 1, RedisKeys.playerGame(username), gameId));
+    }
+
+    private double allowedRatingGap(long waitMs) {
+        return Math.min(maxRatingGap, baseRatingGap + ratingGapWidenPerSecond * (waitMs / 1000.0));
+    }
+
+    private Timer pairingLatency(String gameType) {
+        return Timer.builder("chess.matchmaking.pairing.latency")
+            .description("Time spent by a player in the matchmaking pool before being paired")
+            .tag("gameType", gameType)
+            .publishPercentiles(0.5, 0.95, 0.99)
+            .register(meterRegistry);
+    }
+
+    private DistributionSummary ratingSpread(String gameType) {
+        return DistributionSummary.builder("chess.matchmaking.rating.spread")
+            .description("Rating difference between paired players")
+            .tag("gameType", gameType)
+            .publishPercentiles(0.5, 0.95, 0.99)
+            .register(meterRegistry);
+    }
+
+    private AtomicLong poolSize(String gameType) {
+        return poolSizes.computeIfAbsent(gameType, type -> {
+            AtomicLong size = new AtomicLong();
+            Gauge.builder("chess.matchmaking.pool.size", size, AtomicLong::get)
+                .description("Players waiting in the matchmaking pool, as seen by the matcher")
+                .tag("gameType", type)
+                .register(meterRegistry);
+            return size;
+        });
+    }
+
+    private record Candidate(String username, double rating, long joinedAt) {
+    }
+}
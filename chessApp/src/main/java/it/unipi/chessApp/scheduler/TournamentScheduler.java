@@ -1,9 +1,12 @@
 package it.unipi.chessApp.scheduler;
 
+import it.unipi.chessApp.config.RedisConfig;
 import it.unipi.chessApp.model.Tournament;
 import it.unipi.chessApp.repository.TournamentRepository;
+import it.unipi.chessApp.repository.redis.RedisKeys;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
@@ -20,11 +23,10 @@ public class TournamentScheduler {
 
     private final TournamentRepository tournamentRepository;
     private final StringRedisTemplate redisTemplate;
+    // The key scan of a finished tournament: no game count changes anymore, any replica will do
+    @Qualifier(RedisConfig.REPLICA_TEMPLATE)
+    private final StringRedisTemplate replicaRedisTemplate;
 
-    private static final String TOURNAMENT_PREFIX = "chess:tournament:";
-    private static final String TOURNAMENT_SUBSCRIBERS_SUFFIX = ":subscribers";
-    private static final String TOURNAMENT_DATA_SUFFIX = ":data";
-    private static final String TOURNAMENT_GAME_COUNT_PATTERN = "chess:tournament:%s:player:*:games";
     private static final DateTimeFormatter DATE_TIME_FORMATTER =
         DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
 
@@ -62,16 +64,16 @@ public class TournamentScheduler {
             log.info("Tournament {} ({}) has been finished", tournament.getId(), tournament.getName());
 
             // Delete Redis subscribers set
-            String subscribersKey = TOURNAMENT_PREFIX + tournament.getId() + TOURNAMENT_SUBSCRIBERS_SUFFIX;
+            String subscribersKey = RedisKeys.tournamentSubscribers(tournament.getId());
             redisTemplate.delete(subscribersKey);
 
             // Delete Redis tournament data key
-            String dataKey = TOURNAMENT_PREFIX + tournament.getId() + TOURNAMENT_DATA_SUFFIX;
+            String dataKey = RedisKeys.tournamentData(tournament.getId());
             redisTemplate.delete(dataKey);
 
             // Delete all game count keys for this tournament
-            String gameCountPattern = String.format(TOURNAMENT_GAME_COUNT_PATTERN, tournament.getId());
-            Set<String> gameCountKeys = redisTemplate.keys(gameCountPattern);
+            String gameCountPattern = RedisKeys.tournamentGameCountPattern(tournament.getId());
+            Set<String> gameCountKeys = replicaRedisTemplate.keys(gameCountPattern);
             if (gameCountKeys != null && !gameCountKeys.isEmpty()) {
                 redisTemplate.delete(gameCountKeys);
                 log.info("Deleted {} game count keys for tournament {}", gameCountKeys.size(), tournament.getId());
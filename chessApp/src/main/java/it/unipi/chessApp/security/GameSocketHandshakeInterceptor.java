@@ -0,0 +1,92 @@
+package it.unipi.chessApp.security;
+
+import it.unipi.chessApp.controller.GameSocketHandler;
+import it.unipi.chessApp.service.AuthenticationService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketHttpHeaders;
+import org.springframework.web.socket.server.HandshakeInterceptor;
+import org.springframework.web.util.UriComponents;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Authenticates the players opening a game WebSocket, once for the whole session.
+ * Browsers cannot set headers on a WebSocket handshake other than the subprotocols, so the
+ * JWT is also accepted as the subprotocol following "bearer", e.g.
+ * {@code new WebSocket(url, ["bearer", jwt])}; the server answers with the "bearer" subprotocol.
+ * Unlike a query parameter, the token does not end up in access logs or browser history.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class GameSocketHandshakeInterceptor implements HandshakeInterceptor {
+
+    public static final String BEARER_PROTOCOL = "bearer";
+
+    private final JwtService jwtService;
+    private final AuthenticationService authenticationService;
+
+    @Override
+    public boolean beforeHandshake(ServerHttpRequest request, ServerHttpResponse response,
+                                   WebSocketHandler wsHandler, Map<String, Object> attributes) {
+        UriComponents uri = UriComponentsBuilder.fromUri(request.getURI()).build();
+        // Mapped on /games/live/{gameId}/ws
+        List<String> segments = uri.getPathSegments();
+        String authHeader = request.getHeaders().getFirst("Authorization");
+        String jwt = authHeader != null && authHeader.startsWith("Bearer ")
+            ? authHeader.substring(7) : protocolToken(request.getHeaders().get(WebSocketHttpHeaders.SEC_WEBSOCKET_PROTOCOL));
+
+        if (jwt == null || segments.size() < 2) {
+            response.setStatusCode(HttpStatus.UNAUTHORIZED);
+            return false;
+        }
+
+        try {
+            UserDetails userDetails = authenticationService.loadUserByUsername(jwtService.extractUsername(jwt));
+            if (!jwtService.isTokenValid(jwt, userDetails)) {
+                response.setStatusCode(HttpStatus.UNAUTHORIZED);
+                return false;
+            }
+            attributes.put(GameSocketHandler.ATTR_USERNAME, userDetails.getUsername());
+            attributes.put(GameSocketHandler.ATTR_GAME_ID, segments.get(segments.size() - 2));
+            return true;
+        } catch (Exception e) {
+            log.debug("Rejected game WebSocket handshake: {}", e.getMessage());
+            response.setStatusCode(HttpStatus.UNAUTHORIZED);
+            return false;
+        }
+    }
+
+    /**
+     * @param protocols Values of the Sec-WebSocket-Protocol headers, each a comma-separated list
+     * @return The subprotocol following "bearer", or null
+     */
+    private static String protocolToken(List<String> protocols) {
+        if (protocols == null) {
+            return null;
+        }
+        List<String> offered = new ArrayList<>();
+        for (String header : protocols) {
+            for (String protocol : header.split(",")) {
+                offered.add(protocol.trim());
+            }
+        }
+        int bearer = offered.indexOf(BEARER_PROTOCOL);
+        return bearer >= 0 && bearer + 1 < offered.size() ? offered.get(bearer + 1) : null;
+    }
+
+    @Override
+    public void afterHandshake(ServerHttpRequest request, ServerHttpResponse response,
+                               WebSocketHandler wsHandler, Exception exception) {
+    }
+}
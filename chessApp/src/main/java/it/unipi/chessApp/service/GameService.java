@@ -6,9 +6,28 @@ import it.unipi.chessApp.dto.PageDTO;
 import it.unipi.chessApp.dto.WinRateByOpeningDTO;
 import it.unipi.chessApp.service.exception.BusinessException;
 import java.util.List;
+import java.util.Set;
 
 public interface GameService {
   GameDTO createGame(GameDTO gameDTO) throws BusinessException;
+  /**
+   * Insert several games with a single unordered bulk write. Games whose id is already
+   * stored are left untouched and count as stored, so a batch can be retried safely.
+   * @return The ids of the games that are stored after the call
+   */
+  Set<String> createGames(List<GameDTO> games) throws BusinessException;
+  /**
+   * Record that an archived game was counted in a buffer, at most once per buffer. The mark is
+   * kept on the game itself, so it outlives the buffer being rotated or flushed.
+   * @param bufferId The buffer, e.g. "user:&lt;id&gt;" or "tournament:&lt;id&gt;"
+   * @return false if the game was already counted in that buffer; true otherwise, including
+   *         for a game that is not archived
+   */
+  boolean markBuffered(String gameId, String bufferId);
+  /**
+   * Undo {@link #markBuffered}, when counting the game in the buffer failed.
+   */
+  void unmarkBuffered(String gameId, String bufferId);
   GameDTO getGameById(String id) throws BusinessException;
   List<GameDTO> getGamesByUsername(String username) throws BusinessException;
   PageDTO<GameDTO> getAllGames(int page) throws BusinessException;
@@ -1,23 +1,95 @@
 package it.unipi.chessApp.service;
 
+import it.unipi.chessApp.dto.GameEventDTO;
 import it.unipi.chessApp.dto.GameStatusDTO;
 import it.unipi.chessApp.dto.MatchmakingResultDTO;
 import it.unipi.chessApp.dto.MoveResultDTO;
+import it.unipi.chessApp.dto.PremoveDTO;
 import it.unipi.chessApp.service.exception.BusinessException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 public interface LiveGameService {
 
-    MatchmakingResultDTO joinMatchmaking(String username, String gameType) throws BusinessException;
+    /**
+     * Join the regular matchmaking queue.
+     * @return A future completed when a match is found or the matchmaking timeout expires
+     */
+    CompletableFuture<MatchmakingResultDTO> joinMatchmaking(String username, String gameType) throws BusinessException;
 
-    MatchmakingResultDTO joinTournamentMatchmaking(String username, String tournamentId) throws BusinessException;
+    /**
+     * Join the matchmaking queue of a tournament.
+     * @return A future completed when a match is found or the matchmaking timeout expires
+     */
+    CompletableFuture<MatchmakingResultDTO> joinTournamentMatchmaking(String username, String tournamentId) throws BusinessException;
 
     void leaveMatchmaking(String username, String gameType) throws BusinessException;
 
     void leaveTournamentMatchmaking(String username, String tournamentId) throws BusinessException;
 
-    MoveResultDTO makeMove(String gameId, String username, String move) throws BusinessException;
+    /**
+     * Play a move, followed by the premove of the opponent answering it, if any.
+     * @param ply Ply number of the move, counted from 1, or null: a move sent again for a ply
+     *            already played is acknowledged with the ALREADY_PLAYED outcome instead of being refused
+     */
+    MoveResultDTO makeMove(String gameId, String username, String move, Integer ply) throws BusinessException;
 
     GameStatusDTO getGameStatus(String gameId) throws BusinessException;
 
+    /**
+     * Status of several games, read in a single round-trip.
+     * @return The statuses of the games found, in the order of the ids
+     */
+    List<GameStatusDTO> getGameStatuses(List<String> gameIds) throws BusinessException;
+
+    /**
+     * Status of the games in progress of a tournament, oldest first, from its index of live games.
+     */
+    List<GameStatusDTO> getTournamentGameStatuses(String tournamentId) throws BusinessException;
+
+    /**
+     * Open a Server-Sent Events stream on a live game: a "status" event with the current
+     * state, then "move", "check", "opening" and "result" events as they happen, and a "resync"
+     * event holding the game as stored if moves already reported were lost.
+     * @param lastEventId Id of the last event received by a reconnecting client (its ply), or null:
+     *                    the events of the later plies still in the event log are sent after the status
+     */
+    SseEmitter subscribeToGameEvents(String gameId, Integer lastEventId) throws BusinessException;
+
+    /**
+     * Events of a game read from its event log, which only keeps its most recent writes.
+     * @param afterPly Only the events of later plies are returned (0 for all)
+     */
+    List<GameEventDTO> getGameEvents(String gameId, int afterPly) throws BusinessException;
+
     void resignGame(String gameId, String username) throws BusinessException;
+
+    /**
+     * Replace the premoves of a player, played in order right after each move of the opponent
+     * they answer. A premove that does not answer the move played, or is illegal, cancels the
+     * remaining ones.
+     * @param premoves The new premoves, empty to cancel them
+     */
+    void setPremoves(String gameId, String username, List<PremoveDTO> premoves) throws BusinessException;
+
+    /**
+     * Finish a game whose side to move let its clock run out.
+     * Called by the flag-fall scheduler of any instance: only the caller that claims the
+     * deadline finishes the game, and a deadline moved by a later move is ignored.
+     * @param deadline The flag-fall deadline that expired, in epoch millis
+     * @return true if the game was finished by this call
+     */
+    boolean flagGame(String gameId, long deadline) throws BusinessException;
+
+    /**
+     * End one batch of games with no move since the given time: games abandoned before both
+     * sides moved are aborted and deleted, the others are lost by the side to move and archived.
+     * @param idleSince Games whose last move is not after this time are reaped
+     * @param limit Maximum number of games to look at
+     * @return How many games were looked at, by outcome (ABORTED, ABANDONED, or "skipped" when
+     *         a game moved or was reaped elsewhere meanwhile, "expired" when it was already gone)
+     */
+    Map<String, Integer> reapAbandonedGames(long idleSince, int limit) throws BusinessException;
 }
@@ -3,11 +3,27 @@ package it.unipi.chessApp.service;
 import it.unipi.chessApp.model.ChessOpening;
 
 public interface OpeningService {
-    
+
     /**
      * Find an opening by FEN position.
      * @param fen The FEN string representing the board position
      * @return The matching ChessOpening, or null if not found
      */
     ChessOpening findOpeningByFen(String fen);
+
+    /**
+     * Find an opening by position key (see Zobrist.placementKey).
+     * The returned instance is shared and must not be modified.
+     * @param positionKey The key of the piece placement and side to move
+     * @return The matching ChessOpening, or null if the position has no opening name
+     */
+    ChessOpening findOpening(long positionKey);
+
+    /**
+     * Check whether a position lies on a line of the opening book, named or not.
+     * Live games stop looking up openings as soon as they reach a position outside the book.
+     * @param positionKey The key of the piece placement and side to move
+     * @return true if the position is in the book
+     */
+    boolean isBookPosition(long positionKey);
 }
@@ -0,0 +1,18 @@
+package it.unipi.chessApp.service.exception;
+
+/**
+ * A live game request reached an instance that does not own the game (see GameOwnership):
+ * the client is redirected to the owner.
+ */
+public class GameOwnedElsewhereException extends BusinessException {
+    private final String ownerUrl;
+
+    public GameOwnedElsewhereException(String gameId, String ownerUrl) {
+        super("Game " + gameId + " is served by " + ownerUrl);
+        this.ownerUrl = ownerUrl;
+    }
+
+    public String getOwnerUrl() {
+        return ownerUrl;
+    }
+}
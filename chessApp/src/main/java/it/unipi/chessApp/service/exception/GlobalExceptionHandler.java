@@ -1,6 +1,8 @@
 package it.unipi.chessApp.service.exception;
 
 import it.unipi.chessApp.dto.ResponseWrapper;
+import jakarta.servlet.http.HttpServletRequest;
+import java.net.URI;
 import java.util.HashMap;
 import java.util.Map;
 import org.springframework.http.HttpStatus;
@@ -26,6 +28,22 @@ public class GlobalExceptionHandler {
     return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(errorResponse);
   }
 
+  // 307 keeps the method and body, so a move is replayed as is on the owning instance
+  @ExceptionHandler(GameOwnedElsewhereException.class)
+  public ResponseEntity<ResponseWrapper<String>> handleGameOwnedElsewhereException(
+    GameOwnedElsewhereException ex,
+    HttpServletRequest request
+  ) {
+    String query = request.getQueryString() != null ? "?" + request.getQueryString() : "";
+    ResponseWrapper<String> errorResponse = new ResponseWrapper<>(
+      "Game served by another instance",
+      ex.getOwnerUrl()
+    );
+    return ResponseEntity.status(HttpStatus.TEMPORARY_REDIRECT)
+      .location(URI.create(ex.getOwnerUrl() + request.getRequestURI() + query))
+      .body(errorResponse);
+  }
+
   @ExceptionHandler(AuthenticationException.class)
   public ResponseEntity<ResponseWrapper<String>> handleAuthenticationException(
     AuthenticationException ex
@@ -0,0 +1,406 @@
+package it.unipi.chessApp.service.impl;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import it.unipi.chessApp.dto.GameDTO;
+import it.unipi.chessApp.dto.GameSummaryDTO;
+import it.unipi.chessApp.model.LiveGameState;
+import it.unipi.chessApp.model.User;
+import it.unipi.chessApp.repository.UserRepository;
+import it.unipi.chessApp.repository.redis.LiveGameRedisRepository;
+import it.unipi.chessApp.repository.redis.RedisBatchExecutor;
+import it.unipi.chessApp.service.GameService;
+import it.unipi.chessApp.service.TournamentService;
+import it.unipi.chessApp.service.UserService;
+import it.unipi.chessApp.utils.PackedMoves;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.stream.Consumer;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.PendingMessage;
+import org.springframework.data.redis.connection.stream.PendingMessages;
+import org.springframework.data.redis.connection.stream.ReadOffset;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.stream.StreamOffset;
+import org.springframework.data.redis.connection.stream.StreamReadOptions;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Archives completed live games to MongoDB (and Neo4j) off the move hot path.
+ * Ending a game only appends its id to a Redis Stream outbox, in the same round-trip as
+ * the final write, and keeps its Redis keys from expiring. Every instance consumes the
+ * stream in one consumer group: games are read in batches, inserted into "games" with
+ * one bulk write, then buffered into players or tournaments by a worker pool.
+ * An entry is acknowledged only when its game is fully archived; failed entries are
+ * claimed again after a delay and every step is idempotent by game id, so retries are safe.
+ * Entries that keep failing are moved to a dead-letter stream, as are games gone from Redis
+ * whose event log does not hold their end either.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class CompletedGameArchiver {
+
+    public static final String OUTBOX_STREAM = "chess:games:completed";
+    public static final String DEAD_LETTER_STREAM = "chess:games:completed:dead";
+    private static final String CONSUMER_GROUP = "archivers";
+    private static final String FIELD_GAME_ID = "gameId";
+    private static final DateTimeFormatter END_TIME_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private final StringRedisTemplate redisTemplate;
+    private final RedisBatchExecutor batchExecutor;
+    private final LiveGameRedisRepository liveGameRepository;
+    private final UserRepository userRepository;
+    private final GameService gameService;
+    private final UserService userService;
+    private final TournamentService tournamentService;
+    private final MeterRegistry meterRegistry;
+
+    private final String consumerName = "archiver-" + UUID.randomUUID();
+    private ThreadPoolTaskExecutor workers;
+
+    @Value("${live-game.archive.batch-size:100}")
+    private int batchSize;
+
+    @Value("${live-game.archive.workers:4}")
+    private int workerCount;
+
+    @Value("${live-game.archive.retry-after-ms:30000}")
+    private long retryAfterMs;
+
+    @Value("${live-game.archive.max-attempts:10}")
+    private int maxAttempts;
+
+    @Value("${live-game.archive.retention-seconds:3600}")
+    private long retentionSeconds;
+
+    @PostConstruct
+    void init() {
+        workers = new ThreadPoolTaskExecutor();
+        workers.setCorePoolSize(workerCount);
+        workers.setMaxPoolSize(workerCount);
+        workers.setThreadNamePrefix("game-archiver-");
+        workers.initialize();
+
+        try {
+            redisTemplate.execute((RedisCallback<String>) connection -> connection.streamCommands().xGroupCreate(
+                OUTBOX_STREAM.getBytes(StandardCharsets.UTF_8), CONSUMER_GROUP, ReadOffset.from("0-0"), true));
+        } catch (Exception e) {
+            // BUSYGROUP: another instance already created the group
+            log.debug("Archiver consumer group not created: {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        workers.shutdown();
+    }
+
+    /**
+     * Queue the hand-off of a completed game in a batch: its id is appended to the outbox
+     * and its keys stop expiring until it is archived.
+     */
+    public void enqueue(RedisBatchExecutor.Batch batch, String gameId) {
+        Map<String, String> entry = Map.of(FIELD_GAME_ID, gameId);
+        batch.command(conn -> conn.xAdd(OUTBOX_STREAM, entry));
+        liveGameRepository.persist(batch, gameId);
+    }
+
+    /**
+     * Read new outbox entries without blocking, since the Redis connection is shared.
+     */
+    @Scheduled(fixedDelayString = "${live-game.archive.poll-interval-ms:500}")
+    public void archiveNewGames() {
+        try {
+            List<MapRecord<String, Object, Object>> records = redisTemplate.opsForStream().read(
+                Consumer.from(CONSUMER_GROUP, consumerName),
+                StreamReadOptions.empty().count(batchSize),
+                StreamOffset.create(OUTBOX_STREAM, ReadOffset.lastConsumed()));
+            if (records != null && !records.isEmpty()) {
+                archive(records);
+            }
+        } catch (Exception e) {
+            log.error("Error archiving completed games: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Claim the entries left unacknowledged for too long, by this or a dead instance, and retry them.
+     */
+    @Scheduled(fixedDelayString = "${live-game.archive.retry-after-ms:30000}")
+    public void retryStaleGames() {
+        try {
+            PendingMessages pending = redisTemplate.opsForStream()
+                .pending(OUTBOX_STREAM, CONSUMER_GROUP, Range.unbounded(), batchSize);
+            Duration minIdle = Duration.ofMillis(retryAfterMs);
+
+            List<RecordId> retry = new ArrayList<>();
+            List<RecordId> exhausted = new ArrayList<>();
+            for (PendingMessage message : pending) {
+                if (message.getElapsedTimeSinceLastDelivery().compareTo(minIdle) < 0) {
+                    continue;
+                }
+                (message.getTotalDeliveryCount() >= maxAttempts ? exhausted : retry).add(message.getId());
+            }
+
+            if (!exhausted.isEmpty()) {
+                deadLetter(redisTemplate.opsForStream().claim(OUTBOX_STREAM, CONSUMER_GROUP, consumerName,
+                    minIdle, exhausted.toArray(new RecordId[0])));
+            }
+            if (!retry.isEmpty()) {
+                archive(redisTemplate.opsForStream().claim(OUTBOX_STREAM, CONSUMER_GROUP, consumerName,
+                    minIdle, retry.toArray(new RecordId[0])));
+            }
+        } catch (Exception e) {
+            log.error("Error retrying completed games: {}", e.getMessage(), e);
+        }
+    }
+
+    private void archive(List<MapRecord<String, Object, Object>> records) {
+        Map<String, RecordId> entries = new LinkedHashMap<>();
+        for (MapRecord<String, Object, Object> record : records) {
+            Object gameId = record.getValue().get(FIELD_GAME_ID);
+            if (gameId != null) {
+                entries.put(gameId.toString(), record.getId());
+            }
+        }
+
+        List<LiveGameState> games = new ArrayList<>(liveGameRepository.findAllWithMoves(new ArrayList<>(entries.keySet())));
+        if (games.size() < entries.size()) {
+            Set<String> found = new HashSet<>();
+            games.forEach(game -> found.add(game.getGameId()));
+            // A game whose state is gone can still be rebuilt from the final snapshot of its event log
+            for (String gameId : entries.keySet()) {
+                LiveGameState replayed = found.contains(gameId) ? null : replayLog(gameId);
+                if (replayed != null && !LiveGameState.STATUS_IN_PROGRESS.equals(replayed.getStatus())) {
+                    games.add(replayed);
+                    found.add(gameId);
+                    archiveCounter("replayed").increment();
+                }
+            }
+            List<MapRecord<String, Object, Object>> missing = records.stream()
+                .filter(record -> !found.contains(String.valueOf(record.getValue().get(FIELD_GAME_ID))))
+                .toList();
+            if (!missing.isEmpty()) {
+                log.error("{} completed games expired from Redis before being archived", missing.size());
+                deadLetter(missing);
+            }
+        }
+
+        // Step 1: build the archived games (player lookups) on the worker pool
+        List<CompletableFuture<ArchivedGame>> building = games.stream()
+            .map(game -> CompletableFuture.supplyAsync(() -> toArchivedGame(game), workers)
+                .exceptionally(e -> {
+                    log.error("Failed to prepare game {} for archiving, will retry", game.getGameId(), e);
+                    return null;
+                }))
+            .toList();
+        Map<String, ArchivedGame> prepared = new LinkedHashMap<>();
+        building.stream().map(CompletableFuture::join)
+            .filter(Objects::nonNull)
+            .forEach(game -> prepared.put(game.state().getGameId(), game));
+
+        // Step 2: one bulk insert for the whole batch
+        Set<String> stored;
+        try {
+            stored = gameService.createGames(prepared.values().stream().map(ArchivedGame::dto).toList());
+        } catch (Exception e) {
+            log.error("Bulk insert of {} completed games failed, will retry: {}", prepared.size(), e.getMessage());
+            archiveCounter("retry").increment(games.size());
+            return;
+        }
+
+        // Step 3: buffer each stored game into its players or tournament on the worker pool
+        List<CompletableFuture<String>> buffering = stored.stream()
+            .map(gameId -> CompletableFuture.supplyAsync(() -> bufferGame(prepared.get(gameId)) ? gameId : null, workers))
+            .toList();
+
+        RedisBatchExecutor.Batch done = batchExecutor.pipeline("archive.ack");
+        int archived = 0;
+        for (CompletableFuture<String> future : buffering) {
+            String gameId = future.join();
+            if (gameId == null) {
+                continue;
+            }
+            String recordId = entries.get(gameId).getValue();
+            done.command(conn -> conn.xAck(OUTBOX_STREAM, CONSUMER_GROUP, recordId))
+                .command(conn -> conn.xDel(OUTBOX_STREAM, recordId));
+            // Keep the finished game readable for a while (status, spectators), then let it go
+            liveGameRepository.expire(done, gameId, retentionSeconds);
+            archived++;
+        }
+        done.execute();
+
+        archiveCounter("archived").increment(archived);
+        int failed = games.size() - archived;
+        if (failed > 0) {
+            archiveCounter("retry").increment(failed);
+            log.warn("{} completed games could not be archived, will retry", failed);
+        }
+    }
+
+    private LiveGameState replayLog(String gameId) {
+        try {
+            return liveGameRepository.replayLog(gameId);
+        } catch (Exception e) {
+            log.warn("Could not replay the event log of completed game {}: {}", gameId, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * @return true if the game is buffered (or did not need to be)
+     */
+    private boolean bufferGame(ArchivedGame game) {
+        LiveGameState state = game.state();
+        try {
+            GameSummaryDTO summary = GameSummaryDTO.summarize(game.dto());
+            if (state.isTournamentGame()) {
+                String result = tournamentService.bufferTournamentGame(
+                    state.getTournamentId(),
+                    game.dto(),
+                    game.white() != null ? game.white().getId() : null,
+                    game.black() != null ? game.black().getId() : null
+                );
+                log.info("Tournament buffering result for game {}: {}", state.getGameId(), result);
+            } else {
+                if (game.white() != null) {
+                    userService.bufferGame(game.white().getId(), summary, state.getGameType());
+                }
+                if (game.black() != null) {
+                    userService.bufferGame(game.black().getId(), summary, state.getGameType());
+                }
+            }
+            log.info("Archived completed game {} with opening: {}", state.getGameId(), state.getDetectedOpening());
+            return true;
+        } catch (Exception e) {
+            log.error("Failed to buffer game {}, will retry", state.getGameId(), e);
+            return false;
+        }
+    }
+
+    private void deadLetter(List<MapRecord<String, Object, Object>> records) {
+        if (records == null || records.isEmpty()) {
+            return;
+        }
+        RedisBatchExecutor.Batch batch = batchExecutor.pipeline("archive.dead-letter");
+        for (MapRecord<String, Object, Object> record : records) {
+            Map<String, String> entry = new HashMap<>();
+            record.getValue().forEach((field, value) -> entry.put(field.toString(), value.toString()));
+            String recordId = record.getId().getValue();
+            batch.command(conn -> conn.xAdd(DEAD_LETTER_STREAM, entry))
+                .command(conn -> conn.xAck(OUTBOX_STREAM, CONSUMER_GROUP, recordId))
+                .command(conn -> conn.xDel(OUTBOX_STREAM, recordId));
+            log.error("Completed game {} moved to {}", entry.get(FIELD_GAME_ID), DEAD_LETTER_STREAM);
+        }
+        batch.execute();
+        archiveCounter("dead-letter").increment(records.size());
+    }
+
+    private ArchivedGame toArchivedGame(LiveGameState state) {
+        // Get users by username first to retrieve their ratings
+        User white = userRepository.findByUsername(state.getWhitePlayer()).orElse(null);
+        User black = userRepository.findByUsername(state.getBlackPlayer()).orElse(null);
+
+        GameDTO gameDTO = new GameDTO();
+        gameDTO.setId(state.getGameId());
+        gameDTO.setWhitePlayer(state.getWhitePlayer());
+        gameDTO.setBlackPlayer(state.getBlackPlayer());
+        gameDTO.setOpening(state.getDetectedOpening());
+        gameDTO.setEndTime(Instant.ofEpochMilli(state.getLastMoveAt())
+            .atZone(ZoneId.systemDefault())
+            .format(END_TIME_FORMATTER));
+        gameDTO.setTimeClass(state.isTournamentGame() ? "tournament" : state.getGameType());
+        gameDTO.setRated(!state.isTournamentGame());
+
+        if (white != null && white.getStats() != null) {
+            gameDTO.setWhiteRating(state.isTournamentGame()
+                ? white.getStats().getRapid()
+                : white.getRatingFor(state.getGameType()));
+        }
+        if (black != null && black.getStats() != null) {
+            gameDTO.setBlackRating(state.isTournamentGame()
+                ? black.getStats().getRapid()
+                : black.getRatingFor(state.getGameType()));
+        }
+
+        String resultString;
+        switch (state.getStatus()) {
+            case LiveGameState.STATUS_WHITE_WINS:
+                gameDTO.setResultWhite("win");
+                gameDTO.setResultBlack("loss");
+                resultString = "1-0";
+                break;
+            case LiveGameState.STATUS_BLACK_WINS:
+                gameDTO.setResultWhite("loss");
+                gameDTO.setResultBlack("win");
+                resultString = "0-1";
+                break;
+            default:
+                gameDTO.setResultWhite("draw");
+                gameDTO.setResultBlack("draw");
+                resultString = "1/2-1/2";
+                break;
+        }
+
+        gameDTO.setMoves(formatMovesForStorage(state, resultString));
+        return new ArchivedGame(state, gameDTO, white, black);
+    }
+
+    private String formatMovesForStorage(LiveGameState gameState, String result) {
+        if (PackedMoves.count(gameState.getMoveHistory()) == 0) {
+            return result;
+        }
+
+        // Recorded move by move while the game was played
+        String recorded = gameState.getCompleteSanMoves();
+        if (recorded != null) {
+            return recorded + " " + result;
+        }
+
+        try {
+            // Games started before SAN was recorded: replay them (space-separated, no move numbers)
+            String sanMoves = PackedMoves.toSan(gameState.getMoveHistory(), LiveGameState.STARTING_FEN);
+            return sanMoves + " " + result;
+        } catch (Exception e) {
+            log.warn("Failed to convert moves to SAN for game {}, using raw moves: {}",
+                     gameState.getGameId(), e.getMessage());
+            return String.join(" ", PackedMoves.toUci(gameState.getMoveHistory())) + " " + result;
+        }
+    }
+
+
+    private Counter archiveCounter(String outcome) {
+        return Counter.builder("chess.games.archive")
+            .description("Completed games processed by the archiver")
+            .tag("outcome", outcome)
+            .register(meterRegistry);
+    }
+
+    private record ArchivedGame(LiveGameState state, GameDTO dto, User white, User black) {
+    }
+}
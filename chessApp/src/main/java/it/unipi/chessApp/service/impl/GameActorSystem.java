@@ -0,0 +1,243 @@
+package it.unipi.chessApp.service.impl;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import it.unipi.chessApp.model.LiveGameState;
+import it.unipi.chessApp.service.exception.BusinessException;
+import it.unipi.chessApp.utils.BitboardPosition;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Single-writer actors for the live games owned by this instance (see GameOwnership).
+ * Every game has a mailbox: its tasks run one at a time, in order, on a shared thread pool,
+ * so the actor can keep the game state and position in memory between moves without locks.
+ * Actors idle for a while are dropped and reload their game from Redis on the next task.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class GameActorSystem {
+
+    /** Tasks run by one actor before giving its thread back to the other actors */
+    private static final int TASKS_PER_TURN = 32;
+
+    private final GameOwnership gameOwnership;
+    private final MeterRegistry meterRegistry;
+
+    private final Map<String, GameActor> actors = new ConcurrentHashMap<>();
+    private ThreadPoolTaskExecutor dispatcher;
+
+    @Value("${live-game.actors.threads:8}")
+    private int threads;
+
+    @Value("${live-game.actors.ask-timeout-ms:5000}")
+    private long askTimeoutMs;
+
+    @Value("${live-game.actors.passivate-after-ms:120000}")
+    private long passivateAfterMs;
+
+    @PostConstruct
+    void init() {
+        dispatcher = new ThreadPoolTaskExecutor();
+        dispatcher.setCorePoolSize(threads);
+        dispatcher.setMaxPoolSize(threads);
+        dispatcher.setThreadNamePrefix("game-actor-");
+        dispatcher.initialize();
+
+        // Games that moved to another instance must be reloaded if they ever come back
+        gameOwnership.onChange(ownership -> actors.keySet().stream()
+            .filter(gameId -> !ownership.isLocal(gameId))
+            .forEach(this::evict));
+
+        Gauge.builder("chess.game.actors", actors, Map::size)
+            .description("Live game actors held in memory by this instance")
+            .register(meterRegistry);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        dispatcher.shutdown();
+    }
+
+    public boolean isEnabled() {
+        return gameOwnership.isEnabled();
+    }
+
+    /**
+     * Run a task in the mailbox of a game and wait for its result.
+     * A task that fails unexpectedly leaves the actor without state, so the next one starts
+     * from Redis; a BusinessException is a refused request and keeps it.
+     */
+    public <T> T ask(String gameId, ActorTask<T> task) throws BusinessException {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        tell(gameId, actor -> {
+            try {
+                result.complete(task.run(actor));
+            } catch (BusinessException e) {
+                result.completeExceptionally(e);
+            } catch (Exception e) {
+                actor.clear();
+                result.completeExceptionally(e);
+            }
+        });
+        try {
+            return result.get(askTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof BusinessException businessException) {
+                throw businessException;
+            }
+            throw new BusinessException("Error in game " + gameId,
+                                        e.getCause() instanceof Exception cause ? cause : e);
+        } catch (TimeoutException e) {
+            throw new BusinessException("Game " + gameId + " is busy, try again");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BusinessException("Interrupted while waiting for game " + gameId);
+        }
+    }
+
+    /**
+     * Queue a task in the mailbox of a game without waiting for it.
+     */
+    public void tell(String gameId, Consumer<GameActor> task) {
+        // Enqueued under the map lock of the game, so passivation never drops a non-empty mailbox
+        GameActor actor = actors.compute(gameId, (id, existing) -> {
+            GameActor target = existing != null ? existing : new GameActor(id);
+            target.mailbox.add(task);
+            return target;
+        });
+        actor.schedule();
+    }
+
+    /**
+     * Drop the in-memory state of a game after the tasks already queued, e.g. when it ended
+     * or was changed outside its actor.
+     */
+    public void evict(String gameId) {
+        if (actors.containsKey(gameId)) {
+            tell(gameId, GameActor::clear);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${live-game.actors.passivate-interval-ms:30000}")
+    public void passivateIdleActors() {
+        long idleSince = System.currentTimeMillis() - passivateAfterMs;
+        actors.keySet().forEach(gameId -> actors.computeIfPresent(gameId, (id, actor) ->
+            actor.isIdleSince(idleSince) ? null : actor));
+    }
+
+    @FunctionalInterface
+    public interface ActorTask<T> {
+        T run(GameActor actor) throws Exception;
+    }
+
+    /**
+     * The in-memory copy of a live game, only ever touched from its own mailbox.
+     */
+    public final class GameActor {
+        private final String gameId;
+        private final Queue<Consumer<GameActor>> mailbox = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        private volatile long lastActiveAt = System.currentTimeMillis();
+        private LiveGameState state;
+        private BitboardPosition position;
+        private long generation;
+
+        private GameActor(String gameId) {
+            this.gameId = gameId;
+        }
+
+        public String getGameId() {
+            return gameId;
+        }
+
+        /**
+         * @return The cached game, or null if it must be loaded
+         */
+        public LiveGameState getState() {
+            return state;
+        }
+
+        public BitboardPosition getPosition() {
+            return position;
+        }
+
+        public void load(LiveGameState state, BitboardPosition position) {
+            this.state = state;
+            this.position = position;
+        }
+
+        public void clear() {
+            state = null;
+            position = null;
+        }
+
+        /**
+         * Changes when the game is invalidated: tasks queued from an older generation must not
+         * act on what they read.
+         */
+        public long getGeneration() {
+            return generation;
+        }
+
+        /**
+         * Drop the game because it turned out to be stale, e.g. it was changed outside the actor.
+         */
+        public void invalidate() {
+            generation++;
+            clear();
+        }
+
+        private void schedule() {
+            if (scheduled.compareAndSet(false, true)) {
+                dispatcher.execute(this::drain);
+            }
+        }
+
+        private void drain() {
+            try {
+                for (int i = 0; i < TASKS_PER_TURN; i++) {
+                    Consumer<GameActor> task = mailbox.poll();
+                    if (task == null) {
+                        break;
+                    }
+                    try {
+                        task.accept(this);
+                    } catch (Exception e) {
+                        clear();
+                        log.error("Error in actor of game {}", gameId, e);
+                    }
+                }
+            } finally {
+                lastActiveAt = System.currentTimeMillis();
+                scheduled.set(false);
+                // A task queued after the last poll must not be left behind
+                if (!mailbox.isEmpty()) {
+                    schedule();
+                }
+            }
+        }
+
+        private boolean isIdleSince(long time) {
+            return !scheduled.get() && mailbox.isEmpty() && lastActiveAt < time;
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package it.unipi.chessApp.service.impl;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import it.unipi.chessApp.utils.HierarchicalTimingWheel;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Flag-fall deadlines of the games created or moved on this instance, kept in a
+ * hierarchical timing wheel so that tracking a game costs one wheel entry, not a timer.
+ * A move pushes a new deadline without removing the previous one: when the older entry
+ * fires it no longer matches the latest deadline of its game and is dropped.
+ * <p>
+ * The wheel only makes flag falls prompt: the deadlines themselves live in Redis
+ * (see LiveGameRedisRepository.CLOCK_DEADLINES_KEY), so any instance can finish a game.
+ */
+@Component
+@RequiredArgsConstructor
+public class GameClockWatcher {
+
+    private final MeterRegistry meterRegistry;
+
+    private final Map<String, Long> deadlines = new ConcurrentHashMap<>();
+    private HierarchicalTimingWheel<String> wheel;
+
+    @Value("${live-game.clock.tick-ms:100}")
+    private long tickMs;
+
+    @PostConstruct
+    void init() {
+        // 64 buckets on 4 levels: about 19 days at 100 ms per tick, beyond any game
+        wheel = new HierarchicalTimingWheel<>(tickMs, 64, 4, System.currentTimeMillis());
+        Gauge.builder("chess.clock.watched.games", deadlines, Map::size)
+            .description("Timed games whose flag fall is watched by this instance")
+            .register(meterRegistry);
+    }
+
+    public void watch(String gameId, long deadline) {
+        deadlines.put(gameId, deadline);
+        wheel.schedule(gameId, deadline);
+    }
+
+    public void forget(String gameId) {
+        deadlines.remove(gameId);
+    }
+
+    /**
+     * Advance the wheel to the given time.
+     * @return The games whose latest deadline has passed, with that deadline
+     */
+    public Map<String, Long> expire(long now) {
+        Map<String, Long> expired = new LinkedHashMap<>();
+        for (String gameId : wheel.advance(now)) {
+            Long deadline = deadlines.get(gameId);
+            if (deadline != null && deadline <= now && deadlines.remove(gameId, deadline)) {
+                expired.put(gameId, deadline);
+            }
+        }
+        return expired;
+    }
+}
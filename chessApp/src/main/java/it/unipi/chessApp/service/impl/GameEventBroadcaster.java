@@ -0,0 +1,429 @@
+package it.unipi.chessApp.service.impl;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import it.unipi.chessApp.dto.GameEventDTO;
+import it.unipi.chessApp.dto.GameStatusDTO;
+import it.unipi.chessApp.repository.redis.RedisBatchExecutor;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter.DataWithMediaType;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Pushes live game events to Server-Sent Events streams and to other local listeners
+ * (the WebSocket sessions of the players).
+ * Events are published once on a per-game Redis channel; each instance subscribes to the
+ * channel of a game only while at least one of its clients follows that game, and fans the
+ * event out to all of them. Spectators therefore cost one subscription per game per instance.
+ * <p>
+ * Messages arrive in the order they were published, on the thread of the subscription connection
+ * (see RedisConfig): they are only parsed there, then delivered by a pool, one game at a time in
+ * the order received, so the move that ended a game reaches its clients before the result. Each
+ * SSE stream is written from its own queue, so a slow client only holds back itself.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class GameEventBroadcaster implements MessageListener {
+
+    private static final String CHANNEL_PREFIX = "chess:game:";
+    private static final String CHANNEL_SUFFIX = ":events";
+
+    private final ObjectMapper objectMapper;
+    private final RedisMessageListenerContainer listenerContainer;
+
+    private final Map<String, Followers> followers = new ConcurrentHashMap<>();
+    private ThreadPoolTaskExecutor deliveries;
+
+    @Value("${live-game.events.stream-timeout-ms:1800000}")
+    private long streamTimeoutMs;
+
+    @Value("${live-game.events.threads:4}")
+    private int threads;
+
+    @PostConstruct
+    void init() {
+        deliveries = new ThreadPoolTaskExecutor();
+        deliveries.setCorePoolSize(threads);
+        deliveries.setMaxPoolSize(threads);
+        deliveries.setThreadNamePrefix("game-events-");
+        deliveries.initialize();
+    }
+
+    @PreDestroy
+    void shutdown() {
+        deliveries.shutdown();
+    }
+
+    public static String channel(String gameId) {
+        return CHANNEL_PREFIX + gameId + CHANNEL_SUFFIX;
+    }
+
+    /**
+     * Queue the publication of an event in a batch, so it reaches Redis in the same
+     * round-trip as the write it describes.
+     */
+    public void publish(RedisBatchExecutor.Batch batch, GameEventDTO event) {
+        try {
+            String payload = objectMapper.writeValueAsString(event);
+            String channel = channel(event.getGameId());
+            batch.command(conn -> conn.publish(channel, payload));
+        } catch (JsonProcessingException e) {
+            log.error("Failed to serialize {} event of game {}: {}", event.getType(), event.getGameId(), e.getMessage());
+        }
+    }
+
+    /**
+     * Open an event stream on a game and follow it at once, before its status is read: events
+     * received from now on are held until {@link #start} has sent the status, so none is lost.
+     * The caller must then call either {@link #start} or {@link #cancel}.
+     */
+    public SseEmitter open(String gameId) {
+        SseEmitter emitter = new SseEmitter(streamTimeoutMs);
+        Runnable remove = () -> unsubscribe(gameId, emitter);
+        emitter.onCompletion(remove);
+        emitter.onTimeout(remove);
+        emitter.onError(e -> remove.run());
+        follow(gameId, game -> game.streams.put(emitter, new Stream(emitter, deliveries)));
+        return emitter;
+    }
+
+    /**
+     * Start an opened stream: send a "status" event holding the current state, the events the
+     * client missed, then the events held since {@link #open}, skipping those already sent as
+     * missed. The stream then receives every event of the game and is completed after the result.
+     * @param status The current status of the game, read after the stream was opened
+     * @param ended Whether the game is already over, in which case the stream is completed at once
+     * @param missed Events published since the last one received by a reconnecting client
+     */
+    public void start(String gameId, SseEmitter emitter, GameStatusDTO status, boolean ended, List<GameEventDTO> missed) {
+        Followers game = followers.get(gameId);
+        Stream stream = game != null ? game.streams.get(emitter) : null;
+        if (stream == null) {
+            // Already completed, e.g. the client went away
+            return;
+        }
+        if (stream.start(status, missed) || ended) {
+            emitter.complete();
+            unsubscribe(gameId, emitter);
+        }
+    }
+
+    /**
+     * Drop an opened stream that cannot be started, e.g. because the game does not exist.
+     */
+    public void cancel(String gameId, SseEmitter emitter) {
+        unsubscribe(gameId, emitter);
+        emitter.complete();
+    }
+
+    /**
+     * Receive the events of a game until {@link #removeListener} is called.
+     */
+    public void addListener(String gameId, GameEventListener listener) {
+        follow(gameId, game -> game.listeners.add(listener));
+    }
+
+    public void removeListener(String gameId, GameEventListener listener) {
+        unfollow(gameId, game -> game.listeners.remove(listener));
+    }
+
+    /**
+     * Called on the thread of the subscription connection, in the order the messages were
+     * published: the event is only parsed here and queued for delivery.
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String channel = new String(message.getChannel(), StandardCharsets.UTF_8);
+        String gameId = channel.substring(CHANNEL_PREFIX.length(), channel.length() - CHANNEL_SUFFIX.length());
+        Followers game = followers.get(gameId);
+        if (game == null) {
+            return;
+        }
+
+        GameEventDTO event;
+        try {
+            event = objectMapper.readValue(message.getBody(), GameEventDTO.class);
+        } catch (IOException e) {
+            log.error("Invalid event on channel {}: {}", channel, e.getMessage());
+            return;
+        }
+        // The payload is already JSON: listeners get it as is
+        String json = new String(message.getBody(), StandardCharsets.UTF_8);
+        game.mailbox.add(() -> deliver(gameId, game, event, json));
+    }
+
+    private void deliver(String gameId, Followers game, GameEventDTO event, String json) {
+        for (GameEventListener listener : game.listeners) {
+            try {
+                listener.onEvent(event, json);
+            } catch (Exception e) {
+                log.warn("Listener of game {} failed on {} event: {}", gameId, event.getType(), e.getMessage());
+            }
+        }
+        if (game.streams.isEmpty()) {
+            return;
+        }
+        // Build the SSE frame once and write it to every stream
+        Set<DataWithMediaType> frame = SseEmitter.event()
+            .name(event.getType())
+            .id(String.valueOf(event.getPly()))
+            .data(json, MediaType.APPLICATION_JSON)
+            .build();
+        for (Stream stream : game.streams.values()) {
+            stream.send(event, frame);
+        }
+    }
+
+    /**
+     * Comment lines keep idle streams open through proxies and reveal disconnected clients.
+     */
+    @Scheduled(fixedDelayString = "${live-game.events.heartbeat-ms:15000}")
+    public void sendHeartbeats() {
+        followers.values().forEach(game -> game.streams.values().forEach(Stream::sendHeartbeat));
+    }
+
+    private void unsubscribe(String gameId, SseEmitter emitter) {
+        unfollow(gameId, game -> game.streams.remove(emitter));
+    }
+
+    /**
+     * The channel is (un)subscribed under the lock of the game's entry rather than inside a map
+     * update, so the Redis round-trip only holds back clients of the same game. An entry leaves
+     * the map only after its channel was unsubscribed, so a newer entry is never unsubscribed
+     * by an older one.
+     */
+    private void follow(String gameId, Consumer<Followers> add) {
+        while (true) {
+            Followers game = followers.computeIfAbsent(gameId, id -> new Followers());
+            synchronized (game) {
+                if (game.removed) {
+                    // Emptied and being dropped: retry on a fresh entry
+                    continue;
+                }
+                add.accept(game);
+                if (!game.subscribed) {
+                    listenerContainer.addMessageListener(this, new ChannelTopic(channel(gameId)));
+                    game.subscribed = true;
+                    log.debug("Subscribed to events of game {}", gameId);
+                }
+                return;
+            }
+        }
+    }
+
+    private void unfollow(String gameId, Consumer<Followers> remove) {
+        Followers game = followers.get(gameId);
+        if (game == null) {
+            return;
+        }
+        synchronized (game) {
+            remove.accept(game);
+            if (game.removed || !game.streams.isEmpty() || !game.listeners.isEmpty()) {
+                return;
+            }
+            game.removed = true;
+            if (game.subscribed) {
+                listenerContainer.removeMessageListener(this, new ChannelTopic(channel(gameId)));
+                log.debug("Unsubscribed from events of game {}", gameId);
+            }
+            followers.remove(gameId, game);
+        }
+    }
+
+    /**
+     * A local client following a game other than an SSE stream.
+     */
+    @FunctionalInterface
+    public interface GameEventListener {
+        /**
+         * Called on a delivery thread, for one event of a game at a time, in the order published.
+         * @param json The event as published, already serialized
+         */
+        void onEvent(GameEventDTO event, String json) throws Exception;
+    }
+
+    private class Followers {
+        private final Mailbox mailbox = new Mailbox(deliveries);
+        private final Map<SseEmitter, Stream> streams = new ConcurrentHashMap<>();
+        private final Set<GameEventListener> listeners = new CopyOnWriteArraySet<>();
+        // Guarded by the entry itself
+        private boolean subscribed;
+        private boolean removed;
+    }
+
+    /**
+     * An SSE stream; events received before it is started are held, later ones are queued and
+     * written in order on a delivery thread.
+     */
+    private static class Stream {
+        // A client this far behind is dropped: it reconnects and catches up from the event log
+        private static final int MAX_PENDING = 64;
+
+        private final SseEmitter emitter;
+        private final Mailbox writes;
+        private final AtomicInteger pending = new AtomicInteger();
+        // Null once the stream is started
+        private List<HeldEvent> held = new ArrayList<>();
+
+        Stream(SseEmitter emitter, Executor executor) {
+            this.emitter = emitter;
+            this.writes = new Mailbox(executor);
+        }
+
+        synchronized void send(GameEventDTO event, Set<DataWithMediaType> frame) {
+            if (held != null) {
+                held.add(new HeldEvent(event, frame));
+                return;
+            }
+            if (pending.incrementAndGet() > MAX_PENDING) {
+                emitter.completeWithError(new IOException("Event stream too far behind"));
+                return;
+            }
+            writes.add(() -> {
+                pending.decrementAndGet();
+                write(event, frame);
+            });
+        }
+
+        /**
+         * Queued behind the events, as the emitter is not to be written by two threads at once.
+         */
+        void sendHeartbeat() {
+            writes.add(() -> {
+                try {
+                    emitter.send(SseEmitter.event().comment("heartbeat"));
+                } catch (Exception e) {
+                    emitter.completeWithError(e);
+                }
+            });
+        }
+
+        /**
+         * @return Whether the result was sent, so the stream is over
+         */
+        synchronized boolean start(GameStatusDTO status, List<GameEventDTO> missed) {
+            boolean over = false;
+            try {
+                emitter.send(SseEmitter.event().name("status").data(status, MediaType.APPLICATION_JSON));
+                Set<String> sent = new HashSet<>();
+                for (GameEventDTO event : missed) {
+                    emitter.send(SseEmitter.event()
+                        .name(event.getType())
+                        .id(String.valueOf(event.getPly()))
+                        .data(event, MediaType.APPLICATION_JSON));
+                    sent.add(key(event));
+                    over |= isResult(event);
+                }
+                for (HeldEvent event : held) {
+                    if (sent.add(key(event.event()))) {
+                        emitter.send(event.frame());
+                        over |= isResult(event.event());
+                    }
+                }
+            } catch (Exception e) {
+                emitter.completeWithError(e);
+            }
+            held = null;
+            return over;
+        }
+
+        private void write(GameEventDTO event, Set<DataWithMediaType> frame) {
+            try {
+                emitter.send(frame);
+                if (isResult(event)) {
+                    emitter.complete();
+                }
+            } catch (Exception e) {
+                emitter.completeWithError(e);
+            }
+        }
+
+        private static String key(GameEventDTO event) {
+            return event.getType() + ":" + event.getPly();
+        }
+
+        private static boolean isResult(GameEventDTO event) {
+            return GameEventDTO.TYPE_RESULT.equals(event.getType());
+        }
+    }
+
+    private record HeldEvent(GameEventDTO event, Set<DataWithMediaType> frame) {
+    }
+
+    /**
+     * Tasks run one at a time in the order they were added, on a shared pool.
+     */
+    private static class Mailbox {
+        private static final int TASKS_PER_TURN = 32;
+
+        private final Executor executor;
+        private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+
+        Mailbox(Executor executor) {
+            this.executor = executor;
+        }
+
+        void add(Runnable task) {
+            tasks.add(task);
+            schedule();
+        }
+
+        private void schedule() {
+            if (scheduled.compareAndSet(false, true)) {
+                executor.execute(this::drain);
+            }
+        }
+
+        private void drain() {
+            try {
+                for (int i = 0; i < TASKS_PER_TURN; i++) {
+                    Runnable task = tasks.poll();
+                    if (task == null) {
+                        break;
+                    }
+                    try {
+                        task.run();
+                    } catch (Exception e) {
+                        log.error("Error delivering a game event", e);
+                    }
+                }
+            } finally {
+                scheduled.set(false);
+                // A task added after the last poll must not be left behind
+                if (!tasks.isEmpty()) {
+                    schedule();
+                }
+            }
+        }
+    }
+}
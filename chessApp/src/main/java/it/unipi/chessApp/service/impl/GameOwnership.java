@@ -0,0 +1,145 @@
+package it.unipi.chessApp.service.impl;
+
+import it.unipi.chessApp.repository.redis.RedisKeys;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Assigns every live game to exactly one application instance when game actors are enabled.
+ * Instances register their base URL in a Redis sorted set scored by their last heartbeat;
+ * members that stop beating are dropped. Games are mapped to members with consistent hashing
+ * (each member owns several points of a hash ring), so a membership change only moves the
+ * games of the ring segments it touches.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class GameOwnership {
+
+    private final StringRedisTemplate redisTemplate;
+
+    private final List<Consumer<GameOwnership>> listeners = new CopyOnWriteArrayList<>();
+    private volatile NavigableMap<Long, String> ring = new TreeMap<>();
+    private volatile Set<String> members = Set.of();
+
+    @Value("${live-game.actors.enabled:false}")
+    private boolean enabled;
+
+    @Value("${live-game.actors.instance-url:http://localhost:${server.port:8080}}")
+    private String instanceUrl;
+
+    @Value("${live-game.actors.member-timeout-ms:10000}")
+    private long memberTimeoutMs;
+
+    @Value("${live-game.actors.virtual-nodes:64}")
+    private int virtualNodes;
+
+    @PostConstruct
+    void join() {
+        if (enabled) {
+            heartbeat();
+            log.info("Joined game ownership ring as {} ({} members)", instanceUrl, members.size());
+        }
+    }
+
+    @PreDestroy
+    void leave() {
+        if (enabled) {
+            try {
+                redisTemplate.opsForZSet().remove(RedisKeys.INSTANCES, instanceUrl);
+            } catch (Exception e) {
+                log.warn("Failed to leave game ownership ring: {}", e.getMessage());
+            }
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @return The base URL of the instance owning a game
+     */
+    public String ownerOf(String gameId) {
+        NavigableMap<Long, String> current = ring;
+        if (current.isEmpty()) {
+            return instanceUrl;
+        }
+        Map.Entry<Long, String> owner = current.ceilingEntry(hash(gameId));
+        return owner != null ? owner.getValue() : current.firstEntry().getValue();
+    }
+
+    public boolean isLocal(String gameId) {
+        return instanceUrl.equals(ownerOf(gameId));
+    }
+
+    /**
+     * Be told when the membership changes, e.g. to release the games no longer owned.
+     */
+    public void onChange(Consumer<GameOwnership> listener) {
+        listeners.add(listener);
+    }
+
+    @Scheduled(fixedDelayString = "${live-game.actors.heartbeat-ms:2000}")
+    public void heartbeat() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            long now = System.currentTimeMillis();
+            redisTemplate.opsForZSet().add(RedisKeys.INSTANCES, instanceUrl, now);
+            redisTemplate.opsForZSet().removeRangeByScore(RedisKeys.INSTANCES, 0, now - memberTimeoutMs);
+            Set<String> current = redisTemplate.opsForZSet().range(RedisKeys.INSTANCES, 0, -1);
+            if (current == null || current.equals(members)) {
+                return;
+            }
+            rebuild(new TreeSet<>(current));
+        } catch (Exception e) {
+            log.error("Error in game ownership heartbeat: {}", e.getMessage(), e);
+        }
+    }
+
+    private void rebuild(Set<String> current) {
+        NavigableMap<Long, String> newRing = new TreeMap<>();
+        for (String member : current) {
+            for (int i = 0; i < virtualNodes; i++) {
+                newRing.put(hash(member + '#' + i), member);
+            }
+        }
+        ring = newRing;
+        members = Set.copyOf(current);
+        log.info("Game ownership ring changed: {}", current);
+        listeners.forEach(listener -> listener.accept(this));
+    }
+
+    /**
+     * 64-bit FNV-1a with a final avalanche, so close ids spread over the whole ring.
+     */
+    private static long hash(String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b;
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -1,5 +1,7 @@
 package it.unipi.chessApp.service.impl;
 
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.client.result.UpdateResult;
 import it.unipi.chessApp.dto.AverageEloResult;
 import it.unipi.chessApp.dto.GameDTO;
 import it.unipi.chessApp.dto.MonthlyOpeningStatDTO;
@@ -12,11 +14,19 @@ import it.unipi.chessApp.service.exception.BusinessException;
 import it.unipi.chessApp.utils.Constants;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.stream.Collectors;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Service;
 
 @Service
@@ -26,7 +36,11 @@ public class GameServiceImpl implements GameService {
   private static final DateTimeFormatter DATE_TIME_FORMATTER = 
       DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
 
+  private static final int DUPLICATE_KEY_ERROR = 11000;
+  private static final String BUFFERED_INTO = "buffered_into";
+
   private final GameRepository gameRepository;
+  private final MongoTemplate mongoTemplate;
 
   @Override
   public GameDTO createGame(GameDTO gameDTO) throws BusinessException {
@@ -39,6 +53,52 @@ public class GameServiceImpl implements GameService {
     }
   }
 
+  @Override
+  public Set<String> createGames(List<GameDTO> games) throws BusinessException {
+    Set<String> stored = new HashSet<>();
+    if (games.isEmpty()) {
+      return stored;
+    }
+    games.forEach(game -> stored.add(game.getId()));
+    try {
+      mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Game.class)
+          .insert(games.stream().map(this::convertToEntity).collect(Collectors.toList()))
+          .execute();
+    } catch (BulkOperationException e) {
+      for (BulkWriteError error : e.getErrors()) {
+        if (error.getCode() != DUPLICATE_KEY_ERROR) {
+          stored.remove(games.get(error.getIndex()).getId());
+        }
+      }
+    } catch (Exception e) {
+      throw new BusinessException("Error creating games", e);
+    }
+    return stored;
+  }
+
+  @Override
+  public boolean markBuffered(String gameId, String bufferId) {
+    if (gameId == null) {
+      return true;
+    }
+    Query unmarked = new Query(Criteria.where("_id").is(gameId).and(BUFFERED_INTO).ne(bufferId));
+    UpdateResult result = mongoTemplate.updateFirst(unmarked, new Update().addToSet(BUFFERED_INTO, bufferId), Game.class);
+    if (result.getModifiedCount() > 0) {
+      return true;
+    }
+    // Not archived: there is nothing to keep the mark on
+    return !mongoTemplate.exists(new Query(Criteria.where("_id").is(gameId)), Game.class);
+  }
+
+  @Override
+  public void unmarkBuffered(String gameId, String bufferId) {
+    if (gameId == null) {
+      return;
+    }
+    mongoTemplate.updateFirst(new Query(Criteria.where("_id").is(gameId)),
+        new Update().pull(BUFFERED_INTO, bufferId), Game.class);
+  }
+
   @Override
   public GameDTO getGameById(String id) throws BusinessException {
     try {
@@ -92,11 +152,11 @@ public class GameServiceImpl implements GameService {
   public GameDTO updateGame(String id, GameDTO gameDTO)
     throws BusinessException {
     try {
-      if (!gameRepository.existsById(id)) {
-        throw new BusinessException("Game not found with ID: " + id);
-      }
+      Game existing = gameRepository.findById(id)
+          .orElseThrow(() -> new BusinessException("Game not found with ID: " + id));
       Game game = convertToEntity(gameDTO);
       game.setId(id);
+      game.setBufferedInto(existing.getBufferedInto());
       Game updatedGame = gameRepository.save(game);
       return convertToDTO(updatedGame);
     } catch (BusinessException e) {
@@ -1,37 +1,48 @@
 package it.unipi.chessApp.service.impl;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.github.bhlangonijr.chesslib.Board;
-import com.github.bhlangonijr.chesslib.Side;
-import com.github.bhlangonijr.chesslib.move.Move;
-import com.github.bhlangonijr.chesslib.move.MoveList;
-import it.unipi.chessApp.dto.GameDTO;
+import it.unipi.chessApp.config.RedisConfig;
+import it.unipi.chessApp.dto.GameEventDTO;
 import it.unipi.chessApp.dto.GameStatusDTO;
-import it.unipi.chessApp.dto.GameSummaryDTO;
 import it.unipi.chessApp.dto.MatchmakingResultDTO;
 import it.unipi.chessApp.dto.MoveResultDTO;
+import it.unipi.chessApp.dto.PremoveDTO;
 import it.unipi.chessApp.model.User;
 import it.unipi.chessApp.model.ChessOpening;
 import it.unipi.chessApp.model.LiveGameState;
 import it.unipi.chessApp.repository.TournamentRepository;
 import it.unipi.chessApp.repository.UserRepository;
-import it.unipi.chessApp.service.GameService;
+import it.unipi.chessApp.repository.redis.LiveGameRedisRepository;
+import it.unipi.chessApp.repository.redis.RedisBatchExecutor;
+import it.unipi.chessApp.repository.redis.RedisKeys;
+import it.unipi.chessApp.repository.redis.RedisNearCache;
 import it.unipi.chessApp.service.LiveGameService;
 import it.unipi.chessApp.service.OpeningService;
-import it.unipi.chessApp.service.TournamentService;
-import it.unipi.chessApp.service.UserService;
 import it.unipi.chessApp.service.exception.BusinessException;
+import it.unipi.chessApp.service.exception.GameOwnedElsewhereException;
+import it.unipi.chessApp.utils.BitboardPosition;
+import it.unipi.chessApp.utils.PackedMoves;
+import it.unipi.chessApp.utils.Zobrist;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.script.RedisScript;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Service;
-
-import java.time.Instant;
-import java.time.ZoneId;
-import java.time.format.DateTimeFormatter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
 import org.bson.types.ObjectId;
 
 @Service
@@ -39,22 +50,38 @@ import org.bson.types.ObjectId;
 @Slf4j
 public class LiveGameServiceImpl implements LiveGameService {
 
+    // Master only: matchmaking pointers and queues are read right after a script wrote them
+    @Qualifier(RedisConfig.MASTER_TEMPLATE)
     private final StringRedisTemplate redisTemplate;
-    private final ObjectMapper objectMapper;
+    private final LiveGameRedisRepository liveGameRepository;
+    private final RedisBatchExecutor batchExecutor;
+    private final RedisNearCache nearCache;
     private final OpeningService openingService;
-    private final GameService gameService;
     private final TournamentRepository tournamentRepository;
     private final UserRepository userRepository;
-    private final UserService userService;
-    private final TournamentService tournamentService;
-
-    private static final String MATCHMAKING_QUEUE_PREFIX = "chess:matchmaking:queue:";
-    private static final String TOURNAMENT_QUEUE_PREFIX = "chess:matchmaking:tournament:";
+    private final MatchmakingNotifier matchmakingNotifier;
+    private final GameEventBroadcaster gameEventBroadcaster;
+    private final CompletedGameArchiver completedGameArchiver;
+    private final GameClockWatcher clockWatcher;
+    private final LiveGameTiering liveGameTiering;
+    private final GameActorSystem actorSystem;
+    private final GameOwnership gameOwnership;
+    private final PositionCache positionCache;
 
     private static final java.util.Set<String> VALID_GAME_TYPES = java.util.Set.of("bullet", "blitz", "rapid");
-    private static final String GAME_STATE_PREFIX = "chess:game:";
-    private static final String PLAYER_GAME_PREFIX = "chess:player:game:";
-    private static final String TOURNAMENT_GAME_COUNT_PREFIX = "chess:tournament:";
+    private static final String REAP_SKIPPED = "skipped";
+    private static final String REAP_EXPIRED = "expired";
+    private static final Pattern UCI_MOVE = Pattern.compile("[a-h][1-8][a-h][1-8][qrbn]?");
+    // Position of the game being moved by a request thread, loaded from its FEN (the actors keep their own)
+    private static final ThreadLocal<BitboardPosition> POSITIONS = ThreadLocal.withInitial(BitboardPosition::new);
+
+    private static final RedisScript<String> PAIR_PLAYERS_SCRIPT =
+        RedisScript.of(new ClassPathResource("scripts/pair_players.lua"), String.class);
+    private static final RedisScript<Long> UNPAIR_PLAYERS_SCRIPT =
+        RedisScript.of(new ClassPathResource("scripts/unpair_players.lua"), Long.class);
+
+    @Value("${redis.mode:" + RedisConfig.MASTER_REPLICA_MODE + "}")
+    private String redisMode;
 
     @Value("${live-game.expiration-hours:24}")
     private int gameExpirationHours;
@@ -65,13 +92,20 @@ public class LiveGameServiceImpl implements LiveGameService {
     @Value("${live-game.matchmaking-timeout-seconds:60}")
     private int matchmakingTimeoutSeconds;
 
+    @Value("${live-game.write.max-attempts:3}")
+    private int writeMaxAttempts;
+
+    @Value("${live-game.premoves.max:8}")
+    private int maxPremoves;
+
+    @Value("${live-game.status.max-batch:200}")
+    private int maxStatusBatch;
+
     @Value("${chess.openings.max-move-check:30}")
     private int maxMoveCheckForOpening;
 
-    private static final int POLL_INTERVAL_MS = 500;
-
     @Override
-    public MatchmakingResultDTO joinMatchmaking(String username, String gameType) throws BusinessException {
+    public CompletableFuture<MatchmakingResultDTO> joinMatchmaking(String username, String gameType) throws BusinessException {
         try {
             // Validate game type
             if (gameType == null || !VALID_GAME_TYPES.contains(gameType.toLowerCase())) {
@@ -79,7 +113,7 @@ public class LiveGameServiceImpl implements LiveGameService {
             }
             String normalizedGameType = gameType.toLowerCase();
 
-            String existingGameId = redisTemplate.opsForValue().get(PLAYER_GAME_PREFIX + username);
+            String existingGameId = redisTemplate.opsForValue().get(RedisKeys.playerGame(username));
             if (existingGameId != null) {
                 LiveGameState existingGame = getGameState(existingGameId);
                 if (existingGame != null && LiveGameState.STATUS_IN_PROGRESS.equals(existingGame.getStatus())) {
@@ -87,67 +121,11 @@ public class LiveGameServiceImpl implements LiveGameService {
                 }
             }
 
-            String queueKey = MATCHMAKING_QUEUE_PREFIX + normalizedGameType;
-
-            String opponent = redisTemplate.opsForList().leftPop(queueKey);
+            User user = userRepository.findByUsername(username)
+                .orElseThrow(() -> new BusinessException("User not found: " + username));
+            int rating = user.getRatingFor(normalizedGameType);
 
-            if (opponent != null && !opponent.equals(username)) {
-                // Match found immediately - create the game
-                return createRegularGameForMatch(username, opponent, normalizedGameType, queueKey);
-            } else {
-                // No opponent available - add to queue and wait
-                if (opponent != null && opponent.equals(username)) {
-                    redisTemplate.opsForList().leftPush(queueKey, username);
-                }
-
-                Long position = redisTemplate.opsForList().indexOf(queueKey, username);
-                if (position == null || position < 0) {
-                    redisTemplate.opsForList().rightPush(queueKey, username);
-                }
-
-                // Poll for match
-                long startTime = System.currentTimeMillis();
-                long timeoutMs = matchmakingTimeoutSeconds * 1000L;
-
-                while (System.currentTimeMillis() - startTime < timeoutMs) {
-                    // Check if another player matched us
-                    String matchedGameId = redisTemplate.opsForValue().get(PLAYER_GAME_PREFIX + username);
-                    if (matchedGameId != null) {
-                        LiveGameState gameState = getGameState(matchedGameId);
-                        if (gameState != null && LiveGameState.STATUS_IN_PROGRESS.equals(gameState.getStatus())) {
-                            log.info("User {} was matched to game {} by another player", username, matchedGameId);
-                            return new MatchmakingResultDTO(
-                                matchedGameId,
-                                gameState.getWhitePlayer(),
-                                gameState.getBlackPlayer(),
-                                gameState.getTournamentId(),
-                                true,
-                                "Match found! Game started."
-                            );
-                        }
-                    }
-
-                    try {
-                        Thread.sleep(POLL_INTERVAL_MS);
-                    } catch (InterruptedException e) {
-                        Thread.currentThread().interrupt();
-                        throw new BusinessException("Matchmaking interrupted");
-                    }
-                }
-
-                // Timeout expired - remove from queue
-                redisTemplate.opsForList().remove(queueKey, 0, username);
-                log.info("Matchmaking timeout for user {}. Removed from queue.", username);
-
-                return new MatchmakingResultDTO(
-                    null,
-                    null,
-                    null,
-                    null,
-                    false,
-                    "No opponent found. Removed from queue."
-                );
-            }
+            return waitInPool(username, normalizedGameType, rating);
         } catch (BusinessException e) {
             throw e;
         } catch (Exception e) {
@@ -157,13 +135,22 @@ public class LiveGameServiceImpl implements LiveGameService {
     }
 
     @Override
-    public MatchmakingResultDTO joinTournamentMatchmaking(String username, String tournamentId) throws BusinessException {
+    public CompletableFuture<MatchmakingResultDTO> joinTournamentMatchmaking(String username, String tournamentId) throws BusinessException {
         try {
             if (tournamentId == null || tournamentId.isEmpty()) {
                 throw new BusinessException("Tournament ID is required");
             }
 
-            String existingGameId = redisTemplate.opsForValue().get(PLAYER_GAME_PREFIX + username);
+            // Active game pointer and game count are read in one round-trip; the subscribers
+            // rarely change and are served by the near cache
+            String subscribersKey = RedisKeys.tournamentSubscribers(tournamentId);
+            String gameCountKey = RedisKeys.tournamentGameCount(tournamentId, username);
+            List<Object> replies = batchExecutor.pipeline("matchmaking.tournament-checks")
+                .command(conn -> conn.get(RedisKeys.playerGame(username)))
+                .command(conn -> conn.get(gameCountKey))
+                .execute();
+
+            String existingGameId = (String) replies.get(0);
             if (existingGameId != null) {
                 LiveGameState existingGame = getGameState(existingGameId);
                 if (existingGame != null && LiveGameState.STATUS_IN_PROGRESS.equals(existingGame.getStatus())) {
@@ -176,78 +163,20 @@ public class LiveGameServiceImpl implements LiveGameService {
             }
 
             // Check if player is subscribed to the tournament
-            String subscribersKey = "chess:tournament:" + tournamentId + ":subscribers";
-            Boolean isSubscribed = redisTemplate.opsForSet().isMember(subscribersKey, username);
-            if (!Boolean.TRUE.equals(isSubscribed)) {
+            if (!nearCache.isMember(subscribersKey, username)) {
                 throw new BusinessException("You are not subscribed to this tournament");
             }
 
-            int gameCount = getTournamentGameCount(tournamentId, username);
+            int gameCount = replies.get(1) != null ? Integer.parseInt((String) replies.get(1)) : 0;
             if (gameCount >= maxTournamentGames) {
                 throw new BusinessException("You have reached the maximum of " + maxTournamentGames + " games in this tournament");
             }
 
-            String queueKey = TOURNAMENT_QUEUE_PREFIX + tournamentId;
-
-            String opponent = redisTemplate.opsForList().leftPop(queueKey);
-
-            if (opponent != null && !opponent.equals(username)) {
-                // Match found immediately - create the game
-                return createTournamentGameForMatch(username, opponent, tournamentId, queueKey);
-            } else {
-                // No opponent available - add to queue and wait
-                if (opponent != null && opponent.equals(username)) {
-                    redisTemplate.opsForList().leftPush(queueKey, username);
-                }
-
-                Long position = redisTemplate.opsForList().indexOf(queueKey, username);
-                if (position == null || position < 0) {
-                    redisTemplate.opsForList().rightPush(queueKey, username);
-                }
-
-                // Poll for match
-                long startTime = System.currentTimeMillis();
-                long timeoutMs = matchmakingTimeoutSeconds * 1000L;
-
-                while (System.currentTimeMillis() - startTime < timeoutMs) {
-                    // Check if another player matched us
-                    String matchedGameId = redisTemplate.opsForValue().get(PLAYER_GAME_PREFIX + username);
-                    if (matchedGameId != null) {
-                        LiveGameState gameState = getGameState(matchedGameId);
-                        if (gameState != null && LiveGameState.STATUS_IN_PROGRESS.equals(gameState.getStatus())) {
-                            log.info("User {} was matched to game {} by another player", username, matchedGameId);
-                            return new MatchmakingResultDTO(
-                                matchedGameId,
-                                gameState.getWhitePlayer(),
-                                gameState.getBlackPlayer(),
-                                gameState.getTournamentId(),
-                                true,
-                                "Match found! Game started."
-                            );
-                        }
-                    }
-
-                    try {
-                        Thread.sleep(POLL_INTERVAL_MS);
-                    } catch (InterruptedException e) {
-                        Thread.currentThread().interrupt();
-                        throw new BusinessException("Matchmaking interrupted");
-                    }
-                }
+            String queueKey = RedisKeys.tournamentQueue(tournamentId);
+            String gameId = new ObjectId().toHexString();
+            LiveGameState gameState = LiveGameState.createNewTournamentGame(gameId, null, username, tournamentId);
 
-                // Timeout expired - remove from queue
-                redisTemplate.opsForList().remove(queueKey, 0, username);
-                log.info("Matchmaking timeout for user {}. Removed from queue.", username);
-
-                return new MatchmakingResultDTO(
-                    null,
-                    null,
-                    null,
-                    tournamentId,
-                    false,
-                    "No opponent found. Removed from queue."
-                );
-            }
+            return pairOrWait(username, queueKey, gameState);
         } catch (BusinessException e) {
             throw e;
         } catch (Exception e) {
@@ -256,83 +185,216 @@ public class LiveGameServiceImpl implements LiveGameService {
         }
     }
 
-    private MatchmakingResultDTO createRegularGameForMatch(String username, String opponent, String gameType, String queueKey) throws BusinessException {
-        String gameId = new ObjectId().toHexString();
-        LiveGameState gameState = LiveGameState.createNewRegularGame(gameId, opponent, username, gameType);
+    /**
+     * Put the player in the rating pool of its game type and wait for the rating matcher
+     * (MatchmakingScheduler) to pair it. Regular games are always created by the matcher.
+     */
+    private CompletableFuture<MatchmakingResultDTO> waitInPool(String username, String gameType, int rating) {
+        String poolKey = RedisKeys.pool(gameType);
+        String joinedKey = RedisKeys.poolJoined(gameType);
+
+        CompletableFuture<MatchmakingResultDTO> result = matchmakingNotifier.await(
+            username,
+            matchmakingTimeoutSeconds * 1000L,
+            () -> onMatchmakingTimeout(username, null, removeFromPool(gameType, username)),
+            () -> removeFromPool(gameType, username)
+        );
 
+        String joinedAt = String.valueOf(System.currentTimeMillis());
+        batchExecutor.pipeline("matchmaking.join")
+            .command(conn -> conn.zAdd(poolKey, rating, username))
+            .command(conn -> conn.hSet(joinedKey, username, joinedAt))
+            .execute();
+        return result;
+    }
+
+    private long removeFromPool(String gameType, String username) {
+        List<Object> removed = batchExecutor.pipeline("matchmaking.leave")
+            .command(conn -> conn.zRem(RedisKeys.pool(gameType), username))
+            .command(conn -> conn.hDel(RedisKeys.poolJoined(gameType), username))
+            .execute();
+        Object count = removed.isEmpty() ? null : removed.get(0);
+        return count instanceof Long value ? value : 0L;
+    }
+
+    /**
+     * Pair the player with the first opponent in the queue, or queue it and wait.
+     * The waiter is registered before running the pairing script, since the script
+     * may queue the player and an opponent can pair with it right away.
+     * @param gameState The game to create if an opponent is found, with the white player still unknown
+     */
+    private CompletableFuture<MatchmakingResultDTO> pairOrWait(String username, String queueKey, LiveGameState gameState) {
+        String tournamentId = gameState.getTournamentId();
+        CompletableFuture<MatchmakingResultDTO> result = matchmakingNotifier.await(
+            username,
+            matchmakingTimeoutSeconds * 1000L,
+            () -> {
+                Long removed = redisTemplate.opsForList().remove(queueKey, 0, username);
+                return onMatchmakingTimeout(username, tournamentId, removed != null ? removed : 0L);
+            },
+            () -> redisTemplate.opsForList().remove(queueKey, 0, username)
+        );
+
+        MatchmakingResultDTO match;
         try {
-            saveGameState(gameState);
-            redisTemplate.opsForValue().set(
-                PLAYER_GAME_PREFIX + opponent,
-                gameId,
-                gameExpirationHours,
-                TimeUnit.HOURS
-            );
-            redisTemplate.opsForValue().set(
-                PLAYER_GAME_PREFIX + username,
-                gameId,
-                gameExpirationHours,
-                TimeUnit.HOURS
-            );
+            match = pairFromQueue(username, queueKey, gameState);
         } catch (Exception e) {
-            log.error("Failed to create game {}, attempting cleanup", gameId, e);
-            redisTemplate.delete(GAME_STATE_PREFIX + gameId);
-            redisTemplate.delete(PLAYER_GAME_PREFIX + opponent);
-            redisTemplate.delete(PLAYER_GAME_PREFIX + username);
-            throw new BusinessException("Failed to create game");
+            matchmakingNotifier.release(username, new MatchmakingResultDTO(
+                null, null, null, tournamentId, false, "Matchmaking failed."));
+            throw e;
+        }
+
+        if (match != null) {
+            // The opponent is waiting, possibly on another instance
+            matchmakingNotifier.publishMatch(match.getWhitePlayer(), match);
+            matchmakingNotifier.release(username, match);
+        }
+        return result;
+    }
+
+    /**
+     * Run the pairing script: pop an opponent and bump both game counters in a single atomic
+     * round-trip on the slot of the tournament. In master-replica mode the script creates the
+     * game and the player pointers too; in cluster mode they are in other slots and created in
+     * one pipelined round-trip afterwards, and the pairing is undone if that fails.
+     * @return The created match, or null if the player has been queued
+     */
+    private MatchmakingResultDTO pairFromQueue(String username, String queueKey, LiveGameState gameState) {
+        String gameId = gameState.getGameId();
+        String tournamentId = gameState.getTournamentId();
+        boolean cluster = RedisConfig.CLUSTER_MODE.equals(redisMode);
+
+        // The game starts now, not when the waiting player joined the queue: white's clock runs from here
+        gameState.setCreatedAt(System.currentTimeMillis());
+        gameState.setLastMoveAt(gameState.getCreatedAt());
+        long ttlSeconds = TimeUnit.HOURS.toSeconds(gameExpirationHours);
+
+        List<String> keys = new ArrayList<>(List.of(
+            queueKey,
+            RedisKeys.tournamentGameCount(tournamentId, username),
+            RedisKeys.tournamentGames(tournamentId)
+        ));
+        List<String> args = new ArrayList<>(List.of(
+            username,
+            gameId,
+            String.valueOf(ttlSeconds),
+            RedisKeys.tournamentGameCountPrefix(tournamentId),
+            String.valueOf(gameState.getCreatedAt())
+        ));
+        if (!cluster) {
+            keys.addAll(List.of(
+                LiveGameRedisRepository.stateKey(gameId),
+                LiveGameRedisRepository.logKey(gameId),
+                RedisKeys.playerGame(username),
+                LiveGameRedisRepository.ACTIVE_GAMES_KEY,
+                LiveGameRedisRepository.CLOCK_DEADLINES_KEY
+            ));
+            args.add(RedisKeys.PLAYER_GAME_PREFIX);
+            args.addAll(liveGameRepository.creationArgs(gameState));
+        }
+        String opponent = redisTemplate.execute(PAIR_PLAYERS_SCRIPT, keys, args.toArray());
+        if (opponent == null) {
+            return null;
+        }
+
+        // The popped opponent waited first and plays white
+        gameState.setWhitePlayer(opponent);
+        if (cluster) {
+            createPairedGame(gameState, username, queueKey, ttlSeconds);
         }
 
-        log.info("Regular match created: {} (white: {}, black: {}, gameType: {})", gameId, opponent, username, gameType);
+        if (gameState.isTimed()) {
+            clockWatcher.watch(gameId, gameState.getClockDeadline());
+        }
+        log.info("Tournament match created: {} (white: {}, black: {}, tournament: {})", gameId, opponent, username, tournamentId);
 
         return new MatchmakingResultDTO(
             gameId,
             opponent,
             username,
-            null,
+            tournamentId,
             true,
             "Match found! Game started."
         );
     }
 
-    private MatchmakingResultDTO createTournamentGameForMatch(String username, String opponent, String tournamentId, String queueKey) throws BusinessException {
-        String gameId = new ObjectId().toHexString();
-        LiveGameState gameState = LiveGameState.createNewTournamentGame(gameId, opponent, username, tournamentId);
-
+    /**
+     * Create the game of a pairing made by the pairing script in cluster mode, with the player
+     * pointers. If that fails, the opponent is put back at the head of its queue and the game is
+     * uncounted, so the opponent keeps waiting instead of being lost.
+     */
+    private void createPairedGame(LiveGameState gameState, String username, String queueKey, long ttlSeconds) {
+        String gameId = gameState.getGameId();
+        String opponent = gameState.getWhitePlayer();
+        String tournamentId = gameState.getTournamentId();
         try {
-            saveGameState(gameState);
-            redisTemplate.opsForValue().set(
-                PLAYER_GAME_PREFIX + opponent,
-                gameId,
-                gameExpirationHours,
-                TimeUnit.HOURS
-            );
-            redisTemplate.opsForValue().set(
-                PLAYER_GAME_PREFIX + username,
-                gameId,
-                gameExpirationHours,
-                TimeUnit.HOURS
-            );
-        } catch (Exception e) {
-            log.error("Failed to create tournament game {}, attempting cleanup", gameId, e);
-            redisTemplate.delete(GAME_STATE_PREFIX + gameId);
-            redisTemplate.delete(PLAYER_GAME_PREFIX + opponent);
-            redisTemplate.delete(PLAYER_GAME_PREFIX + username);
-            throw new BusinessException("Failed to create tournament game");
+            RedisBatchExecutor.Batch batch = batchExecutor.pipeline("matchmaking.create-game");
+            liveGameRepository.create(batch, gameState);
+            batch.command(conn -> conn.setEx(RedisKeys.playerGame(opponent), ttlSeconds, gameId))
+                .command(conn -> conn.setEx(RedisKeys.playerGame(username), ttlSeconds, gameId))
+                .execute();
+        } catch (RuntimeException e) {
+            log.error("Could not create game {} of {} and {}, putting {} back in the queue: {}",
+                      gameId, opponent, username, opponent, e.getMessage());
+            try {
+                RedisBatchExecutor.Batch cleanup = batchExecutor.pipeline("matchmaking.undo-game");
+                liveGameRepository.delete(cleanup, gameId);
+                liveGameRepository.untrack(cleanup, gameId, null);
+                cleanup.execute();
+                redisTemplate.execute(
+                    UNPAIR_PLAYERS_SCRIPT,
+                    List.of(
+                        queueKey,
+                        RedisKeys.tournamentGameCount(tournamentId, username),
+                        RedisKeys.tournamentGames(tournamentId)
+                    ),
+                    opponent,
+                    gameId,
+                    RedisKeys.tournamentGameCountPrefix(tournamentId)
+                );
+            } catch (RuntimeException undoFailure) {
+                log.error("Could not undo the pairing of game {}: {}", gameId, undoFailure.getMessage());
+            }
+            throw e;
         }
+    }
 
-        log.info("Incrementing tournament game count for opponent: {} and username: {} in tournament: {}", opponent, username, tournamentId);
-        incrementTournamentGameCount(tournamentId, opponent);
-        incrementTournamentGameCount(tournamentId, username);
-
-        log.info("Tournament match created: {} (white: {}, black: {}, tournament: {})", gameId, opponent, username, tournamentId);
+    /**
+     * Build the final result of a player whose matchmaking wait expired.
+     * @param removed How many entries of the player were removed from its queue or pool
+     * @return The result, or null if the player was taken by a pairing whose game is not there
+     *         yet: the pairing will publish its own result (see MatchmakingNotifier#await)
+     */
+    private MatchmakingResultDTO onMatchmakingTimeout(String username, String tournamentId, long removed) {
+        if (removed == 0) {
+            // Popped by an opponent right before the timeout: the notification may still be in flight
+            try {
+                String matchedGameId = redisTemplate.opsForValue().get(RedisKeys.playerGame(username));
+                LiveGameState gameState = matchedGameId != null ? getGameState(matchedGameId) : null;
+                if (gameState != null && LiveGameState.STATUS_IN_PROGRESS.equals(gameState.getStatus())) {
+                    return new MatchmakingResultDTO(
+                        matchedGameId,
+                        gameState.getWhitePlayer(),
+                        gameState.getBlackPlayer(),
+                        gameState.getTournamentId(),
+                        true,
+                        "Match found! Game started."
+                    );
+                }
+            } catch (BusinessException e) {
+                log.warn("Could not read matched game for user {}: {}", username, e.getMessage());
+            }
+            return null;
+        }
+        log.info("Matchmaking timeout for user {}. Removed from queue.", username);
 
         return new MatchmakingResultDTO(
-            gameId,
-            opponent,
-            username,
+            null,
+            null,
+            null,
             tournamentId,
-            true,
-            "Match found! Game started."
+            false,
+            "No opponent found. Removed from queue."
         );
     }
 
@@ -342,9 +404,9 @@ public class LiveGameServiceImpl implements LiveGameService {
             if (gameType == null || !VALID_GAME_TYPES.contains(gameType.toLowerCase())) {
                 throw new BusinessException("Invalid game type. Must be one of: bullet, blitz, rapid");
             }
-            String queueKey = MATCHMAKING_QUEUE_PREFIX + gameType.toLowerCase();
-
-            redisTemplate.opsForList().remove(queueKey, 0, username);
+            removeFromPool(gameType.toLowerCase(), username);
+            matchmakingNotifier.release(username, new MatchmakingResultDTO(
+                null, null, null, null, false, "Left matchmaking queue."));
             log.info("User {} left matchmaking queue (gameType: {})", username, gameType);
         } catch (BusinessException e) {
             throw e;
@@ -360,9 +422,11 @@ public class LiveGameServiceImpl implements LiveGameService {
             if (tournamentId == null || tournamentId.isEmpty()) {
                 throw new BusinessException("Tournament ID is required");
             }
-            String queueKey = TOURNAMENT_QUEUE_PREFIX + tournamentId;
+            String queueKey = RedisKeys.tournamentQueue(tournamentId);
 
             redisTemplate.opsForList().remove(queueKey, 0, username);
+            matchmakingNotifier.release(username, new MatchmakingResultDTO(
+                null, null, null, tournamentId, false, "Left matchmaking queue."));
             log.info("User {} left tournament matchmaking queue (tournament: {})", username, tournamentId);
         } catch (BusinessException e) {
             throw e;
@@ -373,397 +437,837 @@ public class LiveGameServiceImpl implements LiveGameService {
     }
 
     @Override
-    public MoveResultDTO makeMove(String gameId, String username, String move) throws BusinessException {
+    public MoveResultDTO makeMove(String gameId, String username, String move, Integer ply) throws BusinessException {
         try {
-            LiveGameState gameState = getGameState(gameId);
-
-            if (gameState == null) {
-                return MoveResultDTO.error("Game not found: " + gameId);
+            if (actorSystem.isEnabled()) {
+                requireLocal(gameId);
+                // The owner keeps the game in memory and writes it behind, in mailbox order
+                return actorSystem.ask(gameId, actor -> {
+                    LiveGameState gameState = loadActor(actor);
+                    if (gameState == null) {
+                        return MoveResultDTO.error("Game not found: " + gameId);
+                    }
+                    MoveResultDTO result = applyMove(gameState, actor.getPosition(), username, move, ply, writeBehind(actor));
+                    // Ended games (including a move refused because the flag fell) are not kept
+                    // once written; the requests already queued still see them ended
+                    if (!LiveGameState.STATUS_IN_PROGRESS.equals(gameState.getStatus())) {
+                        actorSystem.evict(gameId);
+                    }
+                    return result;
+                });
             }
 
-            if (!LiveGameState.STATUS_IN_PROGRESS.equals(gameState.getStatus())) {
-                return MoveResultDTO.error("Game has already ended. Status: " + gameState.getStatus());
+            // A move racing with another write of the game is replayed on the new state, where
+            // it usually ends at once (e.g. a duplicate carrying its ply is already played)
+            for (int attempt = 1; ; attempt++) {
+                LiveGameState gameState = getGameState(gameId);
+                if (gameState == null) {
+                    return MoveResultDTO.error("Game not found: " + gameId);
+                }
+                BitboardPosition position = POSITIONS.get();
+                position.load(gameState.getFen());
+                MoveResultDTO result = applyMove(gameState, position, username, move, ply, this::commit);
+                if (!MoveResultDTO.OUTCOME_CONFLICT.equals(result.getOutcome()) || attempt >= writeMaxAttempts) {
+                    return result;
+                }
+                log.debug("Game {} changed while making move {}, attempt {}", gameId, move, attempt);
             }
 
-            boolean isWhiteTurn = gameState.isWhiteTurn();
-            boolean isWhitePlayer = username.equals(gameState.getWhitePlayer());
-            boolean isBlackPlayer = username.equals(gameState.getBlackPlayer());
+        } catch (BusinessException e) {
+            throw e;
+        } catch (Exception e) {
+            log.error("Error making move in game {}: {}", gameId, move, e);
+            throw new BusinessException("Error making move");
+        }
+    }
 
-            if (!isWhitePlayer && !isBlackPlayer) {
-                return MoveResultDTO.error("You are not a participant in this game");
+    /**
+     * Validate and play a move on a game and its position, both updated in place, then the
+     * premove of the opponent answering it, if any.
+     * @param ply Ply number of the move given by the client, or null to play it as the next one
+     * @return The result, a conflict if the game changed since it was read
+     */
+    private MoveResultDTO applyMove(LiveGameState gameState, BitboardPosition position, String username, String move,
+                                    Integer ply, GameWriter writer) {
+        String gameId = gameState.getGameId();
+
+        // A resubmitted move (e.g. a retry after a timeout) is acknowledged again, not replayed
+        if (ply != null) {
+            if (ply < 1) {
+                return MoveResultDTO.error("Invalid ply: " + ply);
             }
-
-            if ((isWhiteTurn && !isWhitePlayer) || (!isWhiteTurn && !isBlackPlayer)) {
-                String currentTurnPlayer = isWhiteTurn ? gameState.getWhitePlayer() : gameState.getBlackPlayer();
-                return MoveResultDTO.error("Not your turn. Waiting for " + currentTurnPlayer);
+            if (ply <= gameState.getPlies()) {
+                return alreadyPlayed(gameState, username, move, ply);
             }
+            if (ply > gameState.getPlies() + 1) {
+                return MoveResultDTO.error("Ply " + ply + " is ahead of the game, at ply " + gameState.getPlies());
+            }
+        }
 
-            Board board = new Board();
-            board.loadFromFen(gameState.getFen());
+        if (!LiveGameState.STATUS_IN_PROGRESS.equals(gameState.getStatus())) {
+            return MoveResultDTO.error("Game has already ended. Status: " + gameState.getStatus());
+        }
 
-            Move parsedMove;
-            try {
-                parsedMove = new Move(move, gameState.isWhiteTurn() ? Side.WHITE : Side.BLACK);
-            } catch (Exception e) {
-                return MoveResultDTO.error("Invalid move notation: " + move);
-            }
+        boolean isWhiteTurn = gameState.isWhiteTurn();
+        boolean isWhitePlayer = username.equals(gameState.getWhitePlayer());
+        boolean isBlackPlayer = username.equals(gameState.getBlackPlayer());
+
+        if (!isWhitePlayer && !isBlackPlayer) {
+            return MoveResultDTO.error("You are not a participant in this game");
+        }
+
+        if ((isWhiteTurn && !isWhitePlayer) || (!isWhiteTurn && !isBlackPlayer)) {
+            String currentTurnPlayer = isWhiteTurn ? gameState.getWhitePlayer() : gameState.getBlackPlayer();
+            return MoveResultDTO.error("Not your turn. Waiting for " + currentTurnPlayer);
+        }
 
-            if (!board.legalMoves().contains(parsedMove)) {
-                return MoveResultDTO.error("Illegal move: " + move);
+        // A move arriving after the flag fell loses on time, even if no scheduler caught it yet
+        long now = System.currentTimeMillis();
+        if (gameState.isTimed() && gameState.getClockDeadline() <= now) {
+            long deadline = gameState.getClockDeadline();
+            if (liveGameRepository.claimDeadline(gameId, deadline, now)) {
+                finishOnTime(gameState, writer);
             }
+            return MoveResultDTO.error("Time is up: the game ended on time");
+        }
 
-            board.doMove(parsedMove);
+        int parsedMove = BitboardPosition.parseMove(move);
+        if (parsedMove == BitboardPosition.NO_MOVE) {
+            return MoveResultDTO.error("Invalid move notation: " + move);
+        }
 
-            gameState.setFen(board.getFen());
-            gameState.setLastMove(move);
-            gameState.setLastMoveAt(System.currentTimeMillis());
+        // Games created before position keys, or not moved yet, start from a full computation
+        if (gameState.getPositionKey() == 0L) {
+            gameState.setPositionKey(Zobrist.positionKey(position));
+        }
+        // Book positions are shared by many games, so their legal moves are cached; past the book
+        // a position is all but unique to its game and the move is checked on its own
+        boolean inBook = !gameState.isOutOfBook() && gameState.getMoveCount() < maxMoveCheckForOpening;
+        boolean legal = inBook
+            ? positionCache.get(gameState.getPositionKey(), position).isLegal(parsedMove)
+            : position.isLegal(parsedMove);
+        if (!legal) {
+            return MoveResultDTO.error("Illegal move: " + move);
+        }
+        long keyDelta = Zobrist.moveDelta(position, parsedMove);
+        int castlingRights = position.getCastlingRights();
+        // Disambiguation depends on the position before the move, the check mark on the one after
+        String san = PackedMoves.toSan(position, parsedMove);
+
+        position.play(parsedMove);
+
+        boolean irreversible = position.getHalfMoveClock() == 0 || castlingRights != position.getCastlingRights();
+        int repetitions = gameState.recordPosition(
+            gameState.getPositionKey() ^ keyDelta ^ Zobrist.rightsKey(position), irreversible);
+        // Mate, stalemate and material only depend on the position; the 50-move rule and
+        // repetitions depend on the game
+        boolean check;
+        boolean noMoves;
+        boolean insufficientMaterial;
+        if (inBook) {
+            PositionCache.PositionInfo reached = positionCache.get(gameState.getPositionKey(), position);
+            check = reached.inCheck();
+            noMoves = reached.legalMoves().length == 0;
+            insufficientMaterial = reached.insufficientMaterial();
+        } else {
+            check = position.inCheck();
+            noMoves = !position.hasLegalMove();
+            insufficientMaterial = position.isInsufficientMaterial();
+        }
+        san += PackedMoves.checkSuffix(check, check && noMoves);
 
-            // Track move history in UCI notation (will be converted to SAN when saving)
-            gameState.addMove(move);
+        String previousOpening = gameState.getDetectedOpening();
+        boolean wasOutOfBook = gameState.isOutOfBook();
+        if (gameState.isTimed()) {
+            gameState.pressClock(isWhiteTurn, now);
+        }
+        // Canonical UCI, whatever the case the move was sent in
+        String uci = PackedMoves.toUci(parsedMove);
+        gameState.setFen(position.toFen());
+        gameState.setLastMove(uci);
+        gameState.setLastMoveAt(now);
+
+        // Track move history, packed and in SAN (archived as it is when the game ends)
+        gameState.addMove(parsedMove, san);
+
+        // Check for opening detection (only in the first N moves, while the game is in the book)
+        if (!gameState.isOutOfBook() && gameState.getMoveCount() <= maxMoveCheckForOpening) {
+            detectOpening(gameState, position);
+        }
 
-            // Check for opening detection (only in the first N moves)
-            if (gameState.getMoveCount() <= maxMoveCheckForOpening) {
-                detectOpening(gameState, board.getFen());
-            }
+        String outcome = MoveResultDTO.OUTCOME_MOVE_MADE;
+        String gameStatus = LiveGameState.STATUS_IN_PROGRESS;
+
+        if (check && noMoves) {
+            outcome = MoveResultDTO.OUTCOME_CHECKMATE;
+            gameStatus = isWhiteTurn ? LiveGameState.STATUS_WHITE_WINS : LiveGameState.STATUS_BLACK_WINS;
+        } else if (noMoves) {
+            outcome = MoveResultDTO.OUTCOME_STALEMATE;
+            gameStatus = LiveGameState.STATUS_STALEMATE;
+        } else if (insufficientMaterial || position.getHalfMoveClock() >= 100 || repetitions >= 3) {
+            outcome = MoveResultDTO.OUTCOME_DRAW;
+            gameStatus = LiveGameState.STATUS_DRAW;
+        } else if (check) {
+            outcome = MoveResultDTO.OUTCOME_CHECK;
+        }
 
-            String outcome = MoveResultDTO.OUTCOME_MOVE_MADE;
-            String gameStatus = LiveGameState.STATUS_IN_PROGRESS;
+        gameState.setStatus(gameStatus);
+        boolean gameEnded = !LiveGameState.STATUS_IN_PROGRESS.equals(gameStatus);
+        boolean openingChanged = !Objects.equals(previousOpening, gameState.getDetectedOpening());
+        String nextTurn = position.isWhiteToMove() ? "WHITE" : "BLACK";
+        // The premoves of the opponent are consumed, or cancelled, in the write of this move
+        String premove = gameEnded ? null : gameState.takePremove(!isWhiteTurn, uci);
+
+        List<GameEventDTO> events = new ArrayList<>();
+        events.add(toEvent(GameEventDTO.TYPE_MOVE, gameState, nextTurn, outcome));
+        if (openingChanged) {
+            events.add(toEvent(GameEventDTO.TYPE_OPENING, gameState, nextTurn, outcome));
+        }
+        if (MoveResultDTO.OUTCOME_CHECK.equals(outcome)) {
+            events.add(toEvent(GameEventDTO.TYPE_CHECK, gameState, nextTurn, outcome));
+        }
+        if (gameEnded) {
+            events.add(toEvent(GameEventDTO.TYPE_RESULT, gameState, nextTurn, outcome));
+        }
 
-            if (board.isMated()) {
-                outcome = MoveResultDTO.OUTCOME_CHECKMATE;
-                gameStatus = isWhiteTurn ? LiveGameState.STATUS_WHITE_WINS : LiveGameState.STATUS_BLACK_WINS;
-            } else if (board.isStaleMate()) {
-                outcome = MoveResultDTO.OUTCOME_STALEMATE;
-                gameStatus = LiveGameState.STATUS_STALEMATE;
-            } else if (board.isDraw()) {
-                outcome = MoveResultDTO.OUTCOME_DRAW;
-                gameStatus = LiveGameState.STATUS_DRAW;
-            } else if (board.isKingAttacked()) {
-                outcome = MoveResultDTO.OUTCOME_CHECK;
+        // The move is written, and logged with its events, if the game did not change meanwhile;
+        // then its events and, when the game ends, the player pointers cleanup go in one round-trip
+        RedisBatchExecutor.Batch write = batchExecutor.pipeline("live-game.write");
+        liveGameRepository.recordMove(write, gameState, parsedMove, san,
+            openingChanged || wasOutOfBook != gameState.isOutOfBook(), events);
+        RedisBatchExecutor.Batch batch = batchExecutor.pipeline(gameEnded ? "live-game.end" : "live-game.move");
+        publish(batch, events);
+        if (gameEnded) {
+            // Game ended - hand it off to the archiver and cleanup
+            completeGame(batch, gameState, true);
+        } else {
+            liveGameRepository.markActive(batch, gameId, now);
+            if (gameState.isTimed()) {
+                liveGameRepository.scheduleDeadline(batch, gameId, gameState.getClockDeadline());
             }
+        }
+        if (!writer.write(write, batch)) {
+            return MoveResultDTO.conflict("The game changed while the move was made, try again");
+        }
+
+        if (gameEnded) {
+            clockWatcher.forget(gameId);
+        } else if (gameState.isTimed()) {
+            clockWatcher.watch(gameId, gameState.getClockDeadline());
+        }
 
-            gameState.setStatus(gameStatus);
-            saveGameState(gameState);
+        MoveResultDTO result = MoveResultDTO.success(outcome, gameState.getFen(), nextTurn, gameStatus,
+                                                     gameState.getDetectedOpening());
+        if (premove != null) {
+            playPremove(gameState, position, !isWhiteTurn, premove, writer);
+        }
+        return result;
+    }
 
-            if (!LiveGameState.STATUS_IN_PROGRESS.equals(gameStatus)) {
-                // Game ended - save to MongoDB and cleanup
-                saveCompletedGameToMongoDB(gameState);
-                redisTemplate.delete(PLAYER_GAME_PREFIX + gameState.getWhitePlayer());
-                redisTemplate.delete(PLAYER_GAME_PREFIX + gameState.getBlackPlayer());
-            }
+    /**
+     * Play a premove right after the move it answers was written, in the same request.
+     * A premove that can no longer be played cancels the rest of the queue of its side.
+     */
+    private void playPremove(LiveGameState gameState, BitboardPosition position, boolean white, String premove,
+                             GameWriter writer) {
+        String player = white ? gameState.getWhitePlayer() : gameState.getBlackPlayer();
+        MoveResultDTO result = applyMove(gameState, position, player, premove, null, writer);
+        if (result.isSuccess() || MoveResultDTO.OUTCOME_CONFLICT.equals(result.getOutcome())
+                || !LiveGameState.STATUS_IN_PROGRESS.equals(gameState.getStatus())) {
+            return;
+        }
+        log.debug("Premove {} of game {} refused: {}", premove, gameState.getGameId(), result.getErrorMessage());
+        if (!gameState.getPremoves(white).isEmpty()) {
+            gameState.setPremoves(white, new ArrayList<>());
+            RedisBatchExecutor.Batch write = batchExecutor.pipeline("live-game.write");
+            liveGameRepository.updatePremoves(write, gameState);
+            writer.write(write, batchExecutor.pipeline("live-game.premoves"));
+        }
+    }
 
-            String nextTurn = board.getSideToMove() == Side.WHITE ? "WHITE" : "BLACK";
+    /**
+     * Answer a move submitted again for a ply already played: the same move by the same player
+     * is acknowledged with the current position, anything else is refused.
+     */
+    private MoveResultDTO alreadyPlayed(LiveGameState gameState, String username, String move, int ply) {
+        String mover = LiveGameState.isWhitePly(ply) ? gameState.getWhitePlayer() : gameState.getBlackPlayer();
+        int played = ply == gameState.getPlies() && gameState.getLastMove() != null
+            ? BitboardPosition.parseMove(gameState.getLastMove())
+            : liveGameRepository.findMoveAt(gameState.getGameId(), ply);
+        if (!username.equals(mover) || played == BitboardPosition.NO_MOVE || BitboardPosition.parseMove(move) != played) {
+            return MoveResultDTO.error("Ply " + ply + " was already played");
+        }
+        return MoveResultDTO.success(MoveResultDTO.OUTCOME_ALREADY_PLAYED, gameState.getFen(),
+                                     gameState.isWhiteTurn() ? "WHITE" : "BLACK", gameState.getStatus(),
+                                     gameState.getDetectedOpening());
+    }
 
-            return MoveResultDTO.success(outcome, board.getFen(), nextTurn, gameStatus, gameState.getDetectedOpening());
+    @Override
+    public GameStatusDTO getGameStatus(String gameId) throws BusinessException {
+        try {
+            // The owner answers from memory, ahead of its pending writes; other instances read Redis
+            if (actorSystem.isEnabled() && gameOwnership.isLocal(gameId)) {
+                return actorSystem.ask(gameId, actor -> toStatus(gameId, loadActor(actor)));
+            }
+            return toStatus(gameId, getGameState(gameId));
 
         } catch (BusinessException e) {
             throw e;
         } catch (Exception e) {
-            log.error("Error making move in game {}: {}", gameId, move, e);
-            throw new BusinessException("Error making move");
+            log.error("Error getting game status: {}", gameId, e);
+            throw new BusinessException("Error getting game status");
         }
     }
 
     @Override
-    public GameStatusDTO getGameStatus(String gameId) throws BusinessException {
+    public List<GameStatusDTO> getGameStatuses(List<String> gameIds) throws BusinessException {
+        if (gameIds == null || gameIds.isEmpty()) {
+            return new ArrayList<>();
+        }
+        List<String> distinctIds = new ArrayList<>(new LinkedHashSet<>(gameIds));
+        if (distinctIds.size() > maxStatusBatch) {
+            throw new BusinessException("At most " + maxStatusBatch + " games can be read at once");
+        }
         try {
-            LiveGameState gameState = getGameState(gameId);
+            return readStatuses(distinctIds);
+        } catch (Exception e) {
+            log.error("Error getting the status of {} games", distinctIds.size(), e);
+            throw new BusinessException("Error getting game statuses");
+        }
+    }
 
-            if (gameState == null) {
-                throw new BusinessException("Game not found: " + gameId);
-            }
+    @Override
+    public List<GameStatusDTO> getTournamentGameStatuses(String tournamentId) throws BusinessException {
+        if (tournamentId == null || tournamentId.isEmpty()) {
+            throw new BusinessException("Tournament ID is required");
+        }
+        try {
+            return readStatuses(liveGameRepository.findTournamentGameIds(tournamentId));
+        } catch (Exception e) {
+            log.error("Error getting the game statuses of tournament: {}", tournamentId, e);
+            throw new BusinessException("Error getting game statuses");
+        }
+    }
 
-            String currentTurn = gameState.isWhiteTurn() ? "WHITE" : "BLACK";
+    /**
+     * Read the games from a Redis replica in one round-trip. Unlike {@link #getGameStatus}, owners
+     * are not asked and replicas may lag, so a game may be a few writes behind; spilled games are left out.
+     */
+    private List<GameStatusDTO> readStatuses(List<String> gameIds) throws BusinessException {
+        List<GameStatusDTO> statuses = new ArrayList<>();
+        if (gameIds.isEmpty()) {
+            return statuses;
+        }
+        for (LiveGameState gameState : liveGameRepository.findAllFromReplica(gameIds)) {
+            statuses.add(toStatus(gameState.getGameId(), gameState));
+        }
+        return statuses;
+    }
 
-            return new GameStatusDTO(
-                gameState.getGameId(),
-                gameState.getFen(),
-                currentTurn,
-                gameState.getWhitePlayer(),
-                gameState.getBlackPlayer(),
-                gameState.getStatus(),
-                gameState.getLastMove(),
-                gameState.getTournamentId(),
-                gameState.getLastMoveAt(),
-                gameState.getDetectedOpening(),
-                gameState.getDetectedOpeningEco()
-            );
+    @Override
+    public SseEmitter subscribeToGameEvents(String gameId, Integer lastEventId) throws BusinessException {
+        // Followed before the status is read, so no event falls in between
+        SseEmitter emitter = gameEventBroadcaster.open(gameId);
+        GameStatusDTO status;
+        try {
+            status = getGameStatus(gameId);
+        } catch (BusinessException | RuntimeException e) {
+            gameEventBroadcaster.cancel(gameId, emitter);
+            throw e;
+        }
+        List<GameEventDTO> missed = List.of();
+        if (lastEventId != null) {
+            try {
+                List<GameEventDTO> logged = liveGameRepository.findEvents(gameId, lastEventId);
+                missed = logged != null ? logged : List.of();
+            } catch (Exception e) {
+                // The stream still starts from the status
+                log.warn("Could not read the event log of game {}: {}", gameId, e.getMessage());
+            }
+        }
+        gameEventBroadcaster.start(gameId, emitter, status,
+            !LiveGameState.STATUS_IN_PROGRESS.equals(status.getGameStatus()), missed);
+        return emitter;
+    }
 
+    @Override
+    public List<GameEventDTO> getGameEvents(String gameId, int afterPly) throws BusinessException {
+        try {
+            List<GameEventDTO> events = liveGameRepository.findEvents(gameId, afterPly);
+            if (events == null) {
+                throw new BusinessException("Game not found: " + gameId);
+            }
+            return events;
         } catch (BusinessException e) {
             throw e;
         } catch (Exception e) {
-            log.error("Error getting game status: {}", gameId, e);
-            throw new BusinessException("Error getting game status");
+            log.error("Error reading the events of game: {}", gameId, e);
+            throw new BusinessException("Error reading game events");
         }
     }
 
     @Override
     public void resignGame(String gameId, String username) throws BusinessException {
         try {
-            LiveGameState gameState = getGameState(gameId);
-
-            if (gameState == null) {
-                throw new BusinessException("Game not found: " + gameId);
+            if (actorSystem.isEnabled()) {
+                requireLocal(gameId);
+                // Written behind like moves, so it lands after the moves still queued
+                actorSystem.ask(gameId, actor -> {
+                    applyResign(loadActor(actor), gameId, username, writeBehind(actor));
+                    actorSystem.evict(gameId);
+                    return null;
+                });
+            } else {
+                int attempt = 1;
+                while (!applyResign(getGameState(gameId), gameId, username, this::commit)) {
+                    if (++attempt > writeMaxAttempts) {
+                        throw new BusinessException("The game changed while resigning, try again");
+                    }
+                }
             }
 
-            if (!LiveGameState.STATUS_IN_PROGRESS.equals(gameState.getStatus())) {
-                throw new BusinessException("Game has already ended");
-            }
+            log.info("Player {} resigned from game {}", username, gameId);
 
-            boolean isWhitePlayer = username.equals(gameState.getWhitePlayer());
-            boolean isBlackPlayer = username.equals(gameState.getBlackPlayer());
+        } catch (BusinessException e) {
+            throw e;
+        } catch (Exception e) {
+            log.error("Error resigning game {}: {}", gameId, username, e);
+            throw new BusinessException("Error resigning game");
+        }
+    }
 
-            if (!isWhitePlayer && !isBlackPlayer) {
-                throw new BusinessException("You are not a participant in this game");
-            }
+    /**
+     * @return false if the game changed since it was read: nothing was written
+     */
+    private boolean applyResign(LiveGameState gameState, String gameId, String username,
+                                GameWriter writer) throws BusinessException {
+        if (gameState == null) {
+            throw new BusinessException("Game not found: " + gameId);
+        }
 
-            gameState.setStatus(isWhitePlayer ? LiveGameState.STATUS_BLACK_WINS : LiveGameState.STATUS_WHITE_WINS);
-            gameState.setLastMoveAt(System.currentTimeMillis());
-            saveGameState(gameState);
+        if (!LiveGameState.STATUS_IN_PROGRESS.equals(gameState.getStatus())) {
+            throw new BusinessException("Game has already ended");
+        }
 
-            // Save to MongoDB before cleanup
-            saveCompletedGameToMongoDB(gameState);
+        boolean isWhitePlayer = username.equals(gameState.getWhitePlayer());
+        boolean isBlackPlayer = username.equals(gameState.getBlackPlayer());
 
-            redisTemplate.delete(PLAYER_GAME_PREFIX + gameState.getWhitePlayer());
-            redisTemplate.delete(PLAYER_GAME_PREFIX + gameState.getBlackPlayer());
+        if (!isWhitePlayer && !isBlackPlayer) {
+            throw new BusinessException("You are not a participant in this game");
+        }
 
-            log.info("Player {} resigned from game {}", username, gameId);
+        gameState.setStatus(isWhitePlayer ? LiveGameState.STATUS_BLACK_WINS : LiveGameState.STATUS_WHITE_WINS);
+        gameState.setLastMoveAt(System.currentTimeMillis());
+        List<GameEventDTO> events = List.of(toEvent(GameEventDTO.TYPE_RESULT, gameState,
+            gameState.isWhiteTurn() ? "WHITE" : "BLACK", MoveResultDTO.OUTCOME_RESIGNATION));
+        RedisBatchExecutor.Batch write = batchExecutor.pipeline("live-game.write");
+        liveGameRepository.updateStatus(write, gameState, events);
+        RedisBatchExecutor.Batch batch = batchExecutor.pipeline("live-game.resign");
+        publish(batch, events);
+        completeGame(batch, gameState, true);
+        if (!writer.write(write, batch)) {
+            return false;
+        }
+        clockWatcher.forget(gameId);
+        return true;
+    }
 
+    @Override
+    public void setPremoves(String gameId, String username, List<PremoveDTO> premoves) throws BusinessException {
+        try {
+            List<String> entries = toPremoveEntries(premoves);
+            if (actorSystem.isEnabled()) {
+                requireLocal(gameId);
+                actorSystem.ask(gameId, actor ->
+                    applyPremoves(loadActor(actor), gameId, username, entries, writeBehind(actor)));
+                return;
+            }
+            int attempt = 1;
+            while (!applyPremoves(getGameState(gameId), gameId, username, entries, this::commit)) {
+                if (++attempt > writeMaxAttempts) {
+                    throw new BusinessException("The game changed while queueing premoves, try again");
+                }
+            }
         } catch (BusinessException e) {
             throw e;
         } catch (Exception e) {
-            log.error("Error resigning game {}: {}", gameId, username, e);
-            throw new BusinessException("Error resigning game");
+            log.error("Error queueing premoves in game {}: {}", gameId, username, e);
+            throw new BusinessException("Error queueing premoves");
+        }
+    }
+
+    /**
+     * Replace the premoves of a player.
+     * @return false if the game changed since it was read: nothing was written
+     */
+    private boolean applyPremoves(LiveGameState gameState, String gameId, String username,
+                                  List<String> entries, GameWriter writer) throws BusinessException {
+        if (gameState == null) {
+            throw new BusinessException("Game not found: " + gameId);
+        }
+
+        if (!LiveGameState.STATUS_IN_PROGRESS.equals(gameState.getStatus())) {
+            throw new BusinessException("Game has already ended");
         }
+
+        boolean isWhitePlayer = username.equals(gameState.getWhitePlayer());
+        if (!isWhitePlayer && !username.equals(gameState.getBlackPlayer())) {
+            throw new BusinessException("You are not a participant in this game");
+        }
+
+        gameState.setPremoves(isWhitePlayer, entries);
+        RedisBatchExecutor.Batch write = batchExecutor.pipeline("live-game.write");
+        liveGameRepository.updatePremoves(write, gameState);
+        return writer.write(write, batchExecutor.pipeline("live-game.premoves"));
     }
 
     /**
-     * Detect and update the opening based on the current board position.
+     * Check the premoves sent by a client: only their notation, as their legality depends on
+     * the moves still to come.
+     * @return The premoves in their stored form
      */
-    private void detectOpening(LiveGameState gameState, String fen) {
+    private List<String> toPremoveEntries(List<PremoveDTO> premoves) throws BusinessException {
+        List<String> entries = new ArrayList<>();
+        if (premoves == null) {
+            return entries;
+        }
+        if (premoves.size() > maxPremoves) {
+            throw new BusinessException("At most " + maxPremoves + " premoves can be queued");
+        }
+        for (PremoveDTO premove : premoves) {
+            String move = premove.getMove() != null ? premove.getMove().toLowerCase() : "";
+            String after = premove.getAfter() != null && !premove.getAfter().isBlank()
+                ? premove.getAfter().toLowerCase() : LiveGameState.ANY_MOVE;
+            if (!UCI_MOVE.matcher(move).matches()
+                    || (!LiveGameState.ANY_MOVE.equals(after) && !UCI_MOVE.matcher(after).matches())) {
+                throw new BusinessException("Invalid premove notation: " + premove.getMove());
+            }
+            entries.add(after + ":" + move);
+        }
+        return entries;
+    }
+
+    @Override
+    public boolean flagGame(String gameId, long deadline) throws BusinessException {
         try {
-            ChessOpening opening = openingService.findOpeningByFen(fen);
-            if (opening != null) {
-                gameState.setDetectedOpening(opening.getName());
-                gameState.setDetectedOpeningEco(opening.getEco());
-                log.debug("Opening detected for game {}: {} ({})",
-                         gameState.getGameId(), opening.getName(), opening.getEco());
+            if (!liveGameRepository.claimDeadline(gameId, deadline, System.currentTimeMillis())) {
+                return false;
             }
+            LiveGameState gameState = getGameState(gameId);
+            // The claim removed the deadline: a move made in time would have replaced it first
+            if (gameState == null || !LiveGameState.STATUS_IN_PROGRESS.equals(gameState.getStatus())
+                    || !gameState.isTimed() || gameState.getClockDeadline() != deadline) {
+                return false;
+            }
+            // Lost to a concurrent write: a move made in time, or the game already ended
+            boolean finished = finishOnTime(gameState, this::commit);
+            actorSystem.evict(gameId);
+            return finished;
+        } catch (BusinessException e) {
+            throw e;
         } catch (Exception e) {
-            log.warn("Error detecting opening for game {}: {}", gameState.getGameId(), e.getMessage());
+            log.error("Error finishing game {} on time", gameId, e);
+            throw new BusinessException("Error finishing game on time");
         }
     }
 
     /**
-     * Save a completed game to MongoDB with rollback on failure.
+     * End a game whose side to move ran out of time; its deadline must already be claimed.
+     * The opponent wins, unless it cannot mate with what it has left (a lone king, or a king
+     * with one bishop or knight): then it is a draw. A game flagged before both sides moved is
+     * aborted, as by the reaper.
+     * @return false if the game changed since it was read: nothing was written
      */
-    private void saveCompletedGameToMongoDB(LiveGameState gameState) {
-        User whiteUser = null;
-        User blackUser = null;
-        GameDTO gameDTO = null;
-        boolean gameSaved = false;
-        boolean whiteBuffered = false;
-        boolean blackBuffered = false;
-        boolean tournamentBuffered = false;
-        
+    private boolean finishOnTime(LiveGameState gameState, GameWriter writer) {
+        String gameId = gameState.getGameId();
+        boolean whiteFlagged = gameState.isWhiteTurn();
+        boolean abort = gameState.getPlies() < 2;
+        boolean draw = !abort && BitboardPosition.fromFen(gameState.getFen()).isInsufficientMaterial(!whiteFlagged);
+
+        if (whiteFlagged) {
+            gameState.setWhiteClockMs(0);
+        } else {
+            gameState.setBlackClockMs(0);
+        }
+        gameState.setStatus(abort ? LiveGameState.STATUS_ABORTED
+            : draw ? LiveGameState.STATUS_DRAW
+            : whiteFlagged ? LiveGameState.STATUS_BLACK_WINS : LiveGameState.STATUS_WHITE_WINS);
+        gameState.setLastMoveAt(System.currentTimeMillis());
+
+        List<GameEventDTO> events = List.of(toEvent(GameEventDTO.TYPE_RESULT, gameState,
+            whiteFlagged ? "WHITE" : "BLACK", abort ? MoveResultDTO.OUTCOME_ABORTED : MoveResultDTO.OUTCOME_TIMEOUT));
+        RedisBatchExecutor.Batch write = batchExecutor.pipeline("live-game.write");
+        liveGameRepository.updateStatus(write, gameState, events);
+        RedisBatchExecutor.Batch batch = batchExecutor.pipeline("live-game.flag");
+        publish(batch, events);
+        completeGame(batch, gameState, !abort);
+        if (!writer.write(write, batch)) {
+            return false;
+        }
+        clockWatcher.forget(gameId);
+
+        log.info("Game {} finished on time: {} flagged ({})", gameId, whiteFlagged ? "white" : "black", gameState.getStatus());
+        return true;
+    }
+
+    @Override
+    public Map<String, Integer> reapAbandonedGames(long idleSince, int limit) throws BusinessException {
         try {
-            // Get users by username first to retrieve their ratings
-            whiteUser = userRepository.findByUsername(gameState.getWhitePlayer()).orElse(null);
-            blackUser = userRepository.findByUsername(gameState.getBlackPlayer()).orElse(null);
-
-            gameDTO = new GameDTO();
-            gameDTO.setId(gameState.getGameId());
-            gameDTO.setWhitePlayer(gameState.getWhitePlayer());
-            gameDTO.setBlackPlayer(gameState.getBlackPlayer());
-            gameDTO.setOpening(gameState.getDetectedOpening());
-            String endTime = Instant.ofEpochMilli(gameState.getLastMoveAt())
-                    .atZone(ZoneId.systemDefault())
-                    .format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
-            gameDTO.setEndTime(endTime);
-            gameDTO.setTimeClass(gameState.isTournamentGame() ? "tournament" : gameState.getGameType());
-            gameDTO.setRated(!gameState.isTournamentGame());
-
-            if (whiteUser != null && whiteUser.getStats() != null) {
-                gameDTO.setWhiteRating(gameState.isTournamentGame() 
-                    ? whiteUser.getStats().getRapid() 
-                    : getRatingForGameType(whiteUser, gameState.getGameType()));
-            }
-            if (blackUser != null && blackUser.getStats() != null) {
-                gameDTO.setBlackRating(gameState.isTournamentGame() 
-                    ? blackUser.getStats().getRapid() 
-                    : getRatingForGameType(blackUser, gameState.getGameType()));
-            }
-
-            String resultString;
-            switch (gameState.getStatus()) {
-                case LiveGameState.STATUS_WHITE_WINS:
-                    gameDTO.setResultWhite("win");
-                    gameDTO.setResultBlack("loss");
-                    resultString = "1-0";
-                    break;
-                case LiveGameState.STATUS_BLACK_WINS:
-                    gameDTO.setResultWhite("loss");
-                    gameDTO.setResultBlack("win");
-                    resultString = "0-1";
-                    break;
-                default:
-                    gameDTO.setResultWhite("draw");
-                    gameDTO.setResultBlack("draw");
-                    resultString = "1/2-1/2";
-                    break;
-            }
-
-            gameDTO.setMoves(formatMovesForStorage(gameState, resultString));
-
-            // Step 1: Save game to MongoDB
-            gameService.createGame(gameDTO);
-            gameSaved = true;
-            log.info("Saved completed game {} to MongoDB with opening: {}",
-                     gameState.getGameId(), gameState.getDetectedOpening());
-
-            GameSummaryDTO summary = GameSummaryDTO.summarize(gameDTO);
-
-            // Step 2 & 3: Buffer game to players (only for regular games)
-            if (!gameState.isTournamentGame()) {
-                String timeClass = gameState.getGameType();
-                if (whiteUser != null) {
-                    userService.bufferGame(whiteUser.getId(), summary, timeClass);
-                    whiteBuffered = true;
-                }
-                if (blackUser != null) {
-                    userService.bufferGame(blackUser.getId(), summary, timeClass);
-                    blackBuffered = true;
-                }
+            Map<String, Integer> reaped = new LinkedHashMap<>();
+            Map<String, Long> idle = liveGameRepository.findIdle(idleSince, limit);
+            if (idle.isEmpty()) {
+                return reaped;
             }
-
-            // Step 4: Buffer to tournament (only for tournament games)
-            if (gameState.isTournamentGame()) {
-                log.info("Buffering tournament game {} to tournament {}", gameState.getGameId(), gameState.getTournamentId());
-                String result = tournamentService.bufferTournamentGame(
-                        gameState.getTournamentId(),
-                        gameDTO,
-                        whiteUser != null ? whiteUser.getId() : null,
-                        blackUser != null ? blackUser.getId() : null
-                );
-                tournamentBuffered = true;
-                log.info("Tournament buffering result for game {}: {}", gameState.getGameId(), result);
+            // Games that moved since the read are not claimed, and each game is claimed by one instance
+            Set<String> claimed = liveGameRepository.claimIdle(idle, idleSince);
+            if (claimed.size() < idle.size()) {
+                reaped.put(REAP_SKIPPED, idle.size() - claimed.size());
             }
-
-        } catch (Exception e) {
-            log.error("Failed to save game {}, rolling back", gameState.getGameId(), e);
-            
-            // Rollback in reverse order
-            String timeClass = gameState.getGameType();
-            
-            if (tournamentBuffered && gameDTO != null) {
-                try {
-                    tournamentService.unbufferTournamentGame(
-                            gameState.getTournamentId(),
-                            gameState.getGameId(),
-                            whiteUser != null ? whiteUser.getId() : null,
-                            blackUser != null ? blackUser.getId() : null,
-                            gameDTO.getResultWhite()
-                    );
-                } catch (Exception ex) {
-                    log.error("Rollback failed: unbufferTournamentGame", ex);
-                }
+            if (claimed.isEmpty()) {
+                return reaped;
             }
-            if (blackBuffered && blackUser != null) {
-                try {
-                    userService.unbufferGame(blackUser.getId(), gameState.getGameId(), timeClass);
-                } catch (Exception ex) {
-                    log.error("Rollback failed: unbufferGame for black", ex);
+
+            List<LiveGameState> games = liveGameRepository.findAll(new ArrayList<>(claimed));
+            Set<String> missing = new HashSet<>(claimed);
+            long now = System.currentTimeMillis();
+            RedisBatchExecutor.Batch batch = batchExecutor.pipeline("live-game.reap");
+            List<LiveGameState> ending = new ArrayList<>();
+            List<GameEventDTO> results = new ArrayList<>();
+            RedisBatchExecutor.Batch writes = batchExecutor.pipeline("live-game.write");
+            for (LiveGameState gameState : games) {
+                missing.remove(gameState.getGameId());
+                if (!LiveGameState.STATUS_IN_PROGRESS.equals(gameState.getStatus())) {
+                    liveGameRepository.untrack(batch, gameState.getGameId(), gameState.getTournamentId());
+                    reaped.merge(REAP_SKIPPED, 1, Integer::sum);
+                    continue;
                 }
+                // A game abandoned before both sides moved is aborted; otherwise the side to move loses
+                boolean abort = gameState.getPlies() < 2;
+                boolean whiteAbandoned = gameState.isWhiteTurn();
+                gameState.setStatus(abort ? LiveGameState.STATUS_ABORTED
+                    : whiteAbandoned ? LiveGameState.STATUS_BLACK_WINS : LiveGameState.STATUS_WHITE_WINS);
+                gameState.setLastMoveAt(now);
+                GameEventDTO result = toEvent(GameEventDTO.TYPE_RESULT, gameState,
+                    gameState.isWhiteTurn() ? "WHITE" : "BLACK",
+                    abort ? MoveResultDTO.OUTCOME_ABORTED : MoveResultDTO.OUTCOME_ABANDONED);
+                liveGameRepository.updateStatus(writes, gameState, List.of(result));
+                ending.add(gameState);
+                results.add(result);
             }
-            if (whiteBuffered && whiteUser != null) {
-                try {
-                    userService.unbufferGame(whiteUser.getId(), gameState.getGameId(), timeClass);
-                } catch (Exception ex) {
-                    log.error("Rollback failed: unbufferGame for white", ex);
+            // Games moved between the claim and the write keep going
+            List<Object> written = writes.execute();
+            for (int i = 0; i < ending.size(); i++) {
+                LiveGameState gameState = ending.get(i);
+                if (i >= written.size() || !LiveGameRedisRepository.isApplied(written.get(i))) {
+                    reaped.merge(REAP_SKIPPED, 1, Integer::sum);
+                    continue;
                 }
+                GameEventDTO result = results.get(i);
+                gameEventBroadcaster.publish(batch, result);
+                completeGame(batch, gameState, !MoveResultDTO.OUTCOME_ABORTED.equals(result.getOutcome()));
+                reaped.merge(result.getOutcome(), 1, Integer::sum);
             }
-            if (gameSaved) {
-                try {
-                    gameService.deleteGame(gameState.getGameId());
-                } catch (Exception ex) {
-                    log.error("Rollback failed: deleteGame", ex);
-                }
+            // Expired before being reaped: only the index entries are left (the tournament index expires on its own)
+            missing.forEach(gameId -> liveGameRepository.untrack(batch, gameId, null));
+            if (!missing.isEmpty()) {
+                reaped.put(REAP_EXPIRED, missing.size());
             }
+            batch.execute();
+            claimed.forEach(clockWatcher::forget);
+            claimed.forEach(actorSystem::evict);
+            return reaped;
+        } catch (Exception e) {
+            log.error("Error reaping abandoned games", e);
+            throw new BusinessException("Error reaping abandoned games");
         }
     }
 
-    private String formatMovesForStorage(LiveGameState gameState, String result) {
-        if (gameState.getMoveHistory() == null || gameState.getMoveHistory().isEmpty()) {
-            return result;
+    /**
+     * Queue everything that follows the end of a game: the hand-off to the archiver (or the
+     * deletion of a game not worth archiving), the removal from the deadline and activity indexes
+     * and the player pointers cleanup. The final status must already be set, and the result
+     * event published by the caller, as it is logged with the final write.
+     */
+    private void completeGame(RedisBatchExecutor.Batch batch, LiveGameState gameState, boolean archive) {
+        String gameId = gameState.getGameId();
+        if (archive) {
+            completedGameArchiver.enqueue(batch, gameId);
+        } else {
+            liveGameRepository.delete(batch, gameId);
         }
+        liveGameRepository.untrack(batch, gameId, gameState.getTournamentId());
+        // One key per slot: the players are in different slots
+        batch.delete(RedisKeys.playerGame(gameState.getWhitePlayer()))
+            .delete(RedisKeys.playerGame(gameState.getBlackPlayer()));
+    }
 
-        try {
-            // Create a MoveList starting from the initial position
-            MoveList moveList = new MoveList();
+    private void publish(RedisBatchExecutor.Batch batch, List<GameEventDTO> events) {
+        events.forEach(event -> gameEventBroadcaster.publish(batch, event));
+    }
 
-            // Add all UCI moves to the MoveList
-            for (String uciMove : gameState.getMoveHistory()) {
-                moveList.add(new Move(uciMove, Side.WHITE)); // Side doesn't matter for UCI parsing
-            }
+    private static GameEventDTO toEvent(String type, LiveGameState gameState, String nextTurn, String outcome) {
+        return new GameEventDTO(
+            type,
+            gameState.getGameId(),
+            gameState.getPlies(),
+            gameState.getLastMove(),
+            gameState.getFen(),
+            nextTurn,
+            gameState.getWhiteClockMs(),
+            gameState.getBlackClockMs(),
+            gameState.getStatus(),
+            outcome,
+            gameState.getDetectedOpening(),
+            gameState.getDetectedOpeningEco(),
+            gameState.getLastMoveAt()
+        );
+    }
 
-            // Convert to SAN notation (space-separated, no move numbers)
-            String sanMoves = moveList.toSan();
-            return sanMoves + " " + result;
-        } catch (Exception e) {
-            log.warn("Failed to convert moves to SAN for game {}, using raw moves: {}",
-                     gameState.getGameId(), e.getMessage());
-            return String.join(" ", gameState.getMoveHistory()) + " " + result;
+    /**
+     * Detect and update the opening based on the current position.
+     * The lookup is in memory; a position outside the book ends detection for the game.
+     */
+    private void detectOpening(LiveGameState gameState, BitboardPosition position) {
+        long positionKey = Zobrist.placementKey(gameState.getPositionKey(), position);
+        if (!openingService.isBookPosition(positionKey)) {
+            gameState.setOutOfBook(true);
+            log.debug("Game {} left the opening book at ply {}", gameState.getGameId(), gameState.getMoveCount());
+            return;
+        }
+        ChessOpening opening = openingService.findOpening(positionKey);
+        if (opening != null) {
+            gameState.setDetectedOpening(opening.getName());
+            gameState.setDetectedOpeningEco(opening.getEco());
+            log.debug("Opening detected for game {}: {} ({})",
+                     gameState.getGameId(), opening.getName(), opening.getEco());
         }
     }
 
-    private LiveGameState getGameState(String gameId) throws BusinessException {
-        try {
-            String json = redisTemplate.opsForValue().get(GAME_STATE_PREFIX + gameId);
-            if (json == null) {
-                return null;
-            }
-            return objectMapper.readValue(json, LiveGameState.class);
-        } catch (JsonProcessingException e) {
-            throw new BusinessException("Error reading game state");
+    private GameStatusDTO toStatus(String gameId, LiveGameState gameState) throws BusinessException {
+        if (gameState == null) {
+            throw new BusinessException("Game not found: " + gameId);
+        }
+
+        String currentTurn = gameState.isWhiteTurn() ? "WHITE" : "BLACK";
+
+        return new GameStatusDTO(
+            gameState.getGameId(),
+            gameState.getFen(),
+            currentTurn,
+            gameState.getWhitePlayer(),
+            gameState.getBlackPlayer(),
+            gameState.getStatus(),
+            gameState.getLastMove(),
+            gameState.getTournamentId(),
+            gameState.getLastMoveAt(),
+            gameState.getDetectedOpening(),
+            gameState.getDetectedOpeningEco(),
+            gameState.getWhiteClockMs(),
+            gameState.getBlackClockMs()
+        );
+    }
+
+    /**
+     * Send the guarded write of a game change, then its side effects if the write applied.
+     * @return false if the game was written by someone else since it was read
+     */
+    private boolean commit(RedisBatchExecutor.Batch write, RedisBatchExecutor.Batch effects) {
+        List<Object> replies = write.execute();
+        if (replies.isEmpty() || !LiveGameRedisRepository.isApplied(replies.get(0))) {
+            return false;
         }
+        effects.execute();
+        return true;
+    }
+
+    /**
+     * Writes of a game actor: queued in its mailbox behind the writes of the previous moves,
+     * and always accepted. A write that conflicts (the game was changed outside the actor, e.g.
+     * by a flag fall or a previous owner) invalidates the in-memory game, and the writes queued
+     * after it are dropped: their versions could match the newer game by chance. The moves
+     * dropped were already reported to their players, so the clients are told to resync.
+     */
+    private GameWriter writeBehind(GameActorSystem.GameActor owner) {
+        String gameId = owner.getGameId();
+        long generation = owner.getGeneration();
+        return (write, effects) -> {
+            actorSystem.tell(gameId, actor -> {
+                if (actor.getGeneration() != generation) {
+                    log.debug("Dropping a write of game {} made from an invalidated state", gameId);
+                } else if (!commit(write, effects)) {
+                    log.warn("Game {} changed outside its actor, dropping its in-memory state", gameId);
+                    actor.invalidate();
+                    publishResync(gameId);
+                }
+            });
+            return true;
+        };
     }
 
-    private void saveGameState(LiveGameState gameState) throws BusinessException {
+    /**
+     * Publish a "resync" event holding the game as stored, for clients shown moves that were lost.
+     */
+    private void publishResync(String gameId) {
         try {
-            String json = objectMapper.writeValueAsString(gameState);
-            redisTemplate.opsForValue().set(
-                GAME_STATE_PREFIX + gameState.getGameId(),
-                json,
-                gameExpirationHours,
-                TimeUnit.HOURS
-            );
-        } catch (JsonProcessingException e) {
-            throw new BusinessException("Error saving game state");
+            LiveGameState gameState = getGameState(gameId);
+            if (gameState == null) {
+                return;
+            }
+            RedisBatchExecutor.Batch batch = batchExecutor.pipeline("live-game.resync");
+            gameEventBroadcaster.publish(batch, toEvent(GameEventDTO.TYPE_RESYNC, gameState,
+                gameState.isWhiteTurn() ? "WHITE" : "BLACK", null));
+            batch.execute();
+        } catch (Exception e) {
+            log.error("Could not publish a resync of game {}: {}", gameId, e.getMessage());
         }
     }
 
-    private int getTournamentGameCount(String tournamentId, String username) {
-        String key = TOURNAMENT_GAME_COUNT_PREFIX + tournamentId + ":player:" + username + ":games";
-        String value = redisTemplate.opsForValue().get(key);
-        return value != null ? Integer.parseInt(value) : 0;
+    /**
+     * Moves and resignations are only taken by the instance owning the game.
+     */
+    private void requireLocal(String gameId) throws GameOwnedElsewhereException {
+        if (!gameOwnership.isLocal(gameId)) {
+            throw new GameOwnedElsewhereException(gameId, gameOwnership.ownerOf(gameId));
+        }
     }
 
-    private void incrementTournamentGameCount(String tournamentId, String username) {
-        String key = TOURNAMENT_GAME_COUNT_PREFIX + tournamentId + ":player:" + username + ":games";
-        Long newValue = redisTemplate.opsForValue().increment(key);
-        // Keys are cleaned up by TournamentScheduler when tournament finishes
-        log.info("Incremented tournament game count for {} - key: {}, new value: {}", username, key, newValue);
+    /**
+     * The game held by an actor, loaded with its position on the first task after a (re)start.
+     * @return The game, or null if it does not exist
+     */
+    private LiveGameState loadActor(GameActorSystem.GameActor actor) throws BusinessException {
+        if (actor.getState() == null) {
+            LiveGameState gameState = getGameState(actor.getGameId());
+            if (gameState == null) {
+                return null;
+            }
+            actor.load(gameState, BitboardPosition.fromFen(gameState.getFen()));
+        }
+        return actor.getState();
     }
 
-    private int getRatingForGameType(User user, String gameType) {
-        if (user.getStats() == null) {
-            return 1000;
+    /**
+     * Load a game from Redis, or bring it back from MongoDB if it was spilled while idle,
+     * or from its event log if its state was lost from Redis.
+     */
+    private LiveGameState getGameState(String gameId) throws BusinessException {
+        try {
+            LiveGameState gameState = liveGameRepository.find(gameId);
+            if (gameState == null) {
+                gameState = liveGameTiering.rehydrate(gameId);
+            }
+            return gameState != null ? gameState : liveGameRepository.recover(gameId);
+        } catch (IllegalStateException e) {
+            throw new BusinessException("Error reading game state");
         }
-        return switch (gameType) {
-            case "bullet" -> user.getStats().getBullet();
-            case "blitz" -> user.getStats().getBlitz();
-            case "rapid" -> user.getStats().getRapid();
-            default -> user.getStats().getRapid();
-        };
     }
+
+    /**
+     * Sends the guarded write of a game change and, only if it applied, its side effects.
+     */
+    @FunctionalInterface
+    private interface GameWriter {
+        boolean write(RedisBatchExecutor.Batch write, RedisBatchExecutor.Batch effects);
+    }
+
 }
@@ -0,0 +1,173 @@
+package it.unipi.chessApp.service.impl;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import it.unipi.chessApp.model.ColdLiveGame;
+import it.unipi.chessApp.model.LiveGameState;
+import it.unipi.chessApp.repository.ColdLiveGameRepository;
+import it.unipi.chessApp.repository.redis.LiveGameRedisRepository;
+import it.unipi.chessApp.utils.PackedMoves;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Two-tier storage of live games: games being played stay in Redis (hot), games nobody
+ * has moved in for a while are spilled to the "live_games" MongoDB collection (cold) and
+ * evicted from Redis, so Redis memory only holds the games actually being played.
+ * A cold game is restored into Redis the first time it is read again.
+ * <p>
+ * Spilling takes idle games out of the activity index the reaper also reads, so with
+ * tiering enabled, games idle longer than the spill threshold are kept instead of reaped.
+ * Clock deadlines stay in Redis: a timed game flagging while cold is restored and finished.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class LiveGameTiering {
+
+    private final LiveGameRedisRepository liveGameRepository;
+    private final ColdLiveGameRepository coldGameRepository;
+    private final StringRedisTemplate redisTemplate;
+    private final MeterRegistry meterRegistry;
+
+    private final AtomicLong hotGames = new AtomicLong();
+    private final AtomicLong coldGames = new AtomicLong();
+
+    @Value("${live-game.tiering.enabled:false}")
+    private boolean enabled;
+
+    @Value("${live-game.tiering.idle-minutes:10}")
+    private long idleMinutes;
+
+    @Value("${live-game.tiering.batch-size:200}")
+    private int batchSize;
+
+    @Value("${live-game.tiering.max-batches:20}")
+    private int maxBatches;
+
+    @PostConstruct
+    void registerGauges() {
+        Gauge.builder("chess.live-games", hotGames, AtomicLong::get)
+            .description("Live games in progress, by storage tier")
+            .tag("tier", "hot")
+            .register(meterRegistry);
+        Gauge.builder("chess.live-games", coldGames, AtomicLong::get)
+            .description("Live games in progress, by storage tier")
+            .tag("tier", "cold")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Restore a spilled game into Redis. Cold games are looked up even when spilling is
+     * disabled, so the games spilled before are never lost.
+     * @return The restored game, or null if the game was not spilled
+     */
+    public LiveGameState rehydrate(String gameId) {
+        Optional<ColdLiveGame> cold = coldGameRepository.findById(gameId);
+        if (cold.isEmpty()) {
+            return null;
+        }
+        // A concurrent request may have restored it first: its copy wins
+        byte[] moves = cold.get().getPackedMoves() != null
+            ? cold.get().getPackedMoves() : PackedMoves.fromUci(cold.get().getMoves());
+        if (liveGameRepository.restore(gameId, cold.get().getState(), moves, cold.get().getSanMoves())) {
+            tierMoves("rehydrated").increment();
+            log.debug("Rehydrated live game {} spilled {} ms ago",
+                      gameId, System.currentTimeMillis() - cold.get().getSpilledAt());
+        }
+        coldGameRepository.deleteById(gameId);
+        return liveGameRepository.find(gameId);
+    }
+
+    /**
+     * Whether a game is spilled, without restoring it. Only games in progress are spilled.
+     */
+    public boolean isSpilled(String gameId) {
+        return coldGameRepository.existsById(gameId);
+    }
+
+    @Scheduled(fixedDelayString = "${live-game.tiering.interval-ms:60000}")
+    public void spillIdleGames() {
+        try {
+            if (enabled) {
+                long idleSince = System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(idleMinutes);
+                int spilled = 0;
+                for (int i = 0; i < maxBatches; i++) {
+                    Map<String, Long> idle = liveGameRepository.findIdle(idleSince, batchSize);
+                    spilled += spill(idle, idleSince);
+                    if (idle.size() < batchSize) {
+                        break;
+                    }
+                }
+                if (spilled > 0) {
+                    log.info("Spilled {} live games idle for more than {} minutes to MongoDB", spilled, idleMinutes);
+                }
+            }
+            Long hot = redisTemplate.opsForZSet().zCard(LiveGameRedisRepository.ACTIVE_GAMES_KEY);
+            hotGames.set(hot != null ? hot : 0L);
+            coldGames.set(coldGameRepository.count());
+        } catch (Exception e) {
+            log.error("Error spilling idle live games: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Copy a batch of idle games to MongoDB, then evict the ones that did not change meanwhile.
+     * @return How many games were spilled
+     */
+    private int spill(Map<String, Long> idle, long idleSince) {
+        Set<String> claimed = liveGameRepository.claimIdle(idle, idleSince);
+        if (claimed.isEmpty()) {
+            return 0;
+        }
+        long now = System.currentTimeMillis();
+        List<LiveGameState> games = new ArrayList<>();
+        List<ColdLiveGame> copies = new ArrayList<>();
+        for (LiveGameState state : liveGameRepository.findAllWithMoves(new ArrayList<>(claimed))) {
+            // Ended, or moved right after the claim
+            if (!LiveGameState.STATUS_IN_PROGRESS.equals(state.getStatus()) || state.getLastMoveAt() > idleSince) {
+                continue;
+            }
+            games.add(state);
+            copies.add(new ColdLiveGame(state.getGameId(), LiveGameRedisRepository.toHash(state),
+                                        null, state.getMoveHistory(), state.getSanMoves(), now));
+        }
+        if (games.isEmpty()) {
+            return 0;
+        }
+
+        coldGameRepository.saveAll(copies);
+        Set<String> evicted = liveGameRepository.evictIfUnchanged(games);
+        // Moved or ended after the copy: Redis is authoritative, drop the stale copies
+        List<String> stale = games.stream()
+            .map(LiveGameState::getGameId)
+            .filter(gameId -> !evicted.contains(gameId))
+            .toList();
+        if (!stale.isEmpty()) {
+            coldGameRepository.deleteAllById(stale);
+        }
+        tierMoves("spilled").increment(evicted.size());
+        return evicted.size();
+    }
+
+    private Counter tierMoves(String direction) {
+        return Counter.builder("chess.live-games.tier.moves")
+            .description("Live games moved between Redis and MongoDB")
+            .tag("direction", direction)
+            .register(meterRegistry);
+    }
+}
@@ -0,0 +1,190 @@
+package it.unipi.chessApp.service.impl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import it.unipi.chessApp.dto.MatchmakingResultDTO;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Keeps track of the players waiting in matchmaking on this instance and completes
+ * their pending responses when a pairing is published on the Redis match channel.
+ * No thread is held and no key is polled while a player waits.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class MatchmakingNotifier implements MessageListener {
+
+    public static final String MATCH_CHANNEL = "chess:matchmaking:matched";
+
+    private final StringRedisTemplate redisTemplate;
+    private final ObjectMapper objectMapper;
+    private final RedisMessageListenerContainer listenerContainer;
+
+    private final Map<String, Waiter> waiters = new ConcurrentHashMap<>();
+
+    @Value("${live-game.matchmaking.pairing-grace-ms:5000}")
+    private long pairingGraceMs;
+
+    private final ScheduledExecutorService timeoutExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "matchmaking-timeout");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @PostConstruct
+    void subscribe() {
+        listenerContainer.addMessageListener(this, new ChannelTopic(MATCH_CHANNEL));
+    }
+
+    @PreDestroy
+    void shutdown() {
+        timeoutExecutor.shutdownNow();
+        waiters.values().forEach(waiter -> waiter.future().cancel(false));
+        waiters.clear();
+    }
+
+    /**
+     * Register a waiting player. Must be called before the player becomes visible
+     * to opponents, otherwise a pairing could be published before anyone listens.
+     * A request already waiting for the same player is superseded: it is taken out of its
+     * pool or queue, before the new one joins, and completed.
+     * @param username The waiting player
+     * @param timeoutMs How long to wait before giving up
+     * @param onTimeout Invoked on the timeout thread to clean up and build the final result. It
+     *                  returns null if the player was taken by a pairing that is still creating
+     *                  the game: the wait is then extended by the pairing grace period, for the
+     *                  pairing to publish its result, after which it is invoked once more
+     * @param leave Takes the player out of the pool or queue it waits in, if superseded
+     * @return A future completed by a pairing, a release or the timeout
+     */
+    public CompletableFuture<MatchmakingResultDTO> await(String username, long timeoutMs,
+                                                         Supplier<MatchmakingResultDTO> onTimeout,
+                                                         Runnable leave) {
+        CompletableFuture<MatchmakingResultDTO> future = new CompletableFuture<>();
+        Waiter waiter = new Waiter(future, leave);
+        Waiter previous = waiters.put(username, waiter);
+        if (previous != null) {
+            try {
+                previous.leave().run();
+            } catch (Exception e) {
+                log.warn("Could not remove the superseded matchmaking request of {}: {}", username, e.getMessage());
+            }
+            previous.future().complete(new MatchmakingResultDTO(null, null, null, null, false,
+                "Superseded by a newer matchmaking request."));
+        }
+
+        ScheduledFuture<?> timeout = timeoutExecutor.schedule(() -> {
+            if (!expire(username, waiter, onTimeout, false)) {
+                // Taken by a pairing in flight: its result, a match or a release, is coming
+                timeoutExecutor.schedule(() -> expire(username, waiter, onTimeout, true),
+                                         pairingGraceMs, TimeUnit.MILLISECONDS);
+            }
+        }, timeoutMs, TimeUnit.MILLISECONDS);
+        future.whenComplete((result, ex) -> timeout.cancel(false));
+
+        return future;
+    }
+
+    /**
+     * Complete a wait that ran out with the result of its timeout callback. The waiter stays
+     * registered while the callback runs, so a pairing published meanwhile still reaches it.
+     * @param last Whether a null result ends the wait anyway
+     * @return false if the wait goes on
+     */
+    private boolean expire(String username, Waiter waiter, Supplier<MatchmakingResultDTO> onTimeout, boolean last) {
+        if (waiters.get(username) != waiter) {
+            // Completed meanwhile
+            return true;
+        }
+        MatchmakingResultDTO result;
+        try {
+            result = onTimeout.get();
+        } catch (Exception e) {
+            if (waiters.remove(username, waiter)) {
+                waiter.future().completeExceptionally(e);
+            }
+            return true;
+        }
+        if (result == null) {
+            if (!last) {
+                return false;
+            }
+            result = new MatchmakingResultDTO(null, null, null, null, false, "No opponent found.");
+        }
+        if (waiters.remove(username, waiter)) {
+            waiter.future().complete(result);
+        }
+        return true;
+    }
+
+    /**
+     * Complete the local waiter of a player without a pairing (e.g. the player left the queue).
+     */
+    public void release(String username, MatchmakingResultDTO result) {
+        Waiter waiter = waiters.remove(username);
+        if (waiter != null) {
+            waiter.future().complete(result);
+        }
+    }
+
+    /**
+     * Notify the waiting player, on whichever instance holds its request, that it has been paired.
+     */
+    public void publishMatch(String username, MatchmakingResultDTO result) {
+        try {
+            String payload = objectMapper.writeValueAsString(new MatchNotification(username, result));
+            redisTemplate.convertAndSend(MATCH_CHANNEL, payload);
+        } catch (Exception e) {
+            // The waiter still finds the game through its player pointer when it times out
+            log.error("Failed to publish match for user {}: {}", username, e.getMessage());
+        }
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        try {
+            MatchNotification notification = objectMapper.readValue(message.getBody(), MatchNotification.class);
+            Waiter waiter = waiters.remove(notification.getUsername());
+            if (waiter != null) {
+                log.info("User {} was matched to game {} by another player",
+                         notification.getUsername(), notification.getResult().getGameId());
+                waiter.future().complete(notification.getResult());
+            }
+        } catch (Exception e) {
+            log.error("Invalid match notification: {}", e.getMessage());
+        }
+    }
+
+    private record Waiter(CompletableFuture<MatchmakingResultDTO> future, Runnable leave) {
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    static class MatchNotification {
+        private String username;
+        private MatchmakingResultDTO result;
+    }
+}
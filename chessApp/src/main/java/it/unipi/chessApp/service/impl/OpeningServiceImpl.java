@@ -1,60 +1,167 @@
 package it.unipi.chessApp.service.impl;
 
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import it.unipi.chessApp.model.ChessOpening;
+import it.unipi.chessApp.model.LiveGameState;
 import it.unipi.chessApp.service.OpeningService;
-import lombok.RequiredArgsConstructor;
+import it.unipi.chessApp.utils.BitboardPosition;
+import it.unipi.chessApp.utils.PackedMoves;
+import it.unipi.chessApp.utils.Zobrist;
+import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
 import org.springframework.stereotype.Service;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * In-memory opening book built at startup from the ECO dataset.
+ * Every line of the book is replayed once: the position it ends in is mapped to its opening,
+ * and the positions it goes through are kept too, so a game can tell when it leaves the book.
+ * Positions are keyed by their {@link Zobrist#placementKey placement key} in an open-addressing
+ * table. The book is generated from data/api/opening_json_data by data/api/build_eco_book.py;
+ * each line keeps its moves and the FEN they lead to.
+ */
 @Service
-@RequiredArgsConstructor
 @Slf4j
 public class OpeningServiceImpl implements OpeningService {
 
-    private final StringRedisTemplate redisTemplate;
-    private final ObjectMapper objectMapper;
+    private static final long EMPTY = 0L;
+    /** Value of a position that is on a book line but has no opening name of its own */
+    private static final int UNNAMED = -1;
+
+    @Value("${chess.openings.book-resource:openings/eco.tsv}")
+    private String bookResource;
+
+    private long[] keys = new long[0];
+    private int[] values = new int[0];
+    private ChessOpening[] openings = new ChessOpening[0];
+    private int mask;
+
+    @PostConstruct
+    void loadBook() {
+        long start = System.currentTimeMillis();
+        Map<String, String> names = new HashMap<>();
+        List<ChessOpening> openingList = new ArrayList<>();
+        Map<Long, Integer> positions = new HashMap<>();
+        int lines = 0;
+        int skipped = 0;
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new ClassPathResource(bookResource).getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] fields = line.split("\t");
+                if (fields.length < 3) {
+                    skipped++;
+                    continue;
+                }
+                try {
+                    BitboardPosition position = BitboardPosition.fromFen(LiveGameState.STARTING_FEN);
+                    for (String token : fields[2].trim().split("\\s+")) {
+                        // Move numbers standing on their own, as in "1. e4"
+                        if (token.endsWith(".")) {
+                            continue;
+                        }
+                        int move = PackedMoves.fromSan(position, token);
+                        if (move == BitboardPosition.NO_MOVE) {
+                            throw new IllegalArgumentException("Illegal move " + token);
+                        }
+                        position.play(move);
+                        positions.putIfAbsent(Zobrist.placementKey(position), UNNAMED);
+                    }
+
+                    // Lines of the same opening share its code and name strings
+                    String eco = names.computeIfAbsent(fields[0], k -> k);
+                    String name = names.computeIfAbsent(fields[1], k -> k);
+                    String fen = fields.length > 3 ? fields[3] : position.toFen();
+                    openingList.add(new ChessOpening(eco, name, fields[2], fen));
+                    // Like the Redis book it replaces, the last line ending in a position names it
+                    positions.put(Zobrist.placementKey(position), openingList.size() - 1);
+                    lines++;
+                } catch (Exception e) {
+                    skipped++;
+                    log.debug("Skipping book line '{}': {}", line, e.getMessage());
+                }
+            }
+        } catch (IOException e) {
+            log.error("Could not load opening book {}: {}", bookResource, e.getMessage());
+            return;
+        }
+
+        int capacity = Integer.highestOneBit(Math.max(positions.size(), 1) * 2 - 1) << 1;
+        long[] newKeys = new long[capacity];
+        int[] newValues = new int[capacity];
+        int newMask = capacity - 1;
+        positions.forEach((key, value) -> {
+            if (key == EMPTY) {
+                return;
+            }
+            int slot = slot(key, newMask);
+            while (newKeys[slot] != EMPTY) {
+                slot = (slot + 1) & newMask;
+            }
+            newKeys[slot] = key;
+            newValues[slot] = value;
+        });
 
-    private static final String KEY_PREFIX = "chess:opening:";
+        this.keys = newKeys;
+        this.values = newValues;
+        this.openings = openingList.toArray(new ChessOpening[0]);
+        this.mask = newMask;
+
+        log.info("Loaded opening book: {} lines, {} positions ({} lines skipped) in {} ms",
+                 lines, positions.size(), skipped, System.currentTimeMillis() - start);
+    }
 
     @Override
     public ChessOpening findOpeningByFen(String fen) {
         if (fen == null || fen.isEmpty()) {
             return null;
         }
+        return findOpening(Zobrist.placementKey(fen));
+    }
 
-        try {
-            String normalizedFen = normalizeFen(fen);
-            String result = redisTemplate.opsForValue().get(KEY_PREFIX + normalizedFen);
-            
-            if (result != null) {
-                JsonNode node = objectMapper.readTree(result);
-                return new ChessOpening(
-                    node.path("eco").asText(),
-                    node.path("name").asText(),
-                    null,
-                    null
-                );
-            }
-        } catch (Exception e) {
-            log.error("Error looking up opening for FEN {}: {}", fen, e.getMessage());
-        }
+    @Override
+    public ChessOpening findOpening(long positionKey) {
+        int value = lookup(positionKey);
+        return value >= 0 ? openings[value] : null;
+    }
 
-        return null;
+    @Override
+    public boolean isBookPosition(long positionKey) {
+        return lookup(positionKey) != Integer.MIN_VALUE;
     }
 
     /**
-     * Normalize FEN to only include position and side to move.
-     * Full FEN: "rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR b KQkq e3 0 1"
-     * Normalized: "rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR b"
+     * @return The opening index, {@link #UNNAMED}, or Integer.MIN_VALUE if the position is not in the book
      */
-    private String normalizeFen(String fen) {
-        String[] parts = fen.split(" ");
-        if (parts.length >= 2) {
-            return parts[0] + " " + parts[1];
+    private int lookup(long positionKey) {
+        if (positionKey == EMPTY || keys.length == 0) {
+            return Integer.MIN_VALUE;
+        }
+        int slot = slot(positionKey, mask);
+        long key;
+        while ((key = keys[slot]) != EMPTY) {
+            if (key == positionKey) {
+                return values[slot];
+            }
+            slot = (slot + 1) & mask;
         }
-        return fen;
+        return Integer.MIN_VALUE;
+    }
+
+    private static int slot(long key, int mask) {
+        return (int) (key ^ (key >>> 32)) & mask;
     }
 }
@@ -0,0 +1,92 @@
+package it.unipi.chessApp.service.impl;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import it.unipi.chessApp.utils.BitboardPosition;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+
+/**
+ * Facts about a position that only depend on the position itself: its legal moves, whether
+ * the side to move is in check and whether mate is still possible. They are shared by all the
+ * games going through the same position, so a move in a common position is checked without
+ * generating moves, and the status after a move is known without looking for mate or stalemate.
+ * The entry of the position reached by a move is also the one the next move of the game is
+ * checked against.
+ * <p>
+ * Only the positions of the opening book are looked up here: later positions are all but unique
+ * to their game, so an entry would cost a full move generation for no hit. Those moves are
+ * checked on the position itself (see BitboardPosition.isLegal).
+ * <p>
+ * Positions are keyed by their Zobrist position key, which covers everything the legal moves
+ * depend on (placement, side to move, castling rights, playable en passant). The cache is
+ * bounded by size, concurrent and lock-free for reads; its hit rate is published as
+ * chess.positions metrics.
+ */
+@Component
+@RequiredArgsConstructor
+public class PositionCache {
+
+    private final MeterRegistry meterRegistry;
+
+    private Cache<Long, PositionInfo> cache;
+
+    @Value("${chess.position-cache.max-size:200000}")
+    private long maxSize;
+
+    @PostConstruct
+    void init() {
+        cache = Caffeine.newBuilder()
+            .maximumSize(maxSize)
+            .recordStats()
+            .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "chess.positions");
+        Gauge.builder("chess.positions.hit.ratio", cache, c -> c.stats().hitRate())
+            .description("Share of position lookups answered without generating moves")
+            .register(meterRegistry);
+    }
+
+    /**
+     * @param key The Zobrist position key of the position (see Zobrist.positionKey)
+     * @param position The position, only read to compute a missing entry
+     */
+    public PositionInfo get(long key, BitboardPosition position) {
+        return cache.get(key, k -> PositionInfo.of(position));
+    }
+
+    /**
+     * @param legalMoves Legal moves, packed as by BitboardPosition and sorted
+     */
+    public record PositionInfo(short[] legalMoves, boolean inCheck, boolean insufficientMaterial) {
+
+        static PositionInfo of(BitboardPosition position) {
+            int[] moves = new int[BitboardPosition.MAX_MOVES];
+            int count = position.legalMoves(moves);
+            short[] packed = new short[count];
+            for (int i = 0; i < count; i++) {
+                packed[i] = (short) moves[i];
+            }
+            Arrays.sort(packed);
+            return new PositionInfo(packed, position.inCheck(), position.isInsufficientMaterial());
+        }
+
+        public boolean isLegal(int move) {
+            return move >= 0 && move <= Short.MAX_VALUE && Arrays.binarySearch(legalMoves, (short) move) >= 0;
+        }
+
+        public boolean isMate() {
+            return inCheck && legalMoves.length == 0;
+        }
+
+        public boolean isStalemate() {
+            return !inCheck && legalMoves.length == 0;
+        }
+    }
+}
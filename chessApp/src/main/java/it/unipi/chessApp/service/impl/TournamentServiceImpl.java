@@ -2,6 +2,7 @@ package it.unipi.chessApp.service.impl;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import it.unipi.chessApp.config.RedisConfig;
 import it.unipi.chessApp.dto.*;
 import it.unipi.chessApp.model.GameSummary;
 import it.unipi.chessApp.model.Tournament;
@@ -12,6 +13,10 @@ import it.unipi.chessApp.repository.TournamentRepository;
 import it.unipi.chessApp.repository.UserRepository;
 import it.unipi.chessApp.repository.neo4j.TournamentNodeRepository;
 import it.unipi.chessApp.repository.neo4j.UserNodeRepository;
+import it.unipi.chessApp.repository.redis.RedisBatchExecutor;
+import it.unipi.chessApp.repository.redis.RedisKeys;
+import it.unipi.chessApp.repository.redis.RedisNearCache;
+import it.unipi.chessApp.service.GameService;
 import it.unipi.chessApp.service.Neo4jService;
 import it.unipi.chessApp.service.TournamentService;
 import it.unipi.chessApp.service.exception.BusinessException;
@@ -26,6 +31,7 @@ import java.util.stream.Collectors;
 import it.unipi.chessApp.utils.Outcomes;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.redis.core.StringRedisTemplate;
@@ -43,17 +49,20 @@ public class TournamentServiceImpl implements TournamentService {
   private final TournamentRepository tournamentRepository;
   private final TournamentNodeRepository tournamentNodeRepository;
   private final UserRepository userRepository;
+  // Master only: subscriptions and game counts enforce limits, a lagging replica would let them through.
+  // Tournament data is read through the near cache, which tracks its keys on the master
+  @Qualifier(RedisConfig.MASTER_TEMPLATE)
   private final StringRedisTemplate redisTemplate;
+  private final RedisBatchExecutor batchExecutor;
+  private final RedisNearCache nearCache;
   private final ObjectMapper objectMapper;
   private final Neo4jService neo4jService;
 
-  private static final String TOURNAMENT_PREFIX = "chess:tournament:";
-  private static final String TOURNAMENT_SUBSCRIBERS_SUFFIX = ":subscribers";
-  private static final String TOURNAMENT_DATA_SUFFIX = ":data";
   private static final DateTimeFormatter DATE_TIME_FORMATTER =
       DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
   private final MongoTemplate mongoTemplate;
   private final UserNodeRepository userNodeRepository;
+  private final GameService gameService;
 
   @Override
   public TournamentDTO createTournament(TournamentCreateDTO tournamentCreateDTO, String creatorUsername)
@@ -123,8 +132,10 @@ public class TournamentServiceImpl implements TournamentService {
       // Rollback Redis and MongoDB
       log.error("Failed to save tournament to Neo4j, rolling back Redis and MongoDB", e);
       try {
-        redisTemplate.delete(getDataKey(tournamentId));
-        redisTemplate.delete(getSubscribersKey(tournamentId));
+        batchExecutor.pipeline("tournament.create-rollback")
+            .delete(getDataKey(tournamentId), getSubscribersKey(tournamentId))
+            .execute();
+        nearCache.evict(getDataKey(tournamentId), getSubscribersKey(tournamentId));
       } catch (Exception redisRollbackEx) {
         log.error("Failed to rollback Redis after Neo4j failure", redisRollbackEx);
       }
@@ -157,26 +168,29 @@ public class TournamentServiceImpl implements TournamentService {
   }
 
   private String getSubscribersKey(String tournamentId) {
-    return TOURNAMENT_PREFIX + tournamentId + TOURNAMENT_SUBSCRIBERS_SUFFIX;
+    return RedisKeys.tournamentSubscribers(tournamentId);
   }
 
   private String getDataKey(String tournamentId) {
-    return TOURNAMENT_PREFIX + tournamentId + TOURNAMENT_DATA_SUFFIX;
+    return RedisKeys.tournamentData(tournamentId);
   }
 
   /**
    * Retrieve tournament data from Redis and deserialize from JSON.
+   * Served from the near cache, already deserialized: the returned data must not be modified.
    * @param tournamentId The tournament ID
    * @return LiveTournamentData or null if not found
    */
   private LiveTournamentData getLiveTournamentData(String tournamentId) throws BusinessException {
     try {
-      String json = redisTemplate.opsForValue().get(getDataKey(tournamentId));
-      if (json == null) {
-        return null;
-      }
-      return objectMapper.readValue(json, LiveTournamentData.class);
-    } catch (JsonProcessingException e) {
+      return nearCache.get(getDataKey(tournamentId), json -> {
+        try {
+          return objectMapper.readValue(json, LiveTournamentData.class);
+        } catch (JsonProcessingException e) {
+          throw new IllegalStateException(e);
+        }
+      });
+    } catch (IllegalStateException e) {
       throw new BusinessException("Error reading tournament data from Redis");
     }
   }
@@ -190,6 +204,7 @@ public class TournamentServiceImpl implements TournamentService {
     try {
       String json = objectMapper.writeValueAsString(tournamentData);
       redisTemplate.opsForValue().set(getDataKey(tournamentId), json);
+      nearCache.evict(getDataKey(tournamentId));
     } catch (JsonProcessingException e) {
       throw new BusinessException("Error saving tournament data to Redis");
     }
@@ -288,8 +303,10 @@ public class TournamentServiceImpl implements TournamentService {
       // Delete Redis keys when tournament is deleted
       String subscribersKey = getSubscribersKey(id);
       String dataKey = getDataKey(id);
-      redisTemplate.delete(subscribersKey);
-      redisTemplate.delete(dataKey);
+      batchExecutor.transaction("tournament.delete")
+          .delete(subscribersKey, dataKey)
+          .execute();
+      nearCache.evict(subscribersKey, dataKey);
       tournamentRepository.deleteById(id);
     } catch (Exception e) {
       throw new BusinessException("Error deleting tournament", e);
@@ -325,7 +342,14 @@ public class TournamentServiceImpl implements TournamentService {
       // Add first, then check - this avoids a race condition where multiple users
       // could pass the count check simultaneously and exceed maxParticipants
       int maxParticipants = tournamentData.getMaxParticipants();
-      Long added = redisTemplate.opsForSet().add(subscribersKey, username);
+      // Add and count in a single round-trip
+      List<Object> replies = batchExecutor.pipeline("tournament.subscribe")
+          .command(conn -> conn.sAdd(subscribersKey, username))
+          .command(conn -> conn.sCard(subscribersKey))
+          .execute();
+      nearCache.evict(subscribersKey);
+      Long added = replies.size() > 0 ? (Long) replies.get(0) : null;
+      Long currentCount = replies.size() > 1 ? (Long) replies.get(1) : null;
 
       if (added == null || added == 0) {
         // User was already in set (SADD returns 0 if element already exists)
@@ -333,10 +357,10 @@ public class TournamentServiceImpl implements TournamentService {
       }
 
       // Now check if we exceeded the limit
-      Long currentCount = redisTemplate.opsForSet().size(subscribersKey);
       if (currentCount != null && currentCount > maxParticipants) {
         // Over limit - remove ourselves and reject
         redisTemplate.opsForSet().remove(subscribersKey, username);
+        nearCache.evict(subscribersKey);
         throw new BusinessException("Tournament has reached maximum participants");
       }
 
@@ -363,13 +387,12 @@ public class TournamentServiceImpl implements TournamentService {
       validateSubscriptionWindow(tournamentData.getFinishTime());
 
       // Check if subscribed
-      Boolean isSubscribed = redisTemplate.opsForSet().isMember(subscribersKey, username);
-      if (!Boolean.TRUE.equals(isSubscribed)) {
+      if (!nearCache.isMember(subscribersKey, username)) {
         throw new BusinessException("You are not subscribed to this tournament");
       }
 
       // Check if user has already played a game in this tournament
-      String gameCountKey = TOURNAMENT_PREFIX + tournamentId + ":player:" + username + ":games";
+      String gameCountKey = RedisKeys.tournamentGameCount(tournamentId, username);
       String gameCountStr = redisTemplate.opsForValue().get(gameCountKey);
       int gameCount = gameCountStr != null ? Integer.parseInt(gameCountStr) : 0;
       if (gameCount > 0) {
@@ -378,6 +401,7 @@ public class TournamentServiceImpl implements TournamentService {
 
       // Remove from Redis Set
       redisTemplate.opsForSet().remove(subscribersKey, username);
+      nearCache.evict(subscribersKey);
 
       log.info("User {} unsubscribed from tournament {}", username, tournamentId);
     } catch (BusinessException e) {
@@ -407,6 +431,34 @@ public class TournamentServiceImpl implements TournamentService {
       Tournament tournament = tournamentRepository.findById(tournamentId)
               .orElseThrow(() -> new RuntimeException("Tournament not found"));
 
+      // Already buffered by a previous attempt: retries must not count the game twice
+      if (summary.getId() != null && tournament.getGames() != null
+              && tournament.getGames().stream().anyMatch(g -> summary.getId().equals(g.getId()))) {
+          return Outcomes.TOURNAMENT_BUFFERING_SUCCESS;
+      }
+      // Counted before but flushed out of the buffer since: the mark on the archived game remembers it
+      if (!gameService.markBuffered(summary.getId(), bufferId(tournamentId))) {
+          return Outcomes.TOURNAMENT_BUFFERING_SUCCESS;
+      }
+      String result;
+      try {
+          result = addToBuffer(tournament, summary, game, whiteId, blackId);
+      } catch (RuntimeException e) {
+          gameService.unmarkBuffered(summary.getId(), bufferId(tournamentId));
+          throw e;
+      }
+      if (!Outcomes.TOURNAMENT_BUFFERING_SUCCESS.equals(result)) {
+          gameService.unmarkBuffered(summary.getId(), bufferId(tournamentId));
+      }
+      return result;
+  }
+
+  private static String bufferId(String tournamentId) {
+      return "tournament:" + tournamentId;
+  }
+
+  private String addToBuffer(Tournament tournament, GameSummary summary, GameDTO game, String whiteId, String blackId) {
+      String tournamentId = tournament.getId();
       int currentIndex = tournament.getBufferedGames();
 
       //Check if the limit is reached
@@ -571,6 +623,7 @@ public class TournamentServiceImpl implements TournamentService {
           userNodeRepository.updateUserTournamentStats(whiteId, tournamentId, whiteWins, whiteLosses, whiteDraws, whitePart.getPlacement());
           userNodeRepository.updateUserTournamentStats(blackId, tournamentId, blackWins, blackLosses, blackDraws, blackPart.getPlacement());
       }
+      gameService.unmarkBuffered(gameId, bufferId(tournamentId));
   }
 
   private TournamentDTO convertToDTO(Tournament tournament) {
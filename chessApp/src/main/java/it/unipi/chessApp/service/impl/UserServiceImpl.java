@@ -7,6 +7,7 @@ import it.unipi.chessApp.model.User;
 import it.unipi.chessApp.repository.UserRepository;
 import it.unipi.chessApp.repository.neo4j.UserNodeRepository;
 import it.unipi.chessApp.service.AuthenticationService;
+import it.unipi.chessApp.service.GameService;
 import it.unipi.chessApp.service.UserService;
 import it.unipi.chessApp.service.exception.BusinessException;
 import it.unipi.chessApp.utils.Constants;
@@ -35,6 +36,8 @@ public class UserServiceImpl implements UserService {
 
   private final UserNodeRepository userNodeRepository;
 
+  private final GameService gameService;
+
   @Override
   public UserDTO createUser(UserDTO userDTO) throws BusinessException {
     try {
@@ -241,6 +244,30 @@ public class UserServiceImpl implements UserService {
       User user = userRepository.findById(userId)
               .orElseThrow(() -> new RuntimeException("User not found"));
 
+      // Already buffered by a previous attempt: retries must not count the game twice
+      if (summary.getId() != null && user.getGames() != null
+              && user.getGames().stream().anyMatch(g -> summary.getId().equals(g.getId()))) {
+          return;
+      }
+      // Counted before but rotated out of the buffer since: the mark on the archived game remembers it
+      if (!gameService.markBuffered(summary.getId(), bufferId(userId))) {
+          return;
+      }
+      try {
+          addToBuffer(user, summary, timeClass);
+      } catch (RuntimeException e) {
+          gameService.unmarkBuffered(summary.getId(), bufferId(userId));
+          throw e;
+      }
+  }
+
+  private static String bufferId(String userId) {
+      return "user:" + userId;
+  }
+
+  private void addToBuffer(User user, GameSummaryDTO summary, String timeClass) {
+      String userId = user.getId();
+
       //Calculate elo gain/loss
       int eloDiff = this.calculateEloChange(summary, user.getUsername());
       int oldElo = 0;
@@ -370,6 +397,7 @@ public class UserServiceImpl implements UserService {
           eloBullet -= eloDiff;
       }
       userNodeRepository.updateJoinedRelation(userId, eloBullet, eloBlitz, eloRapid);
+      gameService.unmarkBuffered(gameId, bufferId(userId));
   }
 
   @Override
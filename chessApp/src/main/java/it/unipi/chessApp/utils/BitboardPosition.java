@@ -0,0 +1,833 @@
+package it.unipi.chessApp.utils;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Chess position on bitboards, used to validate and play the moves of live games.
+ * Everything on the move path works on primitive longs and ints and allocates nothing:
+ * a single move is checked for legality without generating the others, sliding attacks come
+ * from magic bitboard tables, and the legal moves (needed for mate and stalemate) are written
+ * into a caller-provided buffer. Only {@link #load(String)} and {@link #toFen()} deal with text.
+ * <p>
+ * Squares are numbered from a1 = 0 to h8 = 63, like chesslib's Square ordinals. Pieces are
+ * numbered in {@link Zobrist} table order: white pawn, knight, bishop, rook, queen, king, then
+ * the same for black ({@link #BLACK} added to the type).
+ * Moves are packed in 16 bits: from square, to square on 6 bits each and the promotion type
+ * plus one (0 for none) on the upper 4 bits. Castling is the two-square king move.
+ */
+public final class BitboardPosition {
+
+    public static final int PAWN = 0;
+    public static final int KNIGHT = 1;
+    public static final int BISHOP = 2;
+    public static final int ROOK = 3;
+    public static final int QUEEN = 4;
+    public static final int KING = 5;
+    /** Added to a piece type to get the black piece */
+    public static final int BLACK = 6;
+    public static final int NO_PIECE = -1;
+
+    /** Castling right bits, in {@link Zobrist} table order */
+    public static final int WHITE_KING_SIDE = 1;
+    public static final int WHITE_QUEEN_SIDE = 2;
+    public static final int BLACK_KING_SIDE = 4;
+    public static final int BLACK_QUEEN_SIDE = 8;
+
+    /** Enough room for the legal moves of any position */
+    public static final int MAX_MOVES = 256;
+    /** Returned by {@link #parseMove} for malformed notation; never legal */
+    public static final int NO_MOVE = -1;
+
+    private static final long SEED = 0x2545F4914F6CDD1DL;
+    private static final long DARK_SQUARES = 0xAA55AA55AA55AA55L;
+    private static final int[][] ROOK_DIRECTIONS = {{1, 0}, {-1, 0}, {0, 1}, {0, -1}};
+    private static final int[][] BISHOP_DIRECTIONS = {{1, 1}, {1, -1}, {-1, 1}, {-1, -1}};
+    private static final char[] FEN_PIECES = {'P', 'N', 'B', 'R', 'Q', 'K', 'p', 'n', 'b', 'r', 'q', 'k'};
+
+    private static final long[] KNIGHT_ATTACKS = new long[64];
+    private static final long[] KING_ATTACKS = new long[64];
+    /** Squares attacked by a pawn, white then black */
+    private static final long[][] PAWN_ATTACKS = new long[2][64];
+    /** Castling rights kept when a piece leaves or lands on a square */
+    private static final int[] CASTLING_KEPT = new int[64];
+
+    private static final long[] ROOK_MASKS = new long[64];
+    private static final long[] ROOK_MAGICS = new long[64];
+    private static final int[] ROOK_SHIFTS = new int[64];
+    private static final long[][] ROOK_TABLES = new long[64][];
+    private static final long[] BISHOP_MASKS = new long[64];
+    private static final long[] BISHOP_MAGICS = new long[64];
+    private static final int[] BISHOP_SHIFTS = new int[64];
+    private static final long[][] BISHOP_TABLES = new long[64][];
+
+    static {
+        int[][] knightSteps = {{1, 2}, {2, 1}, {2, -1}, {1, -2}, {-1, -2}, {-2, -1}, {-2, 1}, {-1, 2}};
+        int[][] kingSteps = {{1, 0}, {1, 1}, {0, 1}, {-1, 1}, {-1, 0}, {-1, -1}, {0, -1}, {1, -1}};
+        for (int square = 0; square < 64; square++) {
+            KNIGHT_ATTACKS[square] = leaperAttacks(square, knightSteps);
+            KING_ATTACKS[square] = leaperAttacks(square, kingSteps);
+            PAWN_ATTACKS[0][square] = leaperAttacks(square, new int[][] {{-1, 1}, {1, 1}});
+            PAWN_ATTACKS[1][square] = leaperAttacks(square, new int[][] {{-1, -1}, {1, -1}});
+            CASTLING_KEPT[square] = 15;
+        }
+        CASTLING_KEPT[0] &= ~WHITE_QUEEN_SIDE;
+        CASTLING_KEPT[4] &= ~(WHITE_KING_SIDE | WHITE_QUEEN_SIDE);
+        CASTLING_KEPT[7] &= ~WHITE_KING_SIDE;
+        CASTLING_KEPT[56] &= ~BLACK_QUEEN_SIDE;
+        CASTLING_KEPT[60] &= ~(BLACK_KING_SIDE | BLACK_QUEEN_SIDE);
+        CASTLING_KEPT[63] &= ~BLACK_KING_SIDE;
+
+        // Magics come from a fixed seed, so the tables are the same on every start
+        SplittableRandom random = new SplittableRandom(SEED);
+        for (int square = 0; square < 64; square++) {
+            ROOK_MASKS[square] = relevantOccupancy(square, ROOK_DIRECTIONS);
+            findMagic(square, ROOK_MASKS[square], ROOK_DIRECTIONS, random, ROOK_MAGICS, ROOK_SHIFTS, ROOK_TABLES);
+            BISHOP_MASKS[square] = relevantOccupancy(square, BISHOP_DIRECTIONS);
+            findMagic(square, BISHOP_MASKS[square], BISHOP_DIRECTIONS, random, BISHOP_MAGICS, BISHOP_SHIFTS, BISHOP_TABLES);
+        }
+    }
+
+    private final long[] pieces = new long[12];
+    private final int[] board = new int[64];
+    private long whiteOccupancy;
+    private long blackOccupancy;
+    private boolean whiteToMove;
+    private int castling;
+    private int enPassant;
+    private int halfMoveClock;
+    private int fullMoveNumber;
+    /** Legal moves buffer of {@link #hasLegalMove()} */
+    private final int[] scratch = new int[MAX_MOVES];
+
+    public BitboardPosition() {
+        clear();
+    }
+
+    public static BitboardPosition fromFen(String fen) {
+        BitboardPosition position = new BitboardPosition();
+        position.load(fen);
+        return position;
+    }
+
+    public static int move(int from, int to, int promotionType) {
+        return from | to << 6 | (promotionType < 0 ? 0 : promotionType + 1) << 12;
+    }
+
+    public static int from(int move) {
+        return move & 63;
+    }
+
+    public static int to(int move) {
+        return (move >>> 6) & 63;
+    }
+
+    /**
+     * @return The piece type a pawn promotes to, or -1
+     */
+    public static int promotionType(int move) {
+        return (move >>> 12) - 1;
+    }
+
+    /**
+     * Pack a move in UCI notation (e.g. e2e4, e7e8q); letters may be upper case.
+     * Only the syntax is checked here, see {@link #isLegal(int)}.
+     * @return The move, or {@link #NO_MOVE}
+     */
+    public static int parseMove(CharSequence uci) {
+        if (uci == null || (uci.length() != 4 && uci.length() != 5)) {
+            return NO_MOVE;
+        }
+        int from = square(uci.charAt(0), uci.charAt(1));
+        int to = square(uci.charAt(2), uci.charAt(3));
+        if (from < 0 || to < 0) {
+            return NO_MOVE;
+        }
+        int promotion = -1;
+        if (uci.length() == 5) {
+            promotion = switch (Character.toLowerCase(uci.charAt(4))) {
+                case 'n' -> KNIGHT;
+                case 'b' -> BISHOP;
+                case 'r' -> ROOK;
+                case 'q' -> QUEEN;
+                default -> NO_PIECE;
+            };
+            if (promotion == NO_PIECE) {
+                return NO_MOVE;
+            }
+        }
+        return move(from, to, promotion);
+    }
+
+    /**
+     * Load a position in Forsyth-Edwards Notation; the move counters may be omitted.
+     * @throws IllegalArgumentException if the FEN is malformed or a side has not exactly one king
+     */
+    public void load(String fen) {
+        clear();
+        int length = fen.length();
+        int i = 0;
+        int rank = 7;
+        int file = 0;
+        for (; i < length && fen.charAt(i) != ' '; i++) {
+            char c = fen.charAt(i);
+            if (c == '/') {
+                rank--;
+                file = 0;
+            } else if (c >= '1' && c <= '8') {
+                file += c - '0';
+            } else {
+                int piece = pieceIndex(c);
+                if (piece == NO_PIECE || rank < 0 || file > 7) {
+                    throw new IllegalArgumentException("Invalid FEN placement: " + fen);
+                }
+                put(piece, rank * 8 + file);
+                file++;
+            }
+        }
+        if (Long.bitCount(pieces[KING]) != 1 || Long.bitCount(pieces[BLACK + KING]) != 1) {
+            throw new IllegalArgumentException("Invalid FEN, each side needs one king: " + fen);
+        }
+        if (((pieces[PAWN] | pieces[BLACK + PAWN]) & 0xFF000000000000FFL) != 0) {
+            throw new IllegalArgumentException("Invalid FEN, pawn on a back rank: " + fen);
+        }
+
+        i++;
+        if (i >= length || (fen.charAt(i) != 'w' && fen.charAt(i) != 'b')) {
+            throw new IllegalArgumentException("Invalid FEN side to move: " + fen);
+        }
+        whiteToMove = fen.charAt(i) == 'w';
+
+        for (i += 2; i < length && fen.charAt(i) != ' '; i++) {
+            switch (fen.charAt(i)) {
+                case 'K' -> castling |= WHITE_KING_SIDE;
+                case 'Q' -> castling |= WHITE_QUEEN_SIDE;
+                case 'k' -> castling |= BLACK_KING_SIDE;
+                case 'q' -> castling |= BLACK_QUEEN_SIDE;
+                case '-' -> { }
+                default -> throw new IllegalArgumentException("Invalid FEN castling rights: " + fen);
+            }
+        }
+
+        i++;
+        if (i < length && fen.charAt(i) != '-') {
+            enPassant = i + 1 < length ? square(fen.charAt(i), fen.charAt(i + 1)) : -1;
+            if (enPassant < 0) {
+                throw new IllegalArgumentException("Invalid FEN en passant square: " + fen);
+            }
+            i++;
+            // Only kept if a pawn just skipped it, so captures onto it are sound
+            int pawn = whiteToMove ? enPassant - 8 : enPassant + 8;
+            if (enPassant / 8 != (whiteToMove ? 5 : 2) || board[pawn] != (whiteToMove ? BLACK + PAWN : PAWN)) {
+                enPassant = -1;
+            }
+        }
+        i += 2;
+
+        int start = i;
+        halfMoveClock = 0;
+        for (; i < length && fen.charAt(i) != ' '; i++) {
+            halfMoveClock = halfMoveClock * 10 + digit(fen, i);
+        }
+        fullMoveNumber = 0;
+        for (i++; i < length && fen.charAt(i) != ' '; i++) {
+            fullMoveNumber = fullMoveNumber * 10 + digit(fen, i);
+        }
+        if (start >= length || fullMoveNumber == 0) {
+            fullMoveNumber = 1;
+        }
+    }
+
+    public void copyFrom(BitboardPosition other) {
+        System.arraycopy(other.pieces, 0, pieces, 0, pieces.length);
+        System.arraycopy(other.board, 0, board, 0, board.length);
+        whiteOccupancy = other.whiteOccupancy;
+        blackOccupancy = other.blackOccupancy;
+        whiteToMove = other.whiteToMove;
+        castling = other.castling;
+        enPassant = other.enPassant;
+        halfMoveClock = other.halfMoveClock;
+        fullMoveNumber = other.fullMoveNumber;
+    }
+
+    public String toFen() {
+        StringBuilder fen = new StringBuilder(90);
+        for (int rank = 7; rank >= 0; rank--) {
+            int empty = 0;
+            for (int file = 0; file < 8; file++) {
+                int piece = board[rank * 8 + file];
+                if (piece == NO_PIECE) {
+                    empty++;
+                    continue;
+                }
+                if (empty > 0) {
+                    fen.append(empty);
+                    empty = 0;
+                }
+                fen.append(FEN_PIECES[piece]);
+            }
+            if (empty > 0) {
+                fen.append(empty);
+            }
+            if (rank > 0) {
+                fen.append('/');
+            }
+        }
+        fen.append(whiteToMove ? " w " : " b ");
+        if (castling == 0) {
+            fen.append('-');
+        } else {
+            if ((castling & WHITE_KING_SIDE) != 0) fen.append('K');
+            if ((castling & WHITE_QUEEN_SIDE) != 0) fen.append('Q');
+            if ((castling & BLACK_KING_SIDE) != 0) fen.append('k');
+            if ((castling & BLACK_QUEEN_SIDE) != 0) fen.append('q');
+        }
+        // Like chesslib, the en passant square is only written when the capture can be played
+        fen.append(' ');
+        if (!canCaptureEnPassant()) {
+            fen.append('-');
+        } else {
+            fen.append((char) ('a' + enPassant % 8)).append((char) ('1' + enPassant / 8));
+        }
+        return fen.append(' ').append(halfMoveClock).append(' ').append(fullMoveNumber).toString();
+    }
+
+    public long getPieces(int piece) {
+        return pieces[piece];
+    }
+
+    public long getOccupancy(boolean white) {
+        return white ? whiteOccupancy : blackOccupancy;
+    }
+
+    /**
+     * @return The piece on a square, or {@link #NO_PIECE}
+     */
+    public int pieceAt(int square) {
+        return board[square];
+    }
+
+    public boolean isWhiteToMove() {
+        return whiteToMove;
+    }
+
+    public int getCastlingRights() {
+        return castling;
+    }
+
+    /**
+     * @return The square a pawn just skipped with a double step, or -1; see {@link #canCaptureEnPassant()}
+     */
+    public int getEnPassantSquare() {
+        return enPassant;
+    }
+
+    public int getHalfMoveClock() {
+        return halfMoveClock;
+    }
+
+    public int getFullMoveNumber() {
+        return fullMoveNumber;
+    }
+
+    /**
+     * Whether a move can be played in this position, checked on its own: the piece must be
+     * able to reach the square and its king must not be left (or, castling, pass) in check.
+     */
+    public boolean isLegal(int move) {
+        if (move < 0 || move > 0x5FFF) {
+            return false;
+        }
+        int from = from(move);
+        int to = to(move);
+        int promotion = promotionType(move);
+        int us = whiteToMove ? 0 : BLACK;
+        int piece = board[from];
+        long own = whiteToMove ? whiteOccupancy : blackOccupancy;
+        if (piece < us || piece >= us + BLACK || (own & 1L << to) != 0) {
+            return false;
+        }
+
+        int type = piece - us;
+        if (type == PAWN) {
+            boolean promotes = whiteToMove ? to >= 56 : to < 8;
+            if (promotes != (promotion >= KNIGHT) || promotion == PAWN || (pawnTargets(from) & 1L << to) == 0) {
+                return false;
+            }
+        } else if (promotion >= 0) {
+            return false;
+        } else if (type == KING && from == (whiteToMove ? 4 : 60) && Math.abs(to - from) == 2) {
+            return canCastle(from, to);
+        } else if ((attacks(type, from, whiteOccupancy | blackOccupancy) & 1L << to) == 0) {
+            return false;
+        }
+        return leavesKingSafe(from, to);
+    }
+
+    /**
+     * Squares from which a piece of the side to move, other than a pawn, can legally go to a
+     * square, e.g. to tell two knights apart in SAN.
+     */
+    public long legalOrigins(int piece, int to) {
+        int type = piece % BLACK;
+        if (type == PAWN) {
+            return 0L;
+        }
+        // Non-pawn attacks are symmetric: the pieces a square attacks are the ones attacking it
+        long origins = attacks(type, to, whiteOccupancy | blackOccupancy) & pieces[piece];
+        long legal = 0L;
+        while (origins != 0) {
+            int from = Long.numberOfTrailingZeros(origins);
+            origins &= origins - 1;
+            if (leavesKingSafe(from, to)) {
+                legal |= 1L << from;
+            }
+        }
+        return legal;
+    }
+
+    /**
+     * Write the legal moves of the position into a buffer of at least {@link #MAX_MOVES}.
+     * @return How many were written
+     */
+    public int legalMoves(int[] moves) {
+        return generate(moves, MAX_MOVES);
+    }
+
+    /**
+     * Stops at the first legal move found, so positions with moves are answered quickly.
+     */
+    public boolean hasLegalMove() {
+        return generate(scratch, 1) > 0;
+    }
+
+    public boolean inCheck() {
+        int king = Long.numberOfTrailingZeros(pieces[(whiteToMove ? 0 : BLACK) + KING]);
+        return isAttacked(king, whiteOccupancy | blackOccupancy, -1L);
+    }
+
+    public boolean isCheckmate() {
+        return inCheck() && !hasLegalMove();
+    }
+
+    public boolean isStalemate() {
+        return !inCheck() && !hasLegalMove();
+    }
+
+    private int generate(int[] moves, int limit) {
+        int us = whiteToMove ? 0 : BLACK;
+        long own = whiteToMove ? whiteOccupancy : blackOccupancy;
+        long occupied = whiteOccupancy | blackOccupancy;
+        int count = 0;
+
+        long pawns = pieces[us + PAWN];
+        while (pawns != 0) {
+            int from = Long.numberOfTrailingZeros(pawns);
+            pawns &= pawns - 1;
+            long targets = pawnTargets(from);
+            while (targets != 0) {
+                int to = Long.numberOfTrailingZeros(targets);
+                targets &= targets - 1;
+                if (!leavesKingSafe(from, to)) {
+                    continue;
+                }
+                if (to >= 56 || to < 8) {
+                    for (int promotion = QUEEN; promotion >= KNIGHT; promotion--) {
+                        moves[count++] = move(from, to, promotion);
+                    }
+                } else {
+                    moves[count++] = move(from, to, -1);
+                }
+                if (count >= limit) {
+                    return count;
+                }
+            }
+        }
+
+        for (int type = KNIGHT; type <= KING; type++) {
+            long movers = pieces[us + type];
+            while (movers != 0) {
+                int from = Long.numberOfTrailingZeros(movers);
+                movers &= movers - 1;
+                long targets = attacks(type, from, occupied) & ~own;
+                while (targets != 0) {
+                    int to = Long.numberOfTrailingZeros(targets);
+                    targets &= targets - 1;
+                    if (leavesKingSafe(from, to)) {
+                        moves[count++] = move(from, to, -1);
+                        if (count >= limit) {
+                            return count;
+                        }
+                    }
+                }
+            }
+        }
+
+        int kingHome = whiteToMove ? 4 : 60;
+        if (board[kingHome] == us + KING) {
+            if (canCastle(kingHome, kingHome + 2)) {
+                moves[count++] = move(kingHome, kingHome + 2, -1);
+            }
+            if (canCastle(kingHome, kingHome - 2)) {
+                moves[count++] = move(kingHome, kingHome - 2, -1);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * No pawn, rook or queen left, and at most one minor piece or only bishops on squares of
+     * the same color: no sequence of moves can end in mate.
+     */
+    public boolean isInsufficientMaterial() {
+        long heavy = pieces[PAWN] | pieces[ROOK] | pieces[QUEEN]
+                   | pieces[BLACK + PAWN] | pieces[BLACK + ROOK] | pieces[BLACK + QUEEN];
+        if (heavy != 0) {
+            return false;
+        }
+        long knights = pieces[KNIGHT] | pieces[BLACK + KNIGHT];
+        long bishops = pieces[BISHOP] | pieces[BLACK + BISHOP];
+        if (Long.bitCount(knights | bishops) <= 1) {
+            return true;
+        }
+        return knights == 0 && ((bishops & DARK_SQUARES) == 0 || (bishops & ~DARK_SQUARES) == 0);
+    }
+
+    /**
+     * Whether one side alone has too little material to ever mate, whatever the other side has:
+     * a lone king, or a king with a single bishop or knight.
+     */
+    public boolean isInsufficientMaterial(boolean white) {
+        int side = white ? 0 : BLACK;
+        long others = getOccupancy(white) & ~pieces[side + KING];
+        return Long.bitCount(others) <= 1 && (others & ~(pieces[side + KNIGHT] | pieces[side + BISHOP])) == 0;
+    }
+
+    /**
+     * Whether the side to move can legally take en passant, so that the en passant square is
+     * part of the position as far as repetitions are concerned.
+     */
+    public boolean canCaptureEnPassant() {
+        if (enPassant < 0) {
+            return false;
+        }
+        long capturers = PAWN_ATTACKS[whiteToMove ? 1 : 0][enPassant] & pieces[(whiteToMove ? 0 : BLACK) + PAWN];
+        while (capturers != 0) {
+            int from = Long.numberOfTrailingZeros(capturers);
+            capturers &= capturers - 1;
+            if (leavesKingSafe(from, enPassant)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Play a move that {@link #isLegal(int) is legal}; anything else corrupts the position.
+     */
+    public void play(int move) {
+        int from = from(move);
+        int to = to(move);
+        int us = whiteToMove ? 0 : BLACK;
+        int piece = board[from];
+        boolean capture = board[to] != NO_PIECE;
+        int skipped = enPassant;
+
+        remove(from);
+        if (capture) {
+            remove(to);
+        }
+        enPassant = -1;
+        if (piece == us + PAWN) {
+            if (to == skipped) {
+                remove(whiteToMove ? to - 8 : to + 8);
+            } else if (Math.abs(to - from) == 16) {
+                enPassant = (from + to) / 2;
+            }
+            int promotion = promotionType(move);
+            put(promotion >= KNIGHT ? us + promotion : piece, to);
+        } else {
+            if (piece == us + KING && Math.abs(to - from) == 2) {
+                boolean kingSide = to > from;
+                remove(kingSide ? from + 3 : from - 4);
+                put(us + ROOK, kingSide ? from + 1 : from - 1);
+            }
+            put(piece, to);
+        }
+
+        castling &= CASTLING_KEPT[from] & CASTLING_KEPT[to];
+        halfMoveClock = piece == us + PAWN || capture ? 0 : halfMoveClock + 1;
+        if (!whiteToMove) {
+            fullMoveNumber++;
+        }
+        whiteToMove = !whiteToMove;
+    }
+
+    /**
+     * Count the leaf nodes of the legal move tree down to a depth, to check move generation
+     * against known counts.
+     */
+    public long perft(int depth) {
+        if (depth <= 0) {
+            return 1;
+        }
+        BitboardPosition[] stack = new BitboardPosition[depth];
+        stack[0] = this;
+        for (int i = 1; i < depth; i++) {
+            stack[i] = new BitboardPosition();
+        }
+        return perft(stack, new int[depth][MAX_MOVES], 0, depth);
+    }
+
+    private static long perft(BitboardPosition[] stack, int[][] moves, int ply, int depth) {
+        int count = stack[ply].legalMoves(moves[ply]);
+        if (depth == 1) {
+            return count;
+        }
+        long nodes = 0;
+        BitboardPosition child = stack[ply + 1];
+        for (int i = 0; i < count; i++) {
+            child.copyFrom(stack[ply]);
+            child.play(moves[ply][i]);
+            nodes += perft(stack, moves, ply + 1, depth - 1);
+        }
+        return nodes;
+    }
+
+    private void clear() {
+        Arrays.fill(pieces, 0L);
+        Arrays.fill(board, NO_PIECE);
+        whiteOccupancy = 0L;
+        blackOccupancy = 0L;
+        whiteToMove = true;
+        castling = 0;
+        enPassant = -1;
+        halfMoveClock = 0;
+        fullMoveNumber = 1;
+    }
+
+    private void put(int piece, int square) {
+        long bit = 1L << square;
+        pieces[piece] |= bit;
+        board[square] = piece;
+        if (piece < BLACK) {
+            whiteOccupancy |= bit;
+        } else {
+            blackOccupancy |= bit;
+        }
+    }
+
+    private void remove(int square) {
+        long bit = 1L << square;
+        pieces[board[square]] &= ~bit;
+        board[square] = NO_PIECE;
+        whiteOccupancy &= ~bit;
+        blackOccupancy &= ~bit;
+    }
+
+    /**
+     * Squares a pawn of the side to move can go to: pushes, captures and en passant.
+     */
+    private long pawnTargets(int from) {
+        long occupied = whiteOccupancy | blackOccupancy;
+        long enemy = whiteToMove ? blackOccupancy : whiteOccupancy;
+        if (enPassant >= 0) {
+            enemy |= 1L << enPassant;
+        }
+        long targets = PAWN_ATTACKS[whiteToMove ? 0 : 1][from] & enemy;
+        int step = whiteToMove ? 8 : -8;
+        int single = from + step;
+        if ((occupied & 1L << single) == 0) {
+            targets |= 1L << single;
+            int startRank = whiteToMove ? 1 : 6;
+            if (from / 8 == startRank && (occupied & 1L << (single + step)) == 0) {
+                targets |= 1L << (single + step);
+            }
+        }
+        return targets;
+    }
+
+    private static long attacks(int type, int from, long occupied) {
+        return switch (type) {
+            case KNIGHT -> KNIGHT_ATTACKS[from];
+            case BISHOP -> bishopAttacks(from, occupied);
+            case ROOK -> rookAttacks(from, occupied);
+            case QUEEN -> bishopAttacks(from, occupied) | rookAttacks(from, occupied);
+            case KING -> KING_ATTACKS[from];
+            default -> 0L;
+        };
+    }
+
+    private static long rookAttacks(int square, long occupied) {
+        return ROOK_TABLES[square][(int) (((occupied & ROOK_MASKS[square]) * ROOK_MAGICS[square]) >>> ROOK_SHIFTS[square])];
+    }
+
+    private static long bishopAttacks(int square, long occupied) {
+        return BISHOP_TABLES[square][(int) (((occupied & BISHOP_MASKS[square]) * BISHOP_MAGICS[square]) >>> BISHOP_SHIFTS[square])];
+    }
+
+    /**
+     * Whether a square is attacked by the side not to move, with the given occupancy and only
+     * counting the opponent pieces inside a mask (to leave out a piece about to be taken).
+     */
+    private boolean isAttacked(int square, long occupied, long mask) {
+        int them = whiteToMove ? BLACK : 0;
+        long rooks = pieces[them + ROOK] | pieces[them + QUEEN];
+        long bishops = pieces[them + BISHOP] | pieces[them + QUEEN];
+        long attackers = (PAWN_ATTACKS[whiteToMove ? 0 : 1][square] & pieces[them + PAWN])
+                       | (KNIGHT_ATTACKS[square] & pieces[them + KNIGHT])
+                       | (KING_ATTACKS[square] & pieces[them + KING])
+                       | (rookAttacks(square, occupied) & rooks)
+                       | (bishopAttacks(square, occupied) & bishops);
+        return (attackers & mask) != 0;
+    }
+
+    /**
+     * Whether the king of the side to move is safe once a piece went from a square to another,
+     * computed on the changed occupancy without playing the move.
+     */
+    private boolean leavesKingSafe(int from, int to) {
+        int us = whiteToMove ? 0 : BLACK;
+        int piece = board[from];
+        long taken = 1L << to;
+        long occupied = (whiteOccupancy | blackOccupancy) & ~(1L << from) | taken;
+        if (piece == us + PAWN && to == enPassant) {
+            taken = 1L << (whiteToMove ? to - 8 : to + 8);
+            occupied &= ~taken;
+        }
+        int king = piece == us + KING ? to : Long.numberOfTrailingZeros(pieces[us + KING]);
+        return !isAttacked(king, occupied, ~taken);
+    }
+
+    private boolean canCastle(int from, int to) {
+        boolean kingSide = to > from;
+        int right = whiteToMove
+            ? (kingSide ? WHITE_KING_SIDE : WHITE_QUEEN_SIDE)
+            : (kingSide ? BLACK_KING_SIDE : BLACK_QUEEN_SIDE);
+        int us = whiteToMove ? 0 : BLACK;
+        if ((castling & right) == 0 || board[kingSide ? from + 3 : from - 4] != us + ROOK) {
+            return false;
+        }
+        long occupied = whiteOccupancy | blackOccupancy;
+        long between = kingSide ? 3L << (from + 1) : 7L << (from - 3);
+        if ((occupied & between) != 0) {
+            return false;
+        }
+        int passed = kingSide ? from + 1 : from - 1;
+        return !isAttacked(from, occupied, -1L) && !isAttacked(passed, occupied, -1L) && leavesKingSafe(from, to);
+    }
+
+    private static int square(char file, char rank) {
+        int f = Character.toLowerCase(file) - 'a';
+        int r = rank - '1';
+        return f >= 0 && f < 8 && r >= 0 && r < 8 ? r * 8 + f : -1;
+    }
+
+    private static int digit(String fen, int i) {
+        char c = fen.charAt(i);
+        if (c < '0' || c > '9') {
+            throw new IllegalArgumentException("Invalid FEN move counter: " + fen);
+        }
+        return c - '0';
+    }
+
+    private static int pieceIndex(char c) {
+        for (int piece = 0; piece < FEN_PIECES.length; piece++) {
+            if (FEN_PIECES[piece] == c) {
+                return piece;
+            }
+        }
+        return NO_PIECE;
+    }
+
+    private static long leaperAttacks(int square, int[][] steps) {
+        long attacks = 0L;
+        for (int[] step : steps) {
+            int file = square % 8 + step[0];
+            int rank = square / 8 + step[1];
+            if (file >= 0 && file < 8 && rank >= 0 && rank < 8) {
+                attacks |= 1L << (rank * 8 + file);
+            }
+        }
+        return attacks;
+    }
+
+    /**
+     * Squares whose occupancy changes the attacks of a slider: its rays without the board edge.
+     */
+    private static long relevantOccupancy(int square, int[][] directions) {
+        long mask = 0L;
+        for (int[] direction : directions) {
+            int file = square % 8 + direction[0];
+            int rank = square / 8 + direction[1];
+            while (file + direction[0] >= 0 && file + direction[0] < 8
+                    && rank + direction[1] >= 0 && rank + direction[1] < 8) {
+                mask |= 1L << (rank * 8 + file);
+                file += direction[0];
+                rank += direction[1];
+            }
+        }
+        return mask;
+    }
+
+    private static long slidingAttacks(int square, long occupied, int[][] directions) {
+        long attacks = 0L;
+        for (int[] direction : directions) {
+            int file = square % 8 + direction[0];
+            int rank = square / 8 + direction[1];
+            while (file >= 0 && file < 8 && rank >= 0 && rank < 8) {
+                long bit = 1L << (rank * 8 + file);
+                attacks |= bit;
+                if ((occupied & bit) != 0) {
+                    break;
+                }
+                file += direction[0];
+                rank += direction[1];
+            }
+        }
+        return attacks;
+    }
+
+    /**
+     * Look for a multiplier mapping every occupancy of the mask to a table slot without
+     * collisions between different attack sets, and fill the table.
+     */
+    private static void findMagic(int square, long mask, int[][] directions, SplittableRandom random,
+                                  long[] magics, int[] shifts, long[][] tables) {
+        int bits = Long.bitCount(mask);
+        int size = 1 << bits;
+        long[] occupancies = new long[size];
+        long[] attacks = new long[size];
+        long subset = 0L;
+        for (int i = 0; i < size; i++) {
+            occupancies[i] = subset;
+            attacks[i] = slidingAttacks(square, subset, directions);
+            subset = (subset - mask) & mask;
+        }
+
+        long[] table = new long[size];
+        int[] filledBy = new int[size];
+        for (int attempt = 1; ; attempt++) {
+            long magic = random.nextLong() & random.nextLong() & random.nextLong();
+            if (Long.bitCount((mask * magic) & 0xFF00000000000000L) < 6) {
+                continue;
+            }
+            boolean collision = false;
+            for (int i = 0; i < size && !collision; i++) {
+                int index = (int) ((occupancies[i] * magic) >>> (64 - bits));
+                if (filledBy[index] != attempt) {
+                    filledBy[index] = attempt;
+                    table[index] = attacks[i];
+                } else if (table[index] != attacks[i]) {
+                    collision = true;
+                }
+            }
+            if (!collision) {
+                magics[square] = magic;
+                shifts[square] = 64 - bits;
+                tables[square] = table;
+                return;
+            }
+        }
+    }
+}
@@ -6,6 +6,9 @@ public class Constants {
     public static final int USER_GAMES_IN_TOURNAMENT = 10;
     public static final int TOURNAMENT_MAX_PARTICIPANTS = 20;
     public static final String TOURNAMENT_TIME_CONTROL = "10+0";
+    public static final String BULLET_TIME_CONTROL = "1+0";
+    public static final String BLITZ_TIME_CONTROL = "3+2";
+    public static final String RAPID_TIME_CONTROL = "10+0";
     public static final int ELO_CHANGE = 20;
     public static final String DEFAULT_PLACEHOLDER_DATE = "3033-04-08 00:00:00";
 }
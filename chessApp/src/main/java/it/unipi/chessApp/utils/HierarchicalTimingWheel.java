@@ -0,0 +1,124 @@
+package it.unipi.chessApp.utils;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Hierarchical timing wheel: a few levels of fixed-size wheels of buckets, each level
+ * covering {@code wheelSize} times the span of the one below.
+ * Adding a deadline is O(1) whatever its distance, and advancing the clock only visits
+ * the buckets of the elapsed ticks; far deadlines sit in upper levels and cascade down
+ * when their bucket comes up. A single thread advancing the wheel can therefore track
+ * a very large number of timers.
+ * <p>
+ * Deadlines fire at tick granularity, never before they are due. The wheel is thread-safe.
+ */
+public final class HierarchicalTimingWheel<T> {
+
+    private final long tickMs;
+    private final int bits;
+    private final int mask;
+    private final ArrayDeque<Timer<T>>[][] buckets;
+    private long currentTick;
+    private int size;
+
+    /**
+     * @param tickMs Resolution of the wheel
+     * @param wheelSize Buckets per level, a power of two
+     * @param levels Number of levels; the wheel spans tickMs * wheelSize^levels
+     * @param startMs Current time
+     */
+    @SuppressWarnings("unchecked")
+    public HierarchicalTimingWheel(long tickMs, int wheelSize, int levels, long startMs) {
+        if (tickMs <= 0 || wheelSize < 2 || Integer.bitCount(wheelSize) != 1 || levels < 1) {
+            throw new IllegalArgumentException("Invalid timing wheel layout");
+        }
+        this.tickMs = tickMs;
+        this.bits = Integer.numberOfTrailingZeros(wheelSize);
+        this.mask = wheelSize - 1;
+        this.buckets = new ArrayDeque[levels][wheelSize];
+        this.currentTick = startMs / tickMs;
+    }
+
+    /**
+     * Schedule an item. Deadlines beyond the span of the wheel are kept in the last level
+     * and rescheduled when it comes up; deadlines already due fire on the next advance.
+     */
+    public synchronized void schedule(T item, long deadlineMs) {
+        place(new Timer<>(item, deadlineMs, Math.max(ceilTick(deadlineMs), currentTick + 1)));
+        size++;
+    }
+
+    /**
+     * Move the wheel forward to the given time.
+     * @return The items whose deadline has passed, in deadline order within a tick
+     */
+    public List<T> advance(long nowMs) {
+        List<T> expired = new ArrayList<>();
+        synchronized (this) {
+            long target = nowMs / tickMs;
+            while (currentTick < target) {
+                currentTick++;
+                // Cascade from the top, so entries land in lower levels before level 0 is read
+                for (int level = buckets.length - 1; level > 0; level--) {
+                    if ((currentTick & ((1L << (bits * level)) - 1)) == 0) {
+                        cascade(level);
+                    }
+                }
+                ArrayDeque<Timer<T>> due = buckets[0][(int) (currentTick & mask)];
+                if (due != null) {
+                    while (!due.isEmpty()) {
+                        expired.add(due.poll().item);
+                    }
+                }
+            }
+            size -= expired.size();
+        }
+        return expired;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    private void cascade(int level) {
+        int slot = (int) ((currentTick >>> (bits * level)) & mask);
+        ArrayDeque<Timer<T>> bucket = buckets[level][slot];
+        if (bucket == null || bucket.isEmpty()) {
+            return;
+        }
+        buckets[level][slot] = null;
+        for (Timer<T> timer : bucket) {
+            place(timer);
+        }
+    }
+
+    private void place(Timer<T> timer) {
+        // Due at the current tick (cascaded from above): read by level 0 right after the cascade
+        long delta = Math.max(timer.tick - currentTick, 0);
+        int level = 0;
+        while (level < buckets.length - 1 && delta >= (1L << (bits * (level + 1)))) {
+            level++;
+        }
+        long tick = timer.tick;
+        if (level == buckets.length - 1 && delta >= (1L << (bits * buckets.length))) {
+            // Beyond the span: park it one lap ahead, it comes back here when that bucket cascades
+            tick = currentTick + (1L << (bits * buckets.length)) - 1;
+        }
+        int slot = (int) ((tick >>> (bits * level)) & mask);
+        ArrayDeque<Timer<T>> bucket = buckets[level][slot];
+        if (bucket == null) {
+            bucket = new ArrayDeque<>();
+            buckets[level][slot] = bucket;
+        }
+        bucket.add(timer);
+    }
+
+    private long ceilTick(long deadlineMs) {
+        return (deadlineMs + tickMs - 1) / tickMs;
+    }
+
+    private record Timer<T>(T item, long deadlineMs, long tick) {
+    }
+}
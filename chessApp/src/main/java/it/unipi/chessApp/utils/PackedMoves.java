@@ -0,0 +1,263 @@
+package it.unipi.chessApp.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Codecs of move histories packed as 16-bit moves (see {@link BitboardPosition}): 2 bytes per
+ * move, big-endian, in the order they were played. A 60-move game takes 240 bytes, and a move
+ * is appended without touching the ones before it.
+ * <p>
+ * Moves convert to and from UCI on their own. SAN depends on the position, so SAN is written
+ * by replaying the history from its start position, and read against a position.
+ */
+public final class PackedMoves {
+
+    public static final byte[] EMPTY = new byte[0];
+
+    private static final char[] PIECE_LETTERS = {'P', 'N', 'B', 'R', 'Q', 'K'};
+    private static final long FILE_A = 0x0101010101010101L;
+    private static final long RANK_1 = 0xFFL;
+
+    private PackedMoves() {
+    }
+
+    public static int count(byte[] moves) {
+        return moves != null ? moves.length / 2 : 0;
+    }
+
+    /**
+     * @param index Index of the move, counted from 0
+     */
+    public static int get(byte[] moves, int index) {
+        return (moves[2 * index] & 0xFF) << 8 | (moves[2 * index + 1] & 0xFF);
+    }
+
+    /**
+     * Write a move in place, e.g. to fill an array sized for a known number of moves.
+     * @param index Index of the move, counted from 0
+     */
+    public static void set(byte[] moves, int index, int move) {
+        moves[2 * index] = (byte) (move >>> 8);
+        moves[2 * index + 1] = (byte) move;
+    }
+
+    public static byte[] append(byte[] moves, int move) {
+        int length = moves != null ? moves.length : 0;
+        byte[] appended = new byte[length + 2];
+        if (length > 0) {
+            System.arraycopy(moves, 0, appended, 0, length);
+        }
+        appended[length] = (byte) (move >>> 8);
+        appended[length + 1] = (byte) move;
+        return appended;
+    }
+
+    public static String toUci(int move) {
+        int from = BitboardPosition.from(move);
+        int to = BitboardPosition.to(move);
+        int promotion = BitboardPosition.promotionType(move);
+        StringBuilder uci = new StringBuilder(5)
+            .append(file(from)).append(rank(from))
+            .append(file(to)).append(rank(to));
+        if (promotion >= 0) {
+            uci.append(Character.toLowerCase(PIECE_LETTERS[promotion]));
+        }
+        return uci.toString();
+    }
+
+    public static List<String> toUci(byte[] moves) {
+        List<String> uci = new ArrayList<>(count(moves));
+        for (int i = 0; i < count(moves); i++) {
+            uci.add(toUci(get(moves, i)));
+        }
+        return uci;
+    }
+
+    /**
+     * @throws IllegalArgumentException if a move is not in UCI notation
+     */
+    public static byte[] fromUci(List<String> moves) {
+        if (moves == null || moves.isEmpty()) {
+            return EMPTY;
+        }
+        byte[] packed = new byte[moves.size() * 2];
+        for (int i = 0; i < moves.size(); i++) {
+            int move = BitboardPosition.parseMove(moves.get(i));
+            if (move == BitboardPosition.NO_MOVE) {
+                throw new IllegalArgumentException("Invalid UCI move: " + moves.get(i));
+            }
+            set(packed, i, move);
+        }
+        return packed;
+    }
+
+    /**
+     * SAN of a legal move, without the check or mate suffix, which depends on the position
+     * the move leads to. The position is not changed.
+     */
+    public static String toSan(BitboardPosition position, int move) {
+        StringBuilder san = new StringBuilder(8);
+        appendSan(san, position, move);
+        return san.toString();
+    }
+
+    /**
+     * @return "#" if the side to move is mated, "+" if it is in check, else ""
+     */
+    public static String checkSuffix(boolean check, boolean mate) {
+        return mate ? "#" : check ? "+" : "";
+    }
+
+    /**
+     * Replay a history from a position and write it in SAN, e.g. "e4 e5 Nf3".
+     * @throws IllegalArgumentException if a move is illegal where it was played
+     */
+    public static String toSan(byte[] moves, String startFen) {
+        return replay(moves, startFen, false);
+    }
+
+    /**
+     * Same as {@link #toSan(byte[], String)} with move numbers, e.g. "1. e4 e5 2. Nf3".
+     */
+    public static String toPgn(byte[] moves, String startFen) {
+        return replay(moves, startFen, true);
+    }
+
+    /**
+     * Read a move in SAN (move number prefixes, check marks, annotations and a missing "="
+     * before the promotion piece are accepted) in a position.
+     * @return The move, or {@link BitboardPosition#NO_MOVE} if no legal move matches it
+     */
+    public static int fromSan(BitboardPosition position, String san) {
+        String normalized = normalizeSan(san);
+        int[] moves = new int[BitboardPosition.MAX_MOVES];
+        int count = position.legalMoves(moves);
+        for (int i = 0; i < count; i++) {
+            if (toSan(position, moves[i]).equals(normalized)) {
+                return moves[i];
+            }
+        }
+        // Sloppy but unambiguous SAN, e.g. a missing "x" or a needless disambiguation
+        int match = BitboardPosition.NO_MOVE;
+        for (int i = 0; i < count; i++) {
+            if (matchesLoosely(position, moves[i], normalized)) {
+                if (match != BitboardPosition.NO_MOVE) {
+                    return BitboardPosition.NO_MOVE;
+                }
+                match = moves[i];
+            }
+        }
+        return match;
+    }
+
+    private static String replay(byte[] moves, String startFen, boolean numbered) {
+        BitboardPosition position = BitboardPosition.fromFen(startFen);
+        StringBuilder text = new StringBuilder(count(moves) * 6);
+        for (int i = 0; i < count(moves); i++) {
+            int move = get(moves, i);
+            if (!position.isLegal(move)) {
+                throw new IllegalArgumentException("Illegal move " + toUci(move) + " at ply " + (i + 1));
+            }
+            if (i > 0) {
+                text.append(' ');
+            }
+            if (numbered && (position.isWhiteToMove() || i == 0)) {
+                text.append(position.getFullMoveNumber()).append(position.isWhiteToMove() ? ". " : "... ");
+            }
+            appendSan(text, position, move);
+            position.play(move);
+            if (position.inCheck()) {
+                text.append(position.hasLegalMove() ? '+' : '#');
+            }
+        }
+        return text.toString();
+    }
+
+    private static void appendSan(StringBuilder san, BitboardPosition position, int move) {
+        int from = BitboardPosition.from(move);
+        int to = BitboardPosition.to(move);
+        int piece = position.pieceAt(from);
+        int type = piece % BitboardPosition.BLACK;
+
+        if (type == BitboardPosition.KING && Math.abs(to - from) == 2) {
+            san.append(to > from ? "O-O" : "O-O-O");
+            return;
+        }
+        if (type == BitboardPosition.PAWN) {
+            // A pawn changing file captures, en passant included
+            if (from % 8 != to % 8) {
+                san.append(file(from)).append('x');
+            }
+        } else {
+            san.append(PIECE_LETTERS[type]);
+            long others = position.legalOrigins(piece, to) & ~(1L << from);
+            if (others != 0) {
+                if ((others & FILE_A << (from % 8)) == 0) {
+                    san.append(file(from));
+                } else if ((others & RANK_1 << (from / 8 * 8)) == 0) {
+                    san.append(rank(from));
+                } else {
+                    san.append(file(from)).append(rank(from));
+                }
+            }
+            if (position.pieceAt(to) != BitboardPosition.NO_PIECE) {
+                san.append('x');
+            }
+        }
+        san.append(file(to)).append(rank(to));
+        int promotion = BitboardPosition.promotionType(move);
+        if (promotion >= 0) {
+            san.append('=').append(PIECE_LETTERS[promotion]);
+        }
+    }
+
+    private static boolean matchesLoosely(BitboardPosition position, int move, String san) {
+        String token = san.replace("x", "");
+        int promotionAt = token.indexOf('=');
+        int promotion = promotionAt >= 0 && promotionAt + 1 < token.length()
+            ? "PNBRQK".indexOf(token.charAt(promotionAt + 1)) : -1;
+        String body = promotionAt >= 0 ? token.substring(0, promotionAt) : token;
+        if (body.length() < 2 || promotion != BitboardPosition.promotionType(move)) {
+            return false;
+        }
+
+        int from = BitboardPosition.from(move);
+        int to = BitboardPosition.to(move);
+        int type = "NBRQK".indexOf(body.charAt(0)) + 1;
+        int destination = (body.charAt(body.length() - 1) - '1') * 8 + (body.charAt(body.length() - 2) - 'a');
+        if (position.pieceAt(from) % BitboardPosition.BLACK != type || destination != to) {
+            return false;
+        }
+        for (int i = type > 0 ? 1 : 0; i < body.length() - 2; i++) {
+            char c = body.charAt(i);
+            if (c != file(from) && c != rank(from)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String normalizeSan(String san) {
+        // A move number glued to the move, as in "1.e4" or "1...e5"
+        san = san.substring(san.lastIndexOf('.') + 1);
+        int end = san.length();
+        while (end > 0 && "+#!?".indexOf(san.charAt(end - 1)) >= 0) {
+            end--;
+        }
+        String move = san.substring(0, end).replace('0', 'O');
+        int last = move.length() - 1;
+        if (last > 0 && "NBRQ".indexOf(move.charAt(last)) >= 0 && Character.isDigit(move.charAt(last - 1))) {
+            move = move.substring(0, last) + '=' + move.charAt(last);
+        }
+        return move;
+    }
+
+    private static char file(int square) {
+        return (char) ('a' + square % 8);
+    }
+
+    private static char rank(int square) {
+        return (char) ('1' + square / 8);
+    }
+}
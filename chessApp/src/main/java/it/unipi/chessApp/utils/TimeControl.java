@@ -0,0 +1,40 @@
+package it.unipi.chessApp.utils;
+
+/**
+ * A time control in the usual "minutes+increment seconds" notation, e.g. "3+2".
+ */
+public record TimeControl(long baseMs, long incrementMs) {
+
+    public static TimeControl parse(String notation) {
+        String[] parts = notation.trim().split("\\+");
+        try {
+            long base = Math.round(Double.parseDouble(parts[0]) * 60_000);
+            long increment = parts.length > 1 ? Math.round(Double.parseDouble(parts[1]) * 1000) : 0L;
+            if (base <= 0 || increment < 0) {
+                throw new IllegalArgumentException("Invalid time control: " + notation);
+            }
+            return new TimeControl(base, increment);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid time control: " + notation, e);
+        }
+    }
+
+    /**
+     * @return The time control of a regular game type, or null for an unknown type
+     */
+    public static TimeControl forGameType(String gameType) {
+        if (gameType == null) {
+            return null;
+        }
+        return switch (gameType) {
+            case "bullet" -> parse(Constants.BULLET_TIME_CONTROL);
+            case "blitz" -> parse(Constants.BLITZ_TIME_CONTROL);
+            case "rapid" -> parse(Constants.RAPID_TIME_CONTROL);
+            default -> null;
+        };
+    }
+
+    public static TimeControl forTournament() {
+        return parse(Constants.TOURNAMENT_TIME_CONTROL);
+    }
+}
@@ -0,0 +1,184 @@
+package it.unipi.chessApp.utils;
+
+import java.util.SplittableRandom;
+
+/**
+ * 64-bit Zobrist keys of chess positions.
+ * The tables come from a fixed seed, so keys are stable across restarts and instances
+ * and can be stored (e.g. in Redis) and compared later.
+ * <p>
+ * The full {@link #positionKey position key} covers everything that makes two positions
+ * the same under the repetition rule: placement, side to move, castling rights and an
+ * en passant capture that can actually be played. It splits into the
+ * {@link #placementKey placement key} used by the opening book and a {@link #rightsKey rights key},
+ * and can be updated move by move with {@link #moveDelta}.
+ * <p>
+ * Keys are computed from a {@link BitboardPosition}, whose piece numbering follows the table order.
+ */
+public final class Zobrist {
+
+    private static final long SEED = 0x5DEECE66DL;
+    /** White then black pawn, knight, bishop, rook, queen and king, as in {@link BitboardPosition} */
+    private static final int PIECE_TYPES = 12;
+
+    private static final long[] PIECE_SQUARE = new long[PIECE_TYPES * 64];
+    private static final long BLACK_TO_MOVE;
+    /** White king side, white queen side, black king side, black queen side */
+    private static final long[] CASTLING = new long[4];
+    private static final long[] EN_PASSANT_FILE = new long[8];
+
+    static {
+        SplittableRandom random = new SplittableRandom(SEED);
+        for (int i = 0; i < PIECE_SQUARE.length; i++) {
+            PIECE_SQUARE[i] = random.nextLong();
+        }
+        BLACK_TO_MOVE = random.nextLong();
+        for (int i = 0; i < CASTLING.length; i++) {
+            CASTLING[i] = random.nextLong();
+        }
+        for (int i = 0; i < EN_PASSANT_FILE.length; i++) {
+            EN_PASSANT_FILE[i] = random.nextLong();
+        }
+    }
+
+    private Zobrist() {
+    }
+
+    /**
+     * Key of the piece placement and side to move, the two fields the opening book is keyed by.
+     */
+    public static long placementKey(BitboardPosition position) {
+        long key = 0L;
+        for (int piece = 0; piece < PIECE_TYPES; piece++) {
+            long bitboard = position.getPieces(piece);
+            while (bitboard != 0) {
+                key ^= PIECE_SQUARE[piece * 64 + Long.numberOfTrailingZeros(bitboard)];
+                bitboard &= bitboard - 1;
+            }
+        }
+        if (!position.isWhiteToMove()) {
+            key ^= BLACK_TO_MOVE;
+        }
+        return key;
+    }
+
+    /**
+     * Full key of a position, computed from scratch.
+     */
+    public static long positionKey(BitboardPosition position) {
+        return placementKey(position) ^ rightsKey(position);
+    }
+
+    /**
+     * Key of the castling rights and of the en passant capture available in a position.
+     * XORing it out of a {@link #positionKey position key} gives the {@link #placementKey placement key}.
+     */
+    public static long rightsKey(BitboardPosition position) {
+        long key = 0L;
+        int rights = position.getCastlingRights();
+        for (int i = 0; i < CASTLING.length; i++) {
+            if ((rights & 1 << i) != 0) {
+                key ^= CASTLING[i];
+            }
+        }
+        if (position.canCaptureEnPassant()) {
+            key ^= EN_PASSANT_FILE[position.getEnPassantSquare() % 8];
+        }
+        return key;
+    }
+
+    /**
+     * Change a move makes to the position key. Must be called before the move is played;
+     * the key after the move is {@code key ^ moveDelta(position, move) ^ rightsKey(position)}
+     * once the move has been played on the same position.
+     */
+    public static long moveDelta(BitboardPosition position, int move) {
+        int from = BitboardPosition.from(move);
+        int to = BitboardPosition.to(move);
+        int piece = position.pieceAt(from);
+        int captured = position.pieceAt(to);
+        int side = piece < BitboardPosition.BLACK ? 0 : BitboardPosition.BLACK;
+        int promotion = BitboardPosition.promotionType(move);
+
+        long delta = BLACK_TO_MOVE ^ rightsKey(position);
+        delta ^= PIECE_SQUARE[piece * 64 + from];
+        delta ^= PIECE_SQUARE[(promotion >= 0 ? side + promotion : piece) * 64 + to];
+        if (captured != BitboardPosition.NO_PIECE) {
+            delta ^= PIECE_SQUARE[captured * 64 + to];
+        }
+
+        if (piece == side + BitboardPosition.PAWN && from % 8 != to % 8 && captured == BitboardPosition.NO_PIECE) {
+            // En passant: the captured pawn stands next to the moving one
+            int capturedSquare = (from / 8) * 8 + to % 8;
+            delta ^= PIECE_SQUARE[position.pieceAt(capturedSquare) * 64 + capturedSquare];
+        } else if (piece == side + BitboardPosition.KING && Math.abs(from % 8 - to % 8) == 2) {
+            // Castling: the rook jumps over the king
+            int rank = from / 8;
+            int rook = side + BitboardPosition.ROOK;
+            delta ^= PIECE_SQUARE[rook * 64 + rank * 8 + (to > from ? 7 : 0)]
+                   ^ PIECE_SQUARE[rook * 64 + rank * 8 + (to > from ? 5 : 3)];
+        }
+        return delta;
+    }
+
+    /**
+     * Placement key of a position whose full key is known, without scanning the board.
+     */
+    public static long placementKey(long positionKey, BitboardPosition position) {
+        return positionKey ^ rightsKey(position);
+    }
+
+    /**
+     * Same key as {@link #placementKey(BitboardPosition)}, computed straight from the first two FEN fields.
+     * @return The key, or 0 if the FEN is malformed
+     */
+    public static long placementKey(String fen) {
+        long key = 0L;
+        int rank = 7;
+        int file = 0;
+        int i = 0;
+        for (; i < fen.length(); i++) {
+            char c = fen.charAt(i);
+            if (c == ' ') {
+                break;
+            } else if (c == '/') {
+                rank--;
+                file = 0;
+            } else if (c >= '1' && c <= '8') {
+                file += c - '0';
+            } else {
+                int type = pieceType(c);
+                if (type < 0 || rank < 0 || file > 7) {
+                    return 0L;
+                }
+                key ^= PIECE_SQUARE[type * 64 + rank * 8 + file];
+                file++;
+            }
+        }
+        if (i + 1 < fen.length() && fen.charAt(i + 1) == 'b') {
+            key ^= BLACK_TO_MOVE;
+        }
+        return key;
+    }
+
+    /**
+     * Table index of a FEN piece letter.
+     */
+    private static int pieceType(char c) {
+        return switch (c) {
+            case 'P' -> 0;
+            case 'N' -> 1;
+            case 'B' -> 2;
+            case 'R' -> 3;
+            case 'Q' -> 4;
+            case 'K' -> 5;
+            case 'p' -> 6;
+            case 'n' -> 7;
+            case 'b' -> 8;
+            case 'r' -> 9;
+            case 'q' -> 10;
+            case 'k' -> 11;
+            default -> -1;
+        };
+    }
+}
@@ -0,0 +1,18 @@
+-- Acquire or renew a lease-based lock.
+--
+-- KEYS[1] lock key
+-- ARGV[1] owner token
+-- ARGV[2] lease, in milliseconds
+--
+-- Returns 1 if the caller holds the lock, 0 otherwise.
+
+local owner = redis.call('GET', KEYS[1])
+if owner == ARGV[1] then
+    redis.call('PEXPIRE', KEYS[1], ARGV[2])
+    return 1
+end
+if not owner then
+    redis.call('SET', KEYS[1], ARGV[1], 'PX', ARGV[2])
+    return 1
+end
+return 0
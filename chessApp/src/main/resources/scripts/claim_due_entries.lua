@@ -0,0 +1,23 @@
+-- Claim due entries of a sorted set of game ids: an entry is removed, and claimed by the
+-- caller, only if its score is still the one the caller read and is not after the cutoff.
+-- A game that moved since the read has a new score, so a stale claim fails.
+--
+-- KEYS[1] sorted set of game ids (clock deadlines, or last move times of active games)
+--
+-- ARGV[1] cutoff score
+-- ARGV[2..] pairs of game id and expected score
+--
+-- Returns one flag per game: 1 if the caller now owns it, 0 otherwise.
+
+local cutoff = tonumber(ARGV[1])
+local claimed = {}
+for i = 2, #ARGV, 2 do
+    local score = redis.call('ZSCORE', KEYS[1], ARGV[i])
+    if score and tonumber(score) == tonumber(ARGV[i + 1]) and tonumber(score) <= cutoff then
+        redis.call('ZREM', KEYS[1], ARGV[i])
+        claimed[#claimed + 1] = 1
+    else
+        claimed[#claimed + 1] = 0
+    end
+end
+return claimed
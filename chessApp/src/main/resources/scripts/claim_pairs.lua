@@ -0,0 +1,28 @@
+-- Take the pairs chosen by the rating matcher out of a matchmaking pool.
+-- A pair is only taken if both players are still waiting, so leaving the pool always wins
+-- the race. Both keys are in the slot of the pool (hash tag {<game type>}); the games and
+-- the player pointers are in other slots and written by the caller for the pairs taken.
+--
+-- KEYS[1] matchmaking pool (sorted set scored by rating)
+-- KEYS[2] pool join times (hash)
+--
+-- ARGV pairs of players
+--
+-- Returns one flag per pair: 1 if the pair was taken, 0 if it was skipped.
+
+local pool = KEYS[1]
+local joined = KEYS[2]
+
+local taken = {}
+for i = 1, #ARGV, 2 do
+    local first, second = ARGV[i], ARGV[i + 1]
+    if redis.call('ZSCORE', pool, first) and redis.call('ZSCORE', pool, second) then
+        redis.call('ZREM', pool, first, second)
+        redis.call('HDEL', joined, first, second)
+        taken[#taken + 1] = 1
+    else
+        taken[#taken + 1] = 0
+    end
+end
+
+return taken
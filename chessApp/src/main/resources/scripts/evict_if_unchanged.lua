@@ -0,0 +1,17 @@
+-- Evict a live game from Redis once it has been copied elsewhere, unless it changed meanwhile.
+--
+-- KEYS[1] game state hash
+-- KEYS[2] move list
+-- KEYS[3] SAN of the moves
+-- KEYS[4] event log, restarted when the game is restored
+--
+-- ARGV[1] version of the copy
+--
+-- Returns 1 if the game was evicted, 0 if it changed (the copy is stale and must be dropped).
+
+local version = redis.call('HGET', KEYS[1], 'version') or '0'
+if version ~= ARGV[1] then
+    return 0
+end
+redis.call('DEL', KEYS[1], KEYS[2], KEYS[3], KEYS[4])
+return 1
@@ -0,0 +1,76 @@
+-- Atomically pair a player with the first opponent waiting in a tournament queue, and count
+-- the game for both players and in the games of the tournament. Every key is in the slot of
+-- the tournament (hash tag {<tournament id>}).
+-- In master-replica mode every key is on the same node and the game is created in the same
+-- step: its hash, the snapshot starting its event log, both player pointers and the global
+-- indexes. In cluster mode they are in other slots and written by the caller once the pair is
+-- made (see unpair_players.lua if that fails).
+--
+-- KEYS[1] matchmaking queue of the tournament (list)
+-- KEYS[2] tournament game counter of the joining player
+-- KEYS[3] games in progress of the tournament
+-- Master-replica mode only:
+-- KEYS[4] game state hash
+-- KEYS[5] game event log (stream)
+-- KEYS[6] game pointer of the joining player
+-- KEYS[7] games in progress, by last move time
+-- KEYS[8] flag-fall deadlines of the timed games
+--
+-- ARGV[1] joining player
+-- ARGV[2] game id
+-- ARGV[3] expiration of the games in progress, in seconds
+-- ARGV[4] tournament game counter prefix: the counter of the opponent is <prefix><opponent>:games,
+--         in the slot of the tournament too
+-- ARGV[5] creation time of the game
+-- Master-replica mode only:
+-- ARGV[6] game pointer prefix: the pointer of the opponent is <prefix>{<opponent>} (see RedisKeys)
+-- ARGV[7] approximate maximum length of the event log
+-- ARGV[8] flag-fall deadline of the game, or '' for an untimed game
+-- ARGV[9..] field/value pairs of the game, without the white player (the opponent)
+--
+-- Returns the opponent when paired, nil when the player was queued.
+
+local queue = KEYS[1]
+local username = ARGV[1]
+
+-- A player must never be paired with itself nor sit in the queue twice
+redis.call('LREM', queue, 0, username)
+
+local opponent = redis.call('LPOP', queue)
+if not opponent then
+    redis.call('RPUSH', queue, username)
+    return nil
+end
+
+local ttl = tonumber(ARGV[3])
+redis.call('INCR', ARGV[4] .. opponent .. ':games')
+redis.call('INCR', KEYS[2])
+-- Refreshed by every new game: entries of games that expired without ending go with it
+redis.call('ZADD', KEYS[3], ARGV[5], ARGV[2])
+redis.call('EXPIRE', KEYS[3], ttl)
+
+if #KEYS > 3 then
+    -- The popped opponent waited first and plays white
+    redis.call('HSET', KEYS[4], 'whitePlayer', opponent, unpack(ARGV, 9))
+    redis.call('EXPIRE', KEYS[4], ttl)
+
+    local snapshot = redis.call('HGETALL', KEYS[4])
+    snapshot[#snapshot + 1] = '_snapshot'
+    snapshot[#snapshot + 1] = '1'
+    snapshot[#snapshot + 1] = '_moves'
+    snapshot[#snapshot + 1] = ''
+    snapshot[#snapshot + 1] = '_sanMoves'
+    snapshot[#snapshot + 1] = ''
+    local version = redis.call('HGET', KEYS[4], 'version') or '0'
+    redis.call('XADD', KEYS[5], 'MAXLEN', '~', ARGV[7], version .. '-1', unpack(snapshot))
+    redis.call('EXPIRE', KEYS[5], ttl)
+
+    redis.call('SET', ARGV[6] .. '{' .. opponent .. '}', ARGV[2], 'EX', ttl)
+    redis.call('SET', KEYS[6], ARGV[2], 'EX', ttl)
+    redis.call('ZADD', KEYS[7], ARGV[5], ARGV[2])
+    if ARGV[8] ~= '' then
+        redis.call('ZADD', KEYS[8], ARGV[8], ARGV[2])
+    end
+end
+
+return opponent
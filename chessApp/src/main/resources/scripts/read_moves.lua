@@ -0,0 +1,25 @@
+-- Read the moves of a live game, packed in 2 bytes each (see PackedMoves), as numbers.
+-- Replies carry numbers rather than the raw bytes, which the string serializer would mangle.
+--
+-- KEYS[1] moves
+--
+-- ARGV[1] index of the first move, counted from 0
+-- ARGV[2] index of the last move, or -1 for the last one
+--
+-- Games started before packed moves keep a list of UCI moves: they are returned as they are,
+-- and packed by their next write.
+
+if redis.call('TYPE', KEYS[1]).ok == 'list' then
+    return redis.call('LRANGE', KEYS[1], ARGV[1], ARGV[2])
+end
+
+local first = tonumber(ARGV[1]) * 2
+local last = tonumber(ARGV[2])
+last = last < 0 and -1 or last * 2 + 1
+local packed = redis.call('GETRANGE', KEYS[1], first, last)
+
+local moves = {}
+for i = 1, #packed - 1, 2 do
+    moves[#moves + 1] = struct.unpack('>H', packed, i)
+end
+return moves
@@ -0,0 +1,49 @@
+-- Restore a spilled live game into Redis, unless it is already there.
+-- The keys are those of one game, in its slot; the caller marks the game active.
+--
+-- KEYS[1] game state hash
+-- KEYS[2] moves, packed in 2 bytes each (see PackedMoves)
+-- KEYS[3] SAN of the moves, space-separated
+-- KEYS[4] event log (stream), restarted from a snapshot of the restored game
+--
+-- ARGV[1] expiration of the game keys, in seconds
+-- ARGV[2] SAN of the moves, or '' if unknown
+-- ARGV[3] number n of moves
+-- ARGV[4..3+n] packed moves, as numbers
+-- ARGV[4+n..] field/value pairs of the game state
+-- (the last argument is the approximate maximum length of the event log)
+--
+-- Returns 1 if the game was restored, 0 if it was already in Redis.
+
+if redis.call('EXISTS', KEYS[1]) == 1 then
+    return 0
+end
+
+local ttl = tonumber(ARGV[1])
+local moves = tonumber(ARGV[3])
+local packed = {}
+if moves > 0 then
+    for i = 1, moves do
+        packed[i] = struct.pack('>H', tonumber(ARGV[3 + i]))
+    end
+    redis.call('SET', KEYS[2], table.concat(packed), 'EX', ttl)
+end
+if ARGV[2] ~= '' then
+    redis.call('SET', KEYS[3], ARGV[2], 'EX', ttl)
+end
+redis.call('HSET', KEYS[1], unpack(ARGV, 4 + moves, #ARGV - 1))
+redis.call('EXPIRE', KEYS[1], ttl)
+
+local snapshot = redis.call('HGETALL', KEYS[1])
+local hex = table.concat(packed):gsub('.', function(c) return string.format('%02x', c:byte()) end)
+snapshot[#snapshot + 1] = '_snapshot'
+snapshot[#snapshot + 1] = '1'
+snapshot[#snapshot + 1] = '_moves'
+snapshot[#snapshot + 1] = hex
+snapshot[#snapshot + 1] = '_sanMoves'
+snapshot[#snapshot + 1] = ARGV[2]
+local version = redis.call('HGET', KEYS[1], 'version') or '0'
+redis.call('DEL', KEYS[4])
+redis.call('XADD', KEYS[4], 'MAXLEN', '~', ARGV[#ARGV], version .. '-1', unpack(snapshot))
+redis.call('EXPIRE', KEYS[4], ttl)
+return 1
@@ -0,0 +1,27 @@
+-- Undo a pairing of pair_players.lua whose game could not be created (cluster mode): put the
+-- opponent back at the head of the queue, where it waited, and uncount the game. Every key is
+-- in the slot of the tournament.
+--
+-- KEYS[1] matchmaking queue of the tournament (list)
+-- KEYS[2] tournament game counter of the joining player
+-- KEYS[3] games in progress of the tournament
+--
+-- ARGV[1] opponent
+-- ARGV[2] game id
+-- ARGV[3] tournament game counter prefix (see pair_players.lua)
+
+local queue = KEYS[1]
+local opponent = ARGV[1]
+
+redis.call('LREM', queue, 0, opponent)
+redis.call('LPUSH', queue, opponent)
+
+local function uncount(key)
+    if tonumber(redis.call('GET', key) or '0') > 0 then
+        redis.call('DECR', key)
+    end
+end
+uncount(ARGV[3] .. opponent .. ':games')
+uncount(KEYS[2])
+redis.call('ZREM', KEYS[3], ARGV[2])
+return 1
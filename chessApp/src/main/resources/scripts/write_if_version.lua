@@ -0,0 +1,112 @@
+-- Write a live game only if nobody wrote it since it was read (optimistic concurrency).
+--
+-- The write is appended to the event log of the game in the same step, as entry <version>-1
+-- holding the move, the events published with it and the first fields written (the others can
+-- be derived by replaying the moves). A snapshot entry holds the whole game instead; a log always
+-- starts with one.
+--
+-- KEYS[1] game state hash
+-- KEYS[2] moves, packed in 2 bytes each (see PackedMoves)
+-- KEYS[3] SAN of the moves, space-separated
+-- KEYS[4] event log (stream)
+--
+-- ARGV[1] version the game was read at
+-- ARGV[2] expiration of the game keys to refresh, in seconds, or '' to keep it
+-- ARGV[3] packed move to append, as a number, or '' for a change that is not a move
+-- ARGV[4] SAN of the move
+-- ARGV[5] approximate maximum length of the event log
+-- ARGV[6] '1' to log a snapshot of the game
+-- ARGV[7] events published with the write, as a JSON array, or ''
+-- ARGV[8] number of the field/value pairs below to log in an entry that is not a snapshot
+-- ARGV[9..] field/value pairs to write
+--
+-- Returns the new version, or -1 if the game changed or is gone (the caller must reload it).
+
+if redis.call('EXISTS', KEYS[1]) == 0 then
+    return -1
+end
+local current = redis.call('HGET', KEYS[1], 'version') or '0'
+if current ~= ARGV[1] then
+    return -1
+end
+
+-- Games started before packed moves keep a list of UCI moves: pack it first
+local function pack_legacy_moves(key)
+    if redis.call('TYPE', key).ok ~= 'list' then
+        return
+    end
+    local promotions = { n = 2, b = 3, r = 4, q = 5 }
+    local packed = {}
+    for i, uci in ipairs(redis.call('LRANGE', key, 0, -1)) do
+        local from = (uci:byte(1) - 97) + (uci:byte(2) - 49) * 8
+        local to = (uci:byte(3) - 97) + (uci:byte(4) - 49) * 8
+        local promotion = promotions[uci:sub(5, 5)] or 0
+        packed[i] = struct.pack('>H', from + to * 64 + promotion * 4096)
+    end
+    local ttl = redis.call('PTTL', key)
+    redis.call('DEL', key)
+    redis.call('SET', key, table.concat(packed))
+    if ttl > 0 then
+        redis.call('PEXPIRE', key, ttl)
+    end
+end
+
+local function to_hex(bytes)
+    return (bytes:gsub('.', function(c) return string.format('%02x', c:byte()) end))
+end
+
+local version = tonumber(current) + 1
+redis.call('HSET', KEYS[1], 'version', tostring(version), unpack(ARGV, 9))
+if ARGV[3] ~= '' then
+    pack_legacy_moves(KEYS[2])
+    redis.call('APPEND', KEYS[2], struct.pack('>H', tonumber(ARGV[3])))
+    local separator = redis.call('EXISTS', KEYS[3]) == 1 and ' ' or ''
+    redis.call('APPEND', KEYS[3], separator .. ARGV[4])
+end
+
+local entry = {}
+if ARGV[6] == '1' or redis.call('EXISTS', KEYS[4]) == 0 then
+    pack_legacy_moves(KEYS[2])
+    entry = redis.call('HGETALL', KEYS[1])
+    entry[#entry + 1] = '_snapshot'
+    entry[#entry + 1] = '1'
+    entry[#entry + 1] = '_moves'
+    entry[#entry + 1] = to_hex(redis.call('GET', KEYS[2]) or '')
+    entry[#entry + 1] = '_sanMoves'
+    entry[#entry + 1] = redis.call('GET', KEYS[3]) or ''
+else
+    for i = 9, 8 + 2 * tonumber(ARGV[8]) do
+        entry[#entry + 1] = ARGV[i]
+    end
+    if ARGV[3] ~= '' then
+        entry[#entry + 1] = '_move'
+        entry[#entry + 1] = ARGV[3]
+        entry[#entry + 1] = '_san'
+        entry[#entry + 1] = ARGV[4]
+    end
+end
+if ARGV[7] ~= '' then
+    entry[#entry + 1] = '_events'
+    entry[#entry + 1] = ARGV[7]
+end
+local id = version .. '-1'
+-- A log left by an older copy of the game may be ahead of it: start a new one
+local added = redis.pcall('XADD', KEYS[4], 'MAXLEN', '~', ARGV[5], id, unpack(entry))
+if type(added) == 'table' and added.err then
+    redis.call('DEL', KEYS[4])
+    redis.call('XADD', KEYS[4], 'MAXLEN', '~', ARGV[5], id, unpack(entry))
+end
+
+if ARGV[2] ~= '' then
+    redis.call('EXPIRE', KEYS[1], ARGV[2])
+    redis.call('EXPIRE', KEYS[2], ARGV[2])
+    redis.call('EXPIRE', KEYS[3], ARGV[2])
+    redis.call('EXPIRE', KEYS[4], ARGV[2])
+elseif redis.call('PTTL', KEYS[4]) == -1 then
+    -- A log started by this write expires with the game
+    local ttl = redis.call('PTTL', KEYS[1])
+    if ttl > 0 then
+        redis.call('PEXPIRE', KEYS[4], ttl)
+    end
+end
+return version
@@ -0,0 +1,116 @@
+package it.unipi.chessApp.utils;
+
+import com.github.bhlangonijr.chesslib.Board;
+import com.github.bhlangonijr.chesslib.move.Move;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.util.List;
+import java.util.function.LongSupplier;
+
+/**
+ * Timing harness of the move path of {@link BitboardPosition} against chesslib, which it replaced.
+ * Not part of the regular build; run it with:
+ * <pre>mvn test -Dbenchmark=true -Dtest=BitboardPositionBenchmark</pre>
+ * Each measure is warmed up first, then the best of several rounds is printed.
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class BitboardPositionBenchmark {
+
+    private static final int WARMUP_ROUNDS = 5;
+    private static final int ROUNDS = 10;
+    private static final int GAMES_PER_ROUND = 2_000;
+
+    private static final String START_FEN = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";
+    private static final String KIWIPETE_FEN = "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1";
+    // Ruy Lopez, closed: 30 plies, as a live game plays them one request at a time
+    private static final List<String> GAME = List.of(
+        "e2e4", "e7e5", "g1f3", "b8c6", "f1b5", "a7a6", "b5a4", "g8f6", "e1g1", "f8e7",
+        "f1e1", "b7b5", "a4b3", "d7d6", "c2c3", "e8g8", "h2h3", "c6a5", "b3c2", "c7c5",
+        "d2d4", "d8c7", "b1d2", "c5d4", "c3d4", "a5c6", "d2b3", "a6a5", "c1e3", "a5a4");
+
+    // Keeps the results alive, so the JIT cannot drop the work
+    private static volatile long sink;
+
+    @Test
+    void perft() {
+        report("perft start d4, bitboards", "nodes", () -> BitboardPosition.fromFen(START_FEN).perft(4));
+        report("perft start d4, chesslib", "nodes", () -> chesslibPerft(board(START_FEN), 4));
+        report("perft kiwipete d3, bitboards", "nodes", () -> BitboardPosition.fromFen(KIWIPETE_FEN).perft(3));
+        report("perft kiwipete d3, chesslib", "nodes", () -> chesslibPerft(board(KIWIPETE_FEN), 3));
+    }
+
+    @Test
+    void moveValidation() {
+        int[] moves = GAME.stream().mapToInt(BitboardPosition::parseMove).toArray();
+        BitboardPosition position = new BitboardPosition();
+        report("validate + play, bitboards", "moves", () -> {
+            long played = 0;
+            for (int game = 0; game < GAMES_PER_ROUND; game++) {
+                position.load(START_FEN);
+                for (int move : moves) {
+                    if (!position.isLegal(move)) {
+                        throw new IllegalStateException("Illegal move " + PackedMoves.toUci(move));
+                    }
+                    position.play(move);
+                    played++;
+                }
+                sink += position.inCheck() || !position.hasLegalMove() ? 1 : 0;
+            }
+            return played;
+        });
+        report("validate + play, chesslib", "moves", () -> {
+            long played = 0;
+            for (int game = 0; game < GAMES_PER_ROUND; game++) {
+                Board board = board(START_FEN);
+                for (String uci : GAME) {
+                    Move move = new Move(uci, board.getSideToMove());
+                    if (!board.legalMoves().contains(move)) {
+                        throw new IllegalStateException("Illegal move " + uci);
+                    }
+                    board.doMove(move);
+                    played++;
+                }
+                sink += board.isMated() || board.isStaleMate() ? 1 : 0;
+            }
+            return played;
+        });
+    }
+
+    /**
+     * Time a task returning how many operations it did, and print the best rate.
+     */
+    private static void report(String name, String unit, LongSupplier task) {
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            sink += task.getAsLong();
+        }
+        double best = 0;
+        for (int i = 0; i < ROUNDS; i++) {
+            long start = System.nanoTime();
+            long operations = task.getAsLong();
+            long elapsed = System.nanoTime() - start;
+            sink += operations;
+            best = Math.max(best, operations * 1e9 / elapsed);
+        }
+        System.out.printf("%-32s %,15.0f %s/s%n", name, best, unit);
+    }
+
+    private static Board board(String fen) {
+        Board board = new Board();
+        board.loadFromFen(fen);
+        return board;
+    }
+
+    private static long chesslibPerft(Board board, int depth) {
+        if (depth == 0) {
+            return 1;
+        }
+        long nodes = 0;
+        for (Move move : board.legalMoves()) {
+            board.doMove(move);
+            nodes += chesslibPerft(board, depth - 1);
+            board.undoMove();
+        }
+        return nodes;
+    }
+}
@@ -0,0 +1,117 @@
+package it.unipi.chessApp.utils;
+
+import com.github.bhlangonijr.chesslib.Board;
+import com.github.bhlangonijr.chesslib.move.Move;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Move generation of {@link BitboardPosition} checked on the standard perft positions
+ * (https://www.chessprogramming.org/Perft_Results): against the published node counts, and
+ * against chesslib move by move, so a failure names the root move whose subtree differs.
+ * The same trees check the incremental {@link Zobrist} key against the key computed from scratch.
+ * Depths are kept low enough for chesslib to answer in a few seconds.
+ */
+class BitboardPositionPerftTest {
+
+    static Stream<Arguments> positions() {
+        return Stream.of(
+            Arguments.of("start", "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1", 4, 197_281L),
+            Arguments.of("kiwipete", "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1", 3, 97_862L),
+            Arguments.of("position 3", "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1", 4, 43_238L),
+            Arguments.of("position 4", "r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1", 3, 9_467L),
+            Arguments.of("position 5", "rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8", 3, 62_379L),
+            Arguments.of("position 6", "r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/R4RK1 w - - 0 10", 3, 89_890L)
+        );
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("positions")
+    void matchesPublishedCount(String name, String fen, int depth, long nodes) {
+        assertEquals(nodes, BitboardPosition.fromFen(fen).perft(depth));
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("positions")
+    void matchesChesslibByRootMove(String name, String fen, int depth, long nodes) {
+        Board board = new Board();
+        board.loadFromFen(fen);
+        assertEquals(chesslibDivide(board, depth), divide(BitboardPosition.fromFen(fen), depth));
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("positions")
+    void updatesZobristKeyIncrementally(String name, String fen, int depth, long nodes) {
+        BitboardPosition position = BitboardPosition.fromFen(fen);
+        assertEquals(nodes, walkZobrist(position, Zobrist.positionKey(position), depth));
+    }
+
+    /**
+     * Perft that carries the position key from move to move, as a live game does, and compares it
+     * to the key computed from scratch at every node.
+     * @return The leaf count
+     */
+    private static long walkZobrist(BitboardPosition position, long key, int depth) {
+        assertEquals(Zobrist.positionKey(position), key, position.toFen());
+        if (depth == 0) {
+            return 1;
+        }
+        long leaves = 0;
+        int[] moves = new int[BitboardPosition.MAX_MOVES];
+        int count = position.legalMoves(moves);
+        BitboardPosition child = new BitboardPosition();
+        for (int i = 0; i < count; i++) {
+            long delta = Zobrist.moveDelta(position, moves[i]);
+            child.copyFrom(position);
+            child.play(moves[i]);
+            leaves += walkZobrist(child, key ^ delta ^ Zobrist.rightsKey(child), depth - 1);
+        }
+        return leaves;
+    }
+
+    /**
+     * @return The leaf count under each root move, by UCI move
+     */
+    private static Map<String, Long> divide(BitboardPosition position, int depth) {
+        Map<String, Long> counts = new TreeMap<>();
+        int[] moves = new int[BitboardPosition.MAX_MOVES];
+        int count = position.legalMoves(moves);
+        BitboardPosition child = new BitboardPosition();
+        for (int i = 0; i < count; i++) {
+            child.copyFrom(position);
+            child.play(moves[i]);
+            counts.put(PackedMoves.toUci(moves[i]), child.perft(depth - 1));
+        }
+        return counts;
+    }
+
+    private static Map<String, Long> chesslibDivide(Board board, int depth) {
+        Map<String, Long> counts = new TreeMap<>();
+        for (Move move : board.legalMoves()) {
+            board.doMove(move);
+            counts.put(move.toString().toLowerCase(), chesslibPerft(board, depth - 1));
+            board.undoMove();
+        }
+        return counts;
+    }
+
+    private static long chesslibPerft(Board board, int depth) {
+        if (depth == 0) {
+            return 1;
+        }
+        long nodes = 0;
+        for (Move move : board.legalMoves()) {
+            board.doMove(move);
+            nodes += chesslibPerft(board, depth - 1);
+            board.undoMove();
+        }
+        return nodes;
+    }
+}
@@ -0,0 +1,84 @@
+package it.unipi.chessApp.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+/**
+ * The SAN and UCI codecs of {@link PackedMoves} checked on every line of the opening book
+ * (openings/eco.tsv): each line is read from SAN, must end in the position of its FEN column,
+ * and must read back as the same moves once written in SAN, PGN and UCI. The book's own SAN is
+ * not compared as text, as it leaves out some check marks and captures.
+ */
+class PackedMovesEcoBookTest {
+
+    private static final String START_FEN = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";
+
+    @Test
+    void everyBookLineRoundTrips() throws IOException {
+        int lines = 0;
+        try (InputStream book = getClass().getClassLoader().getResourceAsStream("openings/eco.tsv")) {
+            assertNotNull(book, "openings/eco.tsv is not on the classpath");
+            BufferedReader reader = new BufferedReader(new InputStreamReader(book, StandardCharsets.UTF_8));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank() || line.startsWith("#")) {
+                    continue;
+                }
+                checkLine(line.split("\t"));
+                lines++;
+            }
+        }
+        assertNotEquals(0, lines);
+    }
+
+    private static void checkLine(String[] fields) {
+        String name = fields[0] + " " + fields[1] + ": " + fields[2];
+        byte[] moves = readSan(fields[2], name);
+        assertEquals(Zobrist.placementKey(fields[3]), Zobrist.placementKey(replay(moves)), name + ": final position");
+
+        String san = PackedMoves.toSan(moves, START_FEN);
+        assertArrayEquals(moves, readSan(san, name + " as " + san), name + ": SAN");
+        assertArrayEquals(moves, readSan(PackedMoves.toPgn(moves, START_FEN), name + " as PGN"), name + ": PGN");
+        for (int i = 0; i < PackedMoves.count(moves); i++) {
+            int move = PackedMoves.get(moves, i);
+            assertEquals(move, BitboardPosition.parseMove(PackedMoves.toUci(move)), name + ": UCI of ply " + (i + 1));
+        }
+        assertArrayEquals(moves, PackedMoves.fromUci(PackedMoves.toUci(moves)), name + ": UCI");
+    }
+
+    /**
+     * Read space-separated SAN from the initial position; move numbers are skipped.
+     */
+    private static byte[] readSan(String line, String name) {
+        BitboardPosition position = BitboardPosition.fromFen(START_FEN);
+        byte[] moves = PackedMoves.EMPTY;
+        for (String token : line.trim().split("\\s+")) {
+            if (token.matches("\\d+\\.+")) {
+                continue;
+            }
+            int move = PackedMoves.fromSan(position, token);
+            assertNotEquals(BitboardPosition.NO_MOVE, move, name + ": cannot read " + token);
+            position.play(move);
+            moves = PackedMoves.append(moves, move);
+        }
+        return moves;
+    }
+
+    private static BitboardPosition replay(byte[] moves) {
+        BitboardPosition position = BitboardPosition.fromFen(START_FEN);
+        for (int i = 0; i < PackedMoves.count(moves); i++) {
+            position.play(PackedMoves.get(moves, i));
+        }
+        return position;
+    }
+}
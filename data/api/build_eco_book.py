@@ -0,0 +1,44 @@
+"""
+Builds the opening book of the Java backend (chessApp/src/main/resources/openings/eco.tsv)
+from the ECO files in api/opening_json_data.
+
+One line per opening, in file order: eco <TAB> name <TAB> moves <TAB> fen.
+The order matters: when several lines end in the same position, the backend names it
+after the last one.
+
+Run from the data folder:
+    python -m api.build_eco_book
+"""
+import glob
+import json
+import os
+
+JSON_FOLDER = os.path.join(os.path.dirname(__file__), "opening_json_data")
+BOOK_PATH = os.path.join(os.path.dirname(__file__), "..", "..",
+                         "chessApp", "src", "main", "resources", "openings", "eco.tsv")
+
+HEADER = [
+    "# ECO openings book: eco <TAB> name <TAB> moves from the initial position <TAB> fen after them",
+    "# Generated from data/api/opening_json_data/eco*.json by data/api/build_eco_book.py",
+]
+
+
+def build_book(json_folder=JSON_FOLDER, book_path=BOOK_PATH):
+    lines = list(HEADER)
+    for file_path in sorted(glob.glob(os.path.join(json_folder, "eco*.json"))):
+        with open(file_path, "r", encoding="utf-8") as f:
+            data = json.load(f)
+        # Files keep the order of their source: the FEN after the moves is the key
+        for fen, info in data.items():
+            fields = [info["eco"], info["name"], info["moves"], fen]
+            if any("\t" in field or "\n" in field for field in fields):
+                raise ValueError(f"Field with a tab or newline in {file_path}: {fields}")
+            lines.append("\t".join(fields))
+
+    with open(book_path, "w", encoding="utf-8", newline="\n") as f:
+        f.write("\n".join(lines) + "\n")
+    print(f"Wrote {len(lines) - len(HEADER)} openings to {os.path.normpath(book_path)}")
+
+
+if __name__ == "__main__":
+    build_book()